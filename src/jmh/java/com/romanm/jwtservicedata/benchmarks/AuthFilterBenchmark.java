@@ -0,0 +1,108 @@
+package com.romanm.jwtservicedata.benchmarks;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.romanm.jwtservicedata.components.auth.AuthUserCache;
+import com.romanm.jwtservicedata.components.auth.TokenVerifier;
+import com.romanm.jwtservicedata.components.confs.AuthConfig;
+import com.romanm.jwtservicedata.components.confs.LogConfig;
+import com.romanm.jwtservicedata.components.logs.AccessLogger;
+import com.romanm.jwtservicedata.components.tracing.Tracing;
+import com.romanm.jwtservicedata.configs.auth.filters.JWTAuthorizationFilter;
+import com.romanm.jwtservicedata.constants.MessageConstants;
+import com.romanm.jwtservicedata.models.auth.AuthUser;
+import com.romanm.jwtservicedata.services.UserServiceV1;
+import io.opentelemetry.api.OpenTelemetry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверка токена в JWTAuthorizationFilter: разбор заголовка, проверка подписи (или кеш токенов),
+ * чтение пользователя из локального кеша и передача запроса дальше по цепочке.
+ * Пользователь всегда находится в AuthUserCache, поэтому Redis не нужен и не измеряется
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthFilterBenchmark {
+    private static final String USER_NAME = "user@example.com";
+
+    /**
+     * Размер кеша проверенных токенов auth.token-cache-size, 0 - подпись проверяется на каждый запрос
+     */
+    @Param({"0", "10000"})
+    private int tokenCacheSize;
+
+    private JWTAuthorizationFilter filter;
+    private String validHeader;
+    private String invalidHeader;
+    private final WebFilterChain chain = exchange -> Mono.empty();
+
+    @Setup
+    public void setUp() {
+        AuthConfig authConfig = new AuthConfig();
+        authConfig.setTokenCacheSize(this.tokenCacheSize);
+        authConfig.setTokenCacheTtlMs(TimeUnit.HOURS.toMillis(1));
+        authConfig.setUserCacheSize(100);
+        authConfig.setUserCacheTtlMs(TimeUnit.HOURS.toMillis(1));
+
+        AuthUser authUser = new AuthUser(USER_NAME, "", new ArrayList<>(), false);
+        authUser.setId("200");
+        AuthUserCache authUserCache = new AuthUserCache(authConfig);
+        authUserCache.put(USER_NAME, authUser, authUserCache.getGeneration());
+
+        //Журнал доступа отключен, чтобы измерять фильтр, а не вывод в лог
+        LogConfig logConfig = new LogConfig();
+        logConfig.setAccessSampleRate(0);
+
+        UserServiceV1 userService = new UserServiceV1(null, null, null, authUserCache);
+        this.filter = new JWTAuthorizationFilter(userService, new TokenVerifier(authConfig), new AccessLogger(logConfig), new Tracing(OpenTelemetry.noop()));
+
+        String token = JWT.create()
+                .withSubject(USER_NAME)
+                .withExpiresAt(new Date(System.currentTimeMillis()+TimeUnit.HOURS.toMillis(1)))
+                .sign(Algorithm.HMAC512(MessageConstants.SECRET.getBytes()));
+        this.validHeader = MessageConstants.TOKEN_PREFIX+token;
+        this.invalidHeader = MessageConstants.TOKEN_PREFIX+token.substring(0, token.length()-4)+"AAAA";
+    }
+
+    private ServerWebExchange exchange(String header) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/api/profile/200")
+                .header(MessageConstants.HEADER_STRING, header));
+    }
+
+    @Benchmark
+    public ServerWebExchange validToken() {
+        ServerWebExchange exchange = this.exchange(this.validHeader);
+        this.filter.filter(exchange, this.chain).block();
+        return exchange;
+    }
+
+    @Benchmark
+    public ServerWebExchange invalidToken() {
+        ServerWebExchange exchange = this.exchange(this.invalidHeader);
+        this.filter.filter(exchange, this.chain).block();
+        return exchange;
+    }
+}
@@ -0,0 +1,54 @@
+package com.romanm.jwtservicedata.benchmarks;
+
+import com.romanm.jwtservicedata.components.confs.FileConfig;
+import com.romanm.jwtservicedata.components.files.MediaTypeHandler;
+import com.romanm.jwtservicedata.models.responses.files.FileStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Определение медиатипа и проверка разрешенного формата по имени файла, которые выполняются
+ * при каждой отдаче и загрузке файла
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileTypeBenchmark {
+    @Param({"image.png", "photo.2021.10.01.jpeg", "document.pdf"})
+    private String fileName;
+
+    private MediaTypeHandler mediaTypeHandler;
+    private FileConfig fileConfig;
+
+    @Setup
+    public void setUp() {
+        this.mediaTypeHandler = new MediaTypeHandler();
+        this.fileConfig = new FileConfig();
+        this.fileConfig.setPermittedFormats(List.of("jpg", "jpeg", "png", "gif"));
+    }
+
+    @Benchmark
+    public String getFileMediaType() {
+        return this.mediaTypeHandler.getFileMediaType(this.fileName);
+    }
+
+    @Benchmark
+    public FileStatus isPermittedFileType() {
+        return this.fileConfig.isPermittedFileType(this.fileName);
+    }
+}
@@ -0,0 +1,88 @@
+package com.romanm.jwtservicedata.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.romanm.jwtservicedata.models.ChatItem;
+import com.romanm.jwtservicedata.models.UserProfile;
+import com.romanm.jwtservicedata.models.builders.UserProfileBuilder;
+import com.romanm.jwtservicedata.models.images.ImageRef;
+import com.romanm.jwtservicedata.models.responses.ResponseData;
+import com.romanm.jwtservicedata.models.responses.profile.ResponseUserProfile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация в JSON ответов профиля пользователя и страницы чата. ObjectMapper строится так же,
+ * как в Spring Boot по умолчанию
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+    private static final int PAGE_SIZE = 10;
+    private static final int CHAT_PAGE_SIZE = 50;
+
+    private ObjectMapper objectMapper;
+    private ResponseUserProfile responseUserProfile;
+    private ResponseData<ChatItem> responseChat;
+
+    @Setup
+    public void setUp() {
+        this.objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        List<UserProfile> lastVisitors = new ArrayList<>();
+        List<UserProfile> lastChats = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            lastVisitors.add(this.createUserProfile(String.valueOf(300+i)));
+            lastChats.add(this.createUserProfile(String.valueOf(400+i)));
+        }
+        this.responseUserProfile = new ResponseUserProfile(this.createUserProfile("200"), lastVisitors, lastChats);
+
+        List<ChatItem> chatItems = new ArrayList<>();
+        for (int i = 0; i < CHAT_PAGE_SIZE; i++) {
+            chatItems.add(new ChatItem("200", "300", "Сообщение номер "+i, new Date()));
+        }
+        this.responseChat = new ResponseData<>(0, CHAT_PAGE_SIZE, chatItems);
+    }
+
+    private UserProfile createUserProfile(String userId) {
+        UserProfile userProfile = UserProfileBuilder.create(userId)
+                .setFirstName("Имя")
+                .setLastName("Фамилия")
+                .setAge(30)
+                .setBirthDate(new Date())
+                .setAboutMe("Немного о себе")
+                .build();
+        userProfile.setImgUrls(Set.of(new ImageRef("/api/resource?user_id="+userId+"&file_id=1.png", "1.png")));
+        userProfile.setThumbUrl(new ImageRef("/api/resource/thumb?user_id="+userId, "1.png"));
+        return userProfile;
+    }
+
+    @Benchmark
+    public byte[] responseUserProfile() throws JsonProcessingException {
+        return this.objectMapper.writeValueAsBytes(this.responseUserProfile);
+    }
+
+    @Benchmark
+    public byte[] responseChatPage() throws JsonProcessingException {
+        return this.objectMapper.writeValueAsBytes(this.responseChat);
+    }
+}
@@ -0,0 +1,83 @@
+package com.romanm.jwtservicedata.benchmarks;
+
+import com.romanm.jwtservicedata.models.ChatItem;
+import com.romanm.jwtservicedata.models.UserProfile;
+import com.romanm.jwtservicedata.models.requests.ChatCursor;
+import com.romanm.jwtservicedata.models.requests.SearchBody;
+import com.romanm.jwtservicedata.services.mongodb.MongoQueries;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperationContext;
+import org.springframework.data.mongodb.core.aggregation.TypeBasedAggregationOperationContext;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Построение запросов MongoQueries и их преобразование в документ запроса или конвейер агрегации,
+ * как это делает ReactiveMongoTemplate перед отправкой в базу
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MongoQueryBenchmark {
+    private SearchBody searchBody;
+    private QueryMapper queryMapper;
+    private MongoPersistentEntity<?> userProfileEntity;
+    private AggregationOperationContext aggregationContext;
+    private ChatCursor cursor;
+
+    @Setup
+    public void setUp() {
+        this.searchBody = new SearchBody();
+
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.afterPropertiesSet();
+        this.queryMapper = new QueryMapper(converter);
+        this.userProfileEntity = mappingContext.getRequiredPersistentEntity(UserProfile.class);
+        this.aggregationContext = new TypeBasedAggregationOperationContext(ChatItem.class, mappingContext, this.queryMapper);
+        this.cursor = new ChatCursor(new Date(), new ObjectId().toHexString());
+    }
+
+    @Benchmark
+    public Document profilesSearchPage() {
+        return MongoQueries.profilesSearchPage(0, 10, "200", this.searchBody).getQueryObject();
+    }
+
+    @Benchmark
+    public Document profilesSearchPageMapped() {
+        Query query = MongoQueries.profilesSearchPage(0, 10, "200", this.searchBody);
+        return this.queryMapper.getMappedObject(query.getQueryObject(), this.userProfileEntity);
+    }
+
+    @Benchmark
+    public Document visitorsOfUser() {
+        return MongoQueries.visitorsOfUser("200", 0, 10).getQueryObject();
+    }
+
+    @Benchmark
+    public List<Document> conversationPage() {
+        return MongoQueries.conversationPage("200", "300", this.cursor, 0, 10).toPipeline(this.aggregationContext);
+    }
+}
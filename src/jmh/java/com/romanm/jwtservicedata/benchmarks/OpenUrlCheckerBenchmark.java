@@ -0,0 +1,56 @@
+package com.romanm.jwtservicedata.benchmarks;
+
+import com.romanm.jwtservicedata.components.auth.OpenUrlChecker;
+import com.romanm.jwtservicedata.constants.Api;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.server.PathContainer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверка открытых маршрутов OpenUrlChecker: по строке пути и по уже разобранному пути запроса,
+ * как это делает OpenedPathsFilter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OpenUrlCheckerBenchmark {
+    @Param({
+            Api.API_PREFIX+Api.API_USER_IMAGE+"/thumb",
+            Api.MAIN_ICON+".ico",
+            "/api/profile/200/visitors"
+    })
+    private String url;
+
+    private OpenUrlChecker openUrlChecker;
+    private PathContainer path;
+
+    @Setup
+    public void setUp() {
+        this.openUrlChecker = new OpenUrlChecker();
+        this.path = PathContainer.parsePath(this.url);
+    }
+
+    @Benchmark
+    public boolean checkString() {
+        return this.openUrlChecker.check(this.url);
+    }
+
+    @Benchmark
+    public boolean checkParsedPath() {
+        return this.openUrlChecker.check(this.path);
+    }
+}
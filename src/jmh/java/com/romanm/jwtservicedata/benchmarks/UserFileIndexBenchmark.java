@@ -0,0 +1,104 @@
+package com.romanm.jwtservicedata.benchmarks;
+
+import com.romanm.jwtservicedata.components.confs.FileConfig;
+import com.romanm.jwtservicedata.components.files.UserFileIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Список и число файлов пользователя: из индекса UserFileIndex и чтением каталога пользователя,
+ * как это делалось до появления индекса. Пользователь выбирается случайно при каждом вызове, а при
+ * indexMaxUsers меньше userCount индекс постоянно промахивается и вытесняет каталоги
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserFileIndexBenchmark {
+    @Param({"1", "10000"})
+    private int userCount;
+
+    @Param({"3", "30"})
+    private int fileCount;
+
+    @Param({"100000", "1000"})
+    private int indexMaxUsers;
+
+    private Path uploadsDir;
+    private FileConfig fileConfig;
+    private UserFileIndex userFileIndex;
+    private String[] userIds;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.uploadsDir = Files.createTempDirectory("uploads");
+        this.fileConfig = new FileConfig();
+        this.fileConfig.setUploadsDir(this.uploadsDir.toString());
+        this.fileConfig.setIndexMaxUsers(this.indexMaxUsers);
+
+        this.userIds = new String[this.userCount];
+        for (int u = 0; u < this.userCount; u++) {
+            this.userIds[u] = String.valueOf(200+u);
+            Path userDir = Files.createDirectories(this.fileConfig.getUserDir(this.userIds[u]));
+            for (int i = 0; i < this.fileCount; i++) {
+                Files.write(userDir.resolve(i+".png"), new byte[16]);
+            }
+        }
+        this.userFileIndex = new UserFileIndex(this.fileConfig);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(this.uploadsDir);
+    }
+
+    /**
+     * Случайный пользователь для очередного вызова
+     * @return String
+     */
+    private String nextUserId() {
+        return this.userIds[ThreadLocalRandom.current().nextInt(this.userIds.length)];
+    }
+
+    @Benchmark
+    public List<File> listFilesFromIndex() {
+        return this.userFileIndex.listFiles(this.nextUserId());
+    }
+
+    @Benchmark
+    public List<File> listFilesFromDir() {
+        return this.fileConfig.listFiles(this.nextUserId());
+    }
+
+    @Benchmark
+    public int countFromIndex() {
+        return this.userFileIndex.count(this.nextUserId());
+    }
+
+    @Benchmark
+    public int countFromDir() {
+        return this.fileConfig.listFiles(this.nextUserId()).size();
+    }
+}
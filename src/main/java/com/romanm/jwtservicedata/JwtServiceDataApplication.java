@@ -2,10 +2,13 @@ package com.romanm.jwtservicedata;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import reactor.core.scheduler.Schedulers;
 
 @SpringBootApplication
 public class JwtServiceDataApplication {
     public static void main(String[] args) {
+        //Метрики пулов потоков Reactor, включаются до создания планировщиков
+        Schedulers.enableMetrics();
         SpringApplication.run(JwtServiceDataApplication.class, args);
     }
 }
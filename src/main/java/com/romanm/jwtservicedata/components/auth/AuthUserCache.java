@@ -0,0 +1,134 @@
+package com.romanm.jwtservicedata.components.auth;
+
+import com.romanm.jwtservicedata.components.confs.AuthConfig;
+import com.romanm.jwtservicedata.models.auth.AuthUser;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Локальный кеш пользователей, прочитанных из Redis. Пользователь хранится не дольше auth.user-cache-ttl-ms,
+ * изменения пользователей сбрасывают кеш через AuthUserCacheInvalidator
+ */
+@Component
+public class AuthUserCache {
+    private final int maxSize;
+    private final long ttlMs;
+    private final LinkedHashMap<String, CachedUser> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long generation = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Пользователь в кеше и момент, после которого его нужно прочитать заново
+     */
+    private static class CachedUser {
+        private final AuthUser authUser;
+        private final long expiresAt;
+
+        private CachedUser(AuthUser authUser, long expiresAt) {
+            this.authUser = authUser;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Конструктор класса AuthUserCache
+     * @param authConfig AuthConfig
+     */
+    @Autowired
+    public AuthUserCache(AuthConfig authConfig) {
+        this.maxSize = authConfig.getUserCacheSize();
+        this.ttlMs = authConfig.getUserCacheTtlMs();
+    }
+
+    /**
+     * Получить пользователя из кеша. Вернет null, если его нет в кеше или срок хранения истек
+     * @param username String
+     * @return AuthUser
+     */
+    public synchronized AuthUser get(String username) {
+        CachedUser cached = this.entries.get(username);
+        if ((cached != null) && (cached.expiresAt > System.currentTimeMillis())) {
+            this.hits.incrementAndGet();
+            return cached.authUser;
+        }
+        if (cached != null) {
+            this.entries.remove(username);
+        }
+        this.misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Поколение кеша. Запоминается перед чтением пользователя из Redis и передается в put()
+     * @return long
+     */
+    public synchronized long getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * Поместить пользователя в кеш. Если кеш сбрасывался после начала чтения, пользователь мог измениться,
+     * и такие данные в кеш не кладутся
+     * @param username String
+     * @param authUser AuthUser
+     * @param loadGeneration long поколение кеша на момент начала чтения
+     */
+    public synchronized void put(String username, AuthUser authUser, long loadGeneration) {
+        if ((loadGeneration != this.generation) || (this.maxSize <= 0) || (this.ttlMs <= 0)) {
+            return;
+        }
+        this.entries.put(username, new CachedUser(authUser, System.currentTimeMillis()+this.ttlMs));
+        Iterator<CachedUser> iterator = this.entries.values().iterator();
+        while ((this.entries.size() > this.maxSize) && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Удалить пользователя из кеша
+     * @param username String
+     */
+    public synchronized void invalidate(String username) {
+        this.generation++;
+        this.entries.remove(username);
+    }
+
+    /**
+     * Удалить всех пользователей из кеша
+     */
+    public synchronized void invalidateAll() {
+        this.generation++;
+        this.entries.clear();
+    }
+
+    /**
+     * Число попаданий в кеш
+     * @return long
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * Число промахов кеша
+     * @return long
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * Число пользователей в кеше
+     * @return int
+     */
+    public synchronized int getSize() {
+        return this.entries.size();
+    }
+}
@@ -0,0 +1,91 @@
+package com.romanm.jwtservicedata.components.auth;
+
+import com.romanm.jwtservicedata.components.confs.AuthConfig;
+import com.romanm.jwtservicedata.constants.MessageConstants;
+import com.romanm.jwtservicedata.repositories.ReactiveRedisRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Сброс локального кеша пользователей по сообщениям Redis. Сообщение в канал auth.user-invalidation-channel
+ * сбрасывает одного пользователя, уведомление об изменении хеша пользователей сбрасывает весь кеш,
+ * так как в уведомлении нет имени пользователя. При потере соединения подписка восстанавливается,
+ * а пропущенные за это время изменения видны по истечении auth.user-cache-ttl-ms
+ */
+@Slf4j
+@Component
+public class AuthUserCacheInvalidator {
+    private static final String KEYSPACE_PATTERN = "__keyspace@*__:"+ReactiveRedisRepository.USER;
+    private static final RedisSerializationContext.SerializationPair<String> STRING_PAIR = RedisSerializationContext.SerializationPair.fromSerializer(RedisSerializer.string());
+    private static final Duration MIN_RETRY_BACKOFF = Duration.ofSeconds(1);
+    private static final Duration MAX_RETRY_BACKOFF = Duration.ofSeconds(30);
+
+    private final ObjectProvider<ReactiveRedisMessageListenerContainer> listenerContainer;
+    private final AuthUserCache authUserCache;
+    private final String channel;
+    private Disposable subscription;
+
+    /**
+     * Конструктор класса AuthUserCacheInvalidator
+     * @param listenerContainer ObjectProvider<ReactiveRedisMessageListenerContainer>
+     * @param authUserCache AuthUserCache
+     * @param authConfig AuthConfig
+     */
+    @Autowired
+    public AuthUserCacheInvalidator(ObjectProvider<ReactiveRedisMessageListenerContainer> listenerContainer, AuthUserCache authUserCache, AuthConfig authConfig) {
+        this.listenerContainer = listenerContainer;
+        this.authUserCache = authUserCache;
+        this.channel = authConfig.getUserInvalidationChannel();
+    }
+
+    /**
+     * Подписаться на сообщения об изменении пользователей
+     */
+    @PostConstruct
+    public void subscribe() {
+        this.subscription = Flux.defer(() -> this.listenerContainer.getObject().receive(List.of(ChannelTopic.of(this.channel), PatternTopic.of(KEYSPACE_PATTERN)), STRING_PAIR, STRING_PAIR))
+                //Контейнер подключается к Redis при создании, поэтому первая попытка и повторы выполняются вне потоков запросов
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnSubscribe(s -> this.authUserCache.invalidateAll())
+                .doOnError(err -> log.error(MessageConstants.MSG_PREFIX+MessageConstants.MSG_USER_INVALIDATION_FAILED, err.getMessage()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, MIN_RETRY_BACKOFF).maxBackoff(MAX_RETRY_BACKOFF))
+                .subscribe(this::onMessage);
+    }
+
+    /**
+     * Обработать сообщение об изменении пользователя
+     * @param message ReactiveSubscription.Message<String, String>
+     */
+    private void onMessage(ReactiveSubscription.Message<String, String> message) {
+        String username = message.getMessage();
+        if (this.channel.equals(message.getChannel()) && (username != null) && !username.isEmpty()) {
+            this.authUserCache.invalidate(username);
+        } else {
+            this.authUserCache.invalidateAll();
+        }
+    }
+
+    @PreDestroy
+    public void unsubscribe() {
+        if (this.subscription != null) {
+            this.subscription.dispose();
+        }
+    }
+}
@@ -1,18 +1,55 @@
 package com.romanm.jwtservicedata.components.auth;
 
 import com.romanm.jwtservicedata.constants.Api;
+import org.springframework.http.server.PathContainer;
 import org.springframework.stereotype.Component;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 
+/**
+ * Проверка маршрутов, не закрытых токеном. Шаблоны Api.openedUrlPaths разбираются один раз при создании
+ */
 @Component
 public class OpenUrlChecker {
+    /**
+     * Атрибут запроса, в котором OpenedPathsFilter передает признак открытого маршрута
+     */
+    public static final String OPEN_URL_ATTRIBUTE = OpenUrlChecker.class.getName()+".OPEN_URL";
+
+    private final List<PathPattern> openedPatterns;
+
+    /**
+     * Конструктор класса OpenUrlChecker
+     */
+    public OpenUrlChecker() {
+        PathPatternParser parser = new PathPatternParser();
+        this.openedPatterns = Arrays.stream(Api.openedUrlPaths).map(parser::parse).collect(Collectors.toList());
+    }
+
     /**
      * Проверить наличие url в списке незакрытых токеном маршрутов
      * @param url String
      * @return boolean
      */
     public boolean check(String url) {
-        return !url.isEmpty() && Arrays.stream(Api.openedUrlPaths).filter(url::contains).count() > 0;
+        return (url != null) && !url.isEmpty() && this.check(PathContainer.parsePath(url));
+    }
+
+    /**
+     * Проверить наличие уже разобранного пути запроса в списке незакрытых токеном маршрутов
+     * @param path PathContainer
+     * @return boolean
+     */
+    public boolean check(PathContainer path) {
+        for (PathPattern pattern : this.openedPatterns) {
+            if (pattern.matches(path)) {
+                return true;
+            }
+        }
+        return false;
     }
 }
@@ -0,0 +1,143 @@
+package com.romanm.jwtservicedata.components.auth;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.romanm.jwtservicedata.components.confs.AuthConfig;
+import com.romanm.jwtservicedata.constants.MessageConstants;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Проверка JWT с кешем проверенных токенов. Подпись повторно пришедшего токена не проверяется, пока он в кеше.
+ * Токен хранится в кеше не дольше auth.token-cache-ttl-ms и не дольше срока своего действия,
+ * ключом служит хеш токена, поэтому сами токены в памяти не остаются
+ */
+@Component
+public class TokenVerifier {
+    private static final JWTVerifier VERIFIER = JWT.require(Algorithm.HMAC512(MessageConstants.SECRET.getBytes())).build();
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    private final int maxSize;
+    private final long ttlMs;
+    private final LinkedHashMap<String, VerifiedToken> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Проверенный токен: имя пользователя и момент, после которого токен нужно проверять заново
+     */
+    private static class VerifiedToken {
+        private final String subject;
+        private final long expiresAt;
+
+        private VerifiedToken(String subject, long expiresAt) {
+            this.subject = subject;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Конструктор класса TokenVerifier
+     * @param authConfig AuthConfig
+     */
+    @Autowired
+    public TokenVerifier(AuthConfig authConfig) {
+        this.maxSize = authConfig.getTokenCacheSize();
+        this.ttlMs = authConfig.getTokenCacheTtlMs();
+    }
+
+    /**
+     * Проверить токен и выдать имя пользователя из него. Неверный или просроченный токен
+     * приводит к JWTVerificationException
+     * @param token String токен без префикса
+     * @return String
+     */
+    public String verify(String token) {
+        String key = this.hash(token);
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            VerifiedToken cached = this.entries.get(key);
+            if (cached != null) {
+                if (cached.expiresAt > now) {
+                    this.hits.incrementAndGet();
+                    return cached.subject;
+                }
+                this.entries.remove(key);
+            }
+        }
+        this.misses.incrementAndGet();
+
+        DecodedJWT jwt = VERIFIER.verify(token);
+        long expiresAt = now+this.ttlMs;
+        if (jwt.getExpiresAt() != null) {
+            expiresAt = Math.min(expiresAt, jwt.getExpiresAt().getTime());
+        }
+        if ((jwt.getSubject() != null) && (expiresAt > now) && (this.maxSize > 0)) {
+            this.put(key, new VerifiedToken(jwt.getSubject(), expiresAt));
+        }
+        return jwt.getSubject();
+    }
+
+    /**
+     * Поместить токен в кеш и вытеснить давно не приходившие, если превышен лимит по количеству
+     * @param key String
+     * @param verifiedToken VerifiedToken
+     */
+    private synchronized void put(String key, VerifiedToken verifiedToken) {
+        this.entries.put(key, verifiedToken);
+        Iterator<VerifiedToken> iterator = this.entries.values().iterator();
+        while ((this.entries.size() > this.maxSize) && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Хеш SHA-256 токена в виде Base64
+     * @param token String
+     * @return String
+     */
+    private String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance(HASH_ALGORITHM).digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Число попаданий в кеш
+     * @return long
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * Число промахов кеша
+     * @return long
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * Число токенов в кеше
+     * @return int
+     */
+    public synchronized int getSize() {
+        return this.entries.size();
+    }
+}
@@ -0,0 +1,192 @@
+package com.romanm.jwtservicedata.components.chat;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.romanm.jwtservicedata.components.confs.ChatConfig;
+import com.romanm.jwtservicedata.constants.MessageConstants;
+import com.romanm.jwtservicedata.models.ChatItem;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Доставка новых сообщений чата подключенным получателям. У каждого получателя, пока он подключен, есть
+ * свой канал в памяти узла, а каждое подключение получает сообщения через свою очередь ограниченного размера:
+ * медленный клиент теряет самые старые сообщения и не задерживает остальных. Сообщение также публикуется
+ * в канал Redis chat.push-channel, откуда его получают подключения на других узлах
+ */
+@Slf4j
+@Component
+public class ChatMessageBroker {
+    private static final RedisSerializationContext.SerializationPair<String> STRING_PAIR = RedisSerializationContext.SerializationPair.fromSerializer(RedisSerializer.string());
+    private static final Duration MIN_RETRY_BACKOFF = Duration.ofSeconds(1);
+    private static final Duration MAX_RETRY_BACKOFF = Duration.ofSeconds(30);
+
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final ObjectProvider<ReactiveRedisMessageListenerContainer> listenerContainer;
+    private final ObjectMapper objectMapper;
+    private final ChatConfig chatConfig;
+    private Disposable subscription;
+
+    /**
+     * Конструктор класса ChatMessageBroker
+     * @param redisTemplate ReactiveStringRedisTemplate
+     * @param listenerContainer ObjectProvider<ReactiveRedisMessageListenerContainer>
+     * @param objectMapper ObjectMapper
+     * @param chatConfig ChatConfig
+     */
+    @Autowired
+    public ChatMessageBroker(ReactiveStringRedisTemplate redisTemplate, ObjectProvider<ReactiveRedisMessageListenerContainer> listenerContainer,
+                             ObjectMapper objectMapper, ChatConfig chatConfig) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.objectMapper = objectMapper;
+        this.chatConfig = chatConfig;
+    }
+
+    /**
+     * Подписаться на сообщения других узлов
+     */
+    @PostConstruct
+    public void subscribe() {
+        this.subscription = Flux.defer(() -> this.listenerContainer.getObject().receive(List.of(ChannelTopic.of(this.chatConfig.getPushChannel())), STRING_PAIR, STRING_PAIR))
+                //Создание контейнера блокирует поток до подключения к Redis
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnError(err -> log.error(MessageConstants.MSG_PREFIX+MessageConstants.MSG_CHAT_PUSH_RECEIVE_FAILED, err.getMessage()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, MIN_RETRY_BACKOFF).maxBackoff(MAX_RETRY_BACKOFF))
+                .map(ReactiveSubscription.Message::getMessage)
+                .subscribe(this::onMessage);
+    }
+
+    @PreDestroy
+    public void unsubscribe() {
+        if (this.subscription != null) {
+            this.subscription.dispose();
+        }
+    }
+
+    /**
+     * Поток новых сообщений для получателя userId. Канал получателя удаляется, когда отключается последний его поток
+     * @param userId String
+     * @return Flux<ChatItem>
+     */
+    public Flux<ChatItem> messagesOf(String userId) {
+        return Flux.defer(() -> {
+            Channel channel = this.channels.compute(userId, (id, current) -> {
+                Channel result = (current != null) ? current : new Channel();
+                result.subscribers++;
+                return result;
+            });
+            return channel.sink.asFlux()
+                    .onBackpressureBuffer(this.chatConfig.getPushBufferSize(),
+                            dropped -> log.warn(MessageConstants.MSG_PREFIX+MessageConstants.MSG_CHAT_PUSH_DROPPED, dropped.getId(), userId),
+                            BufferOverflowStrategy.DROP_OLDEST)
+                    .doFinally(signal -> this.channels.computeIfPresent(userId, (id, current) -> (--current.subscribers > 0) ? current : null));
+        });
+    }
+
+    /**
+     * Доставить сообщение подключениям получателя на этом узле и опубликовать его для остальных узлов.
+     * Ошибка публикации в Redis не прерывает сохранение сообщения
+     * @param chatItem ChatItem
+     * @return Mono<Void>
+     */
+    public Mono<Void> publish(ChatItem chatItem) {
+        return Mono.defer(() -> {
+            this.deliver(chatItem);
+
+            String envelope;
+            try {
+                envelope = this.objectMapper.writeValueAsString(new Envelope(this.nodeId, chatItem));
+            } catch (JsonProcessingException e) {
+                log.error(MessageConstants.MSG_PREFIX+MessageConstants.MSG_CHAT_PUSH_FAILED, chatItem.getId(), e.getMessage());
+                return Mono.empty();
+            }
+            return this.redisTemplate.convertAndSend(this.chatConfig.getPushChannel(), envelope)
+                    .doOnError(err -> log.error(MessageConstants.MSG_PREFIX+MessageConstants.MSG_CHAT_PUSH_FAILED, chatItem.getId(), err.getMessage()))
+                    .onErrorResume(err -> Mono.empty())
+                    .then();
+        });
+    }
+
+    /**
+     * Кол-во получателей, подключенных к этому узлу
+     * @return int
+     */
+    public int getConnectedUsers() {
+        return this.channels.size();
+    }
+
+    /**
+     * Обработать сообщение из Redis. Сообщения, опубликованные этим узлом, уже доставлены
+     * @param message String
+     */
+    void onMessage(String message) {
+        try {
+            Envelope envelope = this.objectMapper.readValue(message, Envelope.class);
+            if (!this.nodeId.equals(envelope.getNodeId()) && (envelope.getChatItem() != null)) {
+                this.deliver(envelope.getChatItem());
+            }
+        } catch (JsonProcessingException e) {
+            log.error(MessageConstants.MSG_PREFIX+MessageConstants.MSG_CHAT_PUSH_INVALID, e.getMessage());
+        }
+    }
+
+    /**
+     * Передать сообщение в канал получателя, если он подключен к этому узлу
+     * @param chatItem ChatItem
+     */
+    private void deliver(ChatItem chatItem) {
+        Channel channel = this.channels.get(chatItem.getUserId());
+        if (channel != null) {
+            //Сообщения одного получателя могут сохраняться одновременно в разных потоках
+            channel.sink.emitNext(chatItem, (signal, result) -> result == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+        }
+    }
+
+    /**
+     * Канал получателя и кол-во его подключений. Кол-во меняется только внутри compute по коду получателя
+     */
+    private static class Channel {
+        private final Sinks.Many<ChatItem> sink = Sinks.many().multicast().directBestEffort();
+        private int subscribers = 0;
+    }
+
+    /**
+     * Сообщение в канале Redis с кодом узла, который его опубликовал
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class Envelope {
+        private String nodeId;
+        private ChatItem chatItem;
+    }
+}
@@ -0,0 +1,16 @@
+package com.romanm.jwtservicedata.components.confs;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "auth")
+public class AuthConfig {
+    private int tokenCacheSize;
+    private long tokenCacheTtlMs;
+    private int userCacheSize;
+    private long userCacheTtlMs;
+    private String userInvalidationChannel;
+}
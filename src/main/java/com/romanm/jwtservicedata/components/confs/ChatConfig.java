@@ -0,0 +1,14 @@
+package com.romanm.jwtservicedata.components.confs;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat")
+public class ChatConfig {
+    private int pushBufferSize;
+    private long pushHeartbeatMs;
+    private String pushChannel;
+}
@@ -13,7 +13,9 @@ import reactor.core.publisher.MonoSink;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
@@ -21,25 +23,53 @@ import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.zip.CRC32;
 
 @Slf4j
 @Data
 @Component
 @ConfigurationProperties(prefix = "files")
 public class FileConfig {
+    public static final int SHARD_NAME_LENGTH = 2;
+    public static final int MAX_SHARD_LEVELS = 4;
+
     private int maxCount;
+    private long maxFileSize;
+    private long maxUserBytes;
     private String uploadsDir;
     private List<String> permittedFormats;
     private String thumbDir;
     private int thumbWidth;
     private String thumbExt;
+    private long cacheMaxAge;
+    private long thumbCacheSize;
+    private int indexMaxUsers;
+    private int ioThreads;
+    private int ioQueueSize;
+    private int thumbWorkers;
+    private int thumbQueueSize;
+    private long thumbWaitMs;
+    private int thumbsBatchMaxUsers;
+    private int thumbsBatchConcurrency;
+    private List<Integer> variantWidths;
+    private String variantDir;
+    private String storageType;
+    private String blobDir;
+    private long blobGcIntervalMs;
+    private long blobGcGraceMs;
+    private int shardLevels;
+    private long shardMigrationIntervalMs;
+    private int shardMigrationBatch;
+    private long profileUpdateDelayMs;
+    //Признак завершения переноса каталогов пользователей из плоской раскладки, устанавливается UserDirMigrator
+    private volatile boolean legacyDirsMigrated;
 
     /**
      * Проверить, является ли файл разрешенным
      * @param fileName String
      * @return FileStatus
      */
-    private FileStatus isPermittedFileType(String fileName) {
+    public FileStatus isPermittedFileType(String fileName) {
         FileStatus fileStatusDefault = new FileStatus(false, fileName, String.format(MessageConstants.MSG_FORMAT_FILE_INVALID, fileName, this.getPermittedFormats()));
 
         if ((fileName == null) || (fileName.isEmpty())) {
@@ -93,13 +123,137 @@ public class FileConfig {
         return Arrays.stream(resFilesTest).map(this::resourceToFile).filter(Objects::nonNull).filter(File::isFile).collect(Collectors.toList());
     }
 
+    /**
+     * Выдаст каталог верхних уровней, в котором лежит каталог пользователя. Имена уровней - шестнадцатеричные
+     * префиксы CRC32 идентификатора пользователя, по SHARD_NAME_LENGTH символов на уровень
+     * @param userId String
+     * @return Path
+     */
+    public Path getShardDir(String userId) {
+        Path shardDir = Paths.get(this.getUploadsDir());
+        int levels = Math.min(this.getShardLevels(), MAX_SHARD_LEVELS);
+        if (levels <= 0) {
+            return shardDir;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(userId.getBytes(StandardCharsets.UTF_8));
+        String hash = String.format("%08x", crc.getValue());
+        for (int level = 0; level < levels; level++) {
+            shardDir = shardDir.resolve(hash.substring(level*SHARD_NAME_LENGTH, (level+1)*SHARD_NAME_LENGTH));
+        }
+        return shardDir;
+    }
+
+    /**
+     * Выдаст путь к каталогу пользователя в раскладке по files.shard-levels уровням
+     * @param userId String
+     * @return Path
+     */
+    public Path getShardedUserDir(String userId) {
+        return this.getShardDir(userId).resolve(userId);
+    }
+
+    /**
+     * Выдаст путь к каталогу пользователя в плоской раскладке, прямо в files.uploads-dir
+     * @param userId String
+     * @return Path
+     */
+    public Path getLegacyUserDir(String userId) {
+        return Paths.get(String.format(CommonConstants.MULTIMEDIA_DEST_DIR, this.getUploadsDir(), userId));
+    }
+
+    /**
+     * Выдаст путь к каталогу пользователя. Пока перенос из плоской раскладки не завершен,
+     * еще не перенесенный каталог пользователя выдается по старому пути
+     * @param userId String
+     * @return Path
+     */
+    public Path getUserDir(String userId) {
+        Path userDir = this.getShardedUserDir(userId);
+        if ((this.getShardLevels() <= 0) || this.isLegacyDirsMigrated() || Files.isDirectory(userDir)) {
+            return userDir;
+        }
+
+        Path legacyDir = this.getLegacyUserDir(userId);
+        return Files.isDirectory(legacyDir) ? legacyDir : userDir;
+    }
+
+    /**
+     * Выдаст путь к файлу миниатюры пользователя
+     * @param userId String
+     * @return Path
+     */
+    public Path getUserThumbFile(String userId) {
+        return this.getUserDir(userId).resolve(this.getThumbDir()).resolve(this.getThumbFileName());
+    }
+
+    /**
+     * Выдаст путь к уменьшенной копии файла пользователя заданной ширины
+     * @param userId String
+     * @param fileName String
+     * @param width int
+     * @return Path
+     */
+    public Path getUserVariantFile(String userId, String fileName, int width) {
+        return this.getUserDir(userId).resolve(this.getVariantDir()).resolve(String.valueOf(width)).resolve(fileName);
+    }
+
+    /**
+     * Выдаст наименьшую ширину уменьшенной копии, не меньшую запрошенного размера. Вернет null, если подходящей копии нет
+     * @param size int
+     * @return Integer
+     */
+    public Integer getVariantWidth(int size) {
+        if ((size <= 0) || (this.getVariantWidths() == null)) {
+            return null;
+        }
+        return this.getVariantWidths().stream().filter(width -> (width >= size)).min(Integer::compare).orElse(null);
+    }
+
+    /**
+     * Выдаст имя файла в каталоге пользователя без обращения к диску. Вернет null, если путь выходит за пределы каталога пользователя
+     * @param userId String
+     * @param fileName String
+     * @return String
+     */
+    public String getUserFileName(String userId, String fileName) {
+        if ((userId == null) || userId.isEmpty() || (fileName == null) || fileName.isEmpty()) {
+            return null;
+        }
+
+        try {
+            //Имена проверяются в шардированной раскладке: в плоской раскладке те же имена дают тот же результат
+            Path userDir = this.getShardedUserDir(userId).normalize();
+            Path file = userDir.resolve(fileName).normalize();
+            boolean isUserDir = userId.equals(String.valueOf(userDir.getFileName())) && this.getShardDir(userId).normalize().equals(userDir.getParent());
+            if (isUserDir && userDir.equals(file.getParent())) {
+                return file.getFileName().toString();
+            }
+        } catch (InvalidPathException e) {
+            log.error(MessageConstants.errorPrefixMsg(e.getMessage()));
+        }
+        return null;
+    }
+
+    /**
+     * Выдаст путь к файлу пользователя без просмотра каталога. Вернет null, если путь выходит за пределы каталога пользователя
+     * @param userId String
+     * @param fileName String
+     * @return Path
+     */
+    public Path resolveUserFile(String userId, String fileName) {
+        String userFileName = this.getUserFileName(userId, fileName);
+        return (userFileName != null) ? this.getUserDir(userId).resolve(userFileName) : null;
+    }
+
     /**
      * Выдаст список файлов в каталоге пользователя
      * @param userId String
      * @return List<File>
      */
     public List<File> listFiles(String userId) {
-        try (Stream<Path> files = Files.list(Paths.get(String.format(CommonConstants.MULTIMEDIA_DEST_DIR, this.getUploadsDir(), userId)))) {
+        try (Stream<Path> files = Files.list(this.getUserDir(userId))) {
             return files.map(Path::toFile).filter(File::isFile).collect(Collectors.toList());
         } catch (IOException e) {
             log.error(MessageConstants.errorPrefixMsg(e.getMessage()));
@@ -108,13 +262,14 @@ public class FileConfig {
     }
 
     /**
-     * Найти нужный файл по имени из списка файлов
+     * Найти нужный файл по имени в каталоге пользователя
      * @param fileName String
      * @param userId String
      * @return File
      */
     public File findFile(String fileName, String userId) {
-        return this.listFiles(userId).stream().filter(f -> (f.getName().equals(fileName))).findFirst().orElse(null);
+        Path file = this.resolveUserFile(userId, fileName);
+        return ((file != null) && Files.isRegularFile(file)) ? file.toFile() : null;
     }
 
     /**
@@ -0,0 +1,12 @@
+package com.romanm.jwtservicedata.components.confs;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "logs")
+public class LogConfig {
+    private double accessSampleRate;
+}
@@ -0,0 +1,15 @@
+package com.romanm.jwtservicedata.components.confs;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "tracing")
+public class TracingConfig {
+    private boolean enabled;
+    private String serviceName;
+    private String otlpEndpoint;
+    private double sampleRatio;
+}
@@ -0,0 +1,240 @@
+package com.romanm.jwtservicedata.components.files;
+
+import com.romanm.jwtservicedata.components.confs.FileConfig;
+import com.romanm.jwtservicedata.constants.MessageConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище содержимого файлов по хешу SHA-256. Одинаковое содержимое хранится один раз в каталоге blob-dir/ab/cd/<hash>,
+ * а файл в каталоге пользователя является жесткой ссылкой на него (или копией, если ссылки не поддерживаются).
+ * Ссылки пользователя на содержимое учитываются в манифесте каталога пользователя, неиспользуемое содержимое
+ * удаляется сборкой мусора. Файлы пользователя никогда не изменяются на месте, только заменяются целиком
+ */
+@Slf4j
+@Component
+public class BlobStore {
+    public static final String STORAGE_TYPE_BLOB = "blob";
+    public static final String MANIFEST_FILE = ".manifest";
+    private static final String HIDDEN_FILE_PREFIX = ".";
+    private static final String LINK_FILE_SUFFIX = ".link";
+    private static final int SHARD_LENGTH = 2;
+    private static final int MANIFEST_LOCKS = 64;
+
+    private final FileConfig fileConfig;
+    private final Object[] manifestLocks = new Object[MANIFEST_LOCKS];
+    private final Object gcLock = new Object();
+    private final ConcurrentHashMap<String, Integer> pendingHashes = new ConcurrentHashMap<>();
+
+    /**
+     * Конструктор класса BlobStore
+     * @param fileConfig FileConfig
+     */
+    @Autowired
+    public BlobStore(FileConfig fileConfig) {
+        this.fileConfig = fileConfig;
+        for (int i = 0; i < MANIFEST_LOCKS; i++) {
+            this.manifestLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * Включено ли хранение файлов по хешу содержимого (files.storage-type=blob)
+     * @return boolean
+     */
+    public boolean isEnabled() {
+        return STORAGE_TYPE_BLOB.equals(this.fileConfig.getStorageType());
+    }
+
+    /**
+     * Выдаст путь к содержимому с заданным хешем
+     * @param hash String
+     * @return Path
+     */
+    public Path getBlobFile(String hash) {
+        return Paths.get(this.fileConfig.getBlobDir(), hash.substring(0, SHARD_LENGTH), hash.substring(SHARD_LENGTH, 2*SHARD_LENGTH), hash);
+    }
+
+    /**
+     * Сохранить загруженный файл в хранилище и сделать файл пользователя ссылкой на него.
+     * Если такое содержимое уже есть, загруженный файл удаляется
+     * @param uploadFile Path временный файл загрузки
+     * @param hash String
+     * @param userId String
+     * @param file Path файл в каталоге пользователя
+     */
+    public void store(Path uploadFile, String hash, String userId, Path file) throws IOException {
+        Path blob = this.getBlobFile(hash);
+        //Пока ссылка не создана, сборка мусора не удалит содержимое
+        this.pendingHashes.merge(hash, 1, Integer::sum);
+        try {
+            synchronized (this.gcLock) {
+                if (Files.exists(blob)) {
+                    Files.delete(uploadFile);
+                } else {
+                    Files.createDirectories(blob.getParent());
+                    try {
+                        Files.move(uploadFile, blob, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (FileAlreadyExistsException e) {
+                        Files.delete(uploadFile);
+                    }
+                }
+            }
+
+            Path link = file.resolveSibling(HIDDEN_FILE_PREFIX+file.getFileName()+LINK_FILE_SUFFIX);
+            Files.deleteIfExists(link);
+            try {
+                Files.createLink(link, blob);
+            } catch (UnsupportedOperationException | IOException e) {
+                Files.copy(blob, link);
+            }
+            Files.move(link, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            this.updateManifest(userId, manifest -> manifest.setProperty(file.getFileName().toString(), hash));
+        } finally {
+            this.pendingHashes.computeIfPresent(hash, (key, count) -> (count > 1) ? count-1 : null);
+        }
+    }
+
+    /**
+     * Удалить из манифеста пользователя ссылку на содержимое удаленного файла
+     * @param userId String
+     * @param fileName String
+     */
+    public void unreference(String userId, String fileName) throws IOException {
+        this.updateManifest(userId, manifest -> manifest.remove(fileName));
+    }
+
+    /**
+     * Изменение манифеста пользователя
+     */
+    private interface ManifestUpdate {
+        void apply(Properties manifest);
+    }
+
+    /**
+     * Прочитать, изменить и атомарно записать манифест пользователя
+     * @param userId String
+     * @param update ManifestUpdate
+     */
+    private void updateManifest(String userId, ManifestUpdate update) throws IOException {
+        Path manifestFile = this.fileConfig.getUserDir(userId).resolve(MANIFEST_FILE);
+        synchronized (this.manifestLocks[Math.floorMod(userId.hashCode(), MANIFEST_LOCKS)]) {
+            Properties manifest = this.readManifest(manifestFile);
+            update.apply(manifest);
+
+            Path tmp = manifestFile.resolveSibling(MANIFEST_FILE+LINK_FILE_SUFFIX);
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                manifest.store(out, null);
+            }
+            Files.move(tmp, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * Прочитать манифест пользователя
+     * @param manifestFile Path
+     * @return Properties
+     */
+    private Properties readManifest(Path manifestFile) throws IOException {
+        Properties manifest = new Properties();
+        if (Files.isRegularFile(manifestFile)) {
+            try (InputStream in = Files.newInputStream(manifestFile)) {
+                manifest.load(in);
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Собрать хеши содержимого, на которое ссылаются манифесты всех пользователей
+     * @return Set<String>
+     */
+    private Set<String> markReferenced() throws IOException {
+        Path uploadsDir = Paths.get(this.fileConfig.getUploadsDir());
+        if (!Files.isDirectory(uploadsDir)) {
+            return Set.of();
+        }
+
+        //Манифест лежит в каталоге пользователя под уровнями шардирования, каталоги плоской раскладки мельче
+        int manifestDepth = Math.max(0, Math.min(this.fileConfig.getShardLevels(), FileConfig.MAX_SHARD_LEVELS))+2;
+        Set<String> referenced = new HashSet<>();
+        try (Stream<Path> manifests = Files.find(uploadsDir, manifestDepth, (path, attrs) -> (attrs.isRegularFile() && path.getFileName().toString().equals(MANIFEST_FILE)))) {
+            for (Path manifestFile : manifests.collect(Collectors.toList())) {
+                this.readManifest(manifestFile).values().forEach(hash -> referenced.add(hash.toString()));
+            }
+        }
+        return referenced;
+    }
+
+    /**
+     * Удалить содержимое, на которое не ссылается ни один манифест и которое старше files.blob-gc-grace-ms
+     * @return int число удаленных файлов
+     */
+    public int collectGarbage() throws IOException {
+        Path blobDir = Paths.get(this.fileConfig.getBlobDir());
+        if (!Files.isDirectory(blobDir)) {
+            return 0;
+        }
+
+        Set<String> referenced = this.markReferenced();
+        long graceTime = System.currentTimeMillis()-this.fileConfig.getBlobGcGraceMs();
+        int deleted = 0;
+        try (Stream<Path> blobs = Files.find(blobDir, 3, (path, attrs) -> this.isGarbage(path, attrs, referenced, graceTime))) {
+            for (Path blob : blobs.collect(Collectors.toList())) {
+                synchronized (this.gcLock) {
+                    if (!this.pendingHashes.containsKey(blob.getFileName().toString()) && Files.deleteIfExists(blob)) {
+                        deleted++;
+                    }
+                }
+            }
+        }
+        log.info(MessageConstants.MSG_PREFIX+MessageConstants.MSG_BLOBS_COLLECTED, deleted);
+        return deleted;
+    }
+
+    /**
+     * Является ли файл хранилища неиспользуемым содержимым
+     * @param path Path
+     * @param attrs BasicFileAttributes
+     * @param referenced Set<String>
+     * @param graceTime long
+     * @return boolean
+     */
+    private boolean isGarbage(Path path, BasicFileAttributes attrs, Set<String> referenced, long graceTime) {
+        return attrs.isRegularFile() && !referenced.contains(path.getFileName().toString()) && (attrs.lastModifiedTime().toMillis() < graceTime);
+    }
+
+    /**
+     * Периодическая сборка мусора в хранилище содержимого
+     */
+    @Scheduled(fixedDelayString = "${files.blob-gc-interval-ms}", initialDelayString = "${files.blob-gc-interval-ms}")
+    public void scheduledCollectGarbage() {
+        if (!this.isEnabled()) {
+            return;
+        }
+        try {
+            this.collectGarbage();
+        } catch (IOException e) {
+            log.error(MessageConstants.errorPrefixMsg(e.getMessage()));
+        }
+    }
+}
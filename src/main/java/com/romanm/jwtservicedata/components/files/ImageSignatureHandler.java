@@ -0,0 +1,62 @@
+package com.romanm.jwtservicedata.components.files;
+
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Проверка содержимого файла изображения по сигнатуре (magic bytes) в начале файла
+ */
+@Component
+public class ImageSignatureHandler {
+    public static final int SIGNATURE_LENGTH = 8;
+
+    private static final byte[] PNG = {(byte) 0x89, 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A};
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+    private static final byte[] GIF87A = {0x47, 0x49, 0x46, 0x38, 0x37, 0x61};
+    private static final byte[] GIF89A = {0x47, 0x49, 0x46, 0x38, 0x39, 0x61};
+
+    private final Map<String, List<byte[]>> imageFormatsSignaturesMap = Map.of(
+            "png", List.of(PNG),
+            "jpg", List.of(JPEG),
+            "jpeg", List.of(JPEG),
+            "gif", List.of(GIF87A, GIF89A)
+    );
+
+    /**
+     * Проверить, что начало файла соответствует формату, указанному в расширении имени файла
+     * @param fileName String
+     * @param header byte[]
+     * @param length int
+     * @return boolean
+     */
+    public final boolean isSignatureValid(String fileName, byte[] header, int length) {
+        String fileExtension = StringUtils.getFilenameExtension(fileName);
+        List<byte[]> signatures = (fileExtension == null) ? null : this.imageFormatsSignaturesMap.get(fileExtension);
+        if (signatures == null) {
+            return false;
+        }
+        return signatures.stream().anyMatch(signature -> this.startsWith(header, length, signature));
+    }
+
+    /**
+     * Начинаются ли данные с сигнатуры
+     * @param header byte[]
+     * @param length int
+     * @param signature byte[]
+     * @return boolean
+     */
+    private boolean startsWith(byte[] header, int length, byte[] signature) {
+        if (length < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (header[i] != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,91 @@
+package com.romanm.jwtservicedata.components.files;
+
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Потоковая запись ответа multipart/mixed: каждая часть пишется сразу после получения, не дожидаясь остальных.
+ * Содержимое в памяти (миниатюры из кеша) передается без копирования
+ */
+@Component
+public class MultipartMixedEncoder {
+    private static final String CRLF = "\r\n";
+    private static final String BOUNDARY_PREFIX = "--";
+    private static final String HEADER_SEPARATOR = ": ";
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Сгенерировать разделитель частей
+     * @return String
+     */
+    public String generateBoundary() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * Медиатип ответа с заданным разделителем
+     * @param boundary String
+     * @return MediaType
+     */
+    public MediaType getMediaType(String boundary) {
+        return new MediaType(MediaType.MULTIPART_MIXED, Map.of("boundary", boundary));
+    }
+
+    /**
+     * Записать части в тело ответа. Заголовки части берутся из HttpEntity, содержимое - из ресурса
+     * @param parts Flux<HttpEntity<Resource>>
+     * @param boundary String
+     * @param bufferFactory DataBufferFactory
+     * @return Flux<DataBuffer>
+     */
+    public Flux<DataBuffer> encode(Flux<HttpEntity<Resource>> parts, String boundary, DataBufferFactory bufferFactory) {
+        return parts.concatMap(part -> Flux.concat(
+                        Mono.fromCallable(() -> this.encodePartHeaders(part, boundary, bufferFactory)),
+                        this.encodeContent(part.getBody(), bufferFactory),
+                        Mono.fromCallable(() -> this.encodeText(CRLF, bufferFactory))))
+                .concatWith(Mono.fromCallable(() -> this.encodeText(BOUNDARY_PREFIX+boundary+BOUNDARY_PREFIX+CRLF, bufferFactory)))
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+    }
+
+    /**
+     * Разделитель и заголовки части
+     * @param part HttpEntity<Resource>
+     * @param boundary String
+     * @param bufferFactory DataBufferFactory
+     * @return DataBuffer
+     */
+    private DataBuffer encodePartHeaders(HttpEntity<Resource> part, String boundary, DataBufferFactory bufferFactory) {
+        StringBuilder headers = new StringBuilder(BOUNDARY_PREFIX).append(boundary).append(CRLF);
+        part.getHeaders().forEach((name, values) -> values.forEach(value -> headers.append(name).append(HEADER_SEPARATOR).append(value).append(CRLF)));
+        return this.encodeText(headers.append(CRLF).toString(), bufferFactory);
+    }
+
+    /**
+     * Содержимое части
+     * @param resource Resource
+     * @param bufferFactory DataBufferFactory
+     * @return Flux<DataBuffer>
+     */
+    private Flux<DataBuffer> encodeContent(Resource resource, DataBufferFactory bufferFactory) {
+        if (resource instanceof ByteArrayResource) {
+            return Flux.just(bufferFactory.wrap(((ByteArrayResource) resource).getByteArray()));
+        }
+        return DataBufferUtils.read(resource, bufferFactory, BUFFER_SIZE);
+    }
+
+    private DataBuffer encodeText(String text, DataBufferFactory bufferFactory) {
+        return bufferFactory.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
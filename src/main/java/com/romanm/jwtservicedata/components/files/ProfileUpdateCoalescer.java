@@ -0,0 +1,106 @@
+package com.romanm.jwtservicedata.components.files;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+
+/**
+ * Объединение обновлений ссылок на изображения в профиле пользователя. Запросы одного пользователя, пришедшие
+ * в течение задержки после первого запроса, выполняются одним обновлением. Обновления одного пользователя
+ * выполняются последовательно, поэтому более раннее обновление не перезапишет более позднее
+ */
+public class ProfileUpdateCoalescer {
+    private final Duration delay;
+    private final BiFunction<String, String, Mono<Void>> update;
+    private final ConcurrentHashMap<String, PendingUpdate> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Ожидающее обновление профиля пользователя. Имя файла миниатюры изменяется только до начала обновления
+     */
+    private static class PendingUpdate {
+        private final Sinks.Empty<Void> done = Sinks.empty();
+        private final Mono<Void> previous;
+        private String thumbFileName;
+        private boolean started = false;
+
+        private PendingUpdate(Mono<Void> previous, String thumbFileName) {
+            this.previous = previous;
+            this.thumbFileName = thumbFileName;
+        }
+    }
+
+    /**
+     * Конструктор класса ProfileUpdateCoalescer
+     * @param delay Duration время накопления запросов
+     * @param update BiFunction<String, String, Mono<Void>> обновление профиля по коду пользователя и имени файла миниатюры
+     */
+    public ProfileUpdateCoalescer(Duration delay, BiFunction<String, String, Mono<Void>> update) {
+        this.delay = delay;
+        this.update = update;
+    }
+
+    /**
+     * Запросить обновление профиля пользователя. Обновление выполнится, даже если на результат никто не подпишется.
+     * Вернет Mono, завершаемый после выполнения обновления, в которое вошел этот запрос
+     * @param userId String
+     * @param thumbFileName String имя файла новой миниатюры или null, если миниатюра не менялась
+     * @return Mono<Void>
+     */
+    public Mono<Void> submit(String userId, String thumbFileName) {
+        AtomicBoolean created = new AtomicBoolean();
+        PendingUpdate pendingUpdate = this.pending.compute(userId, (key, current) -> {
+            if ((current != null) && !current.started) {
+                if (thumbFileName != null) {
+                    current.thumbFileName = thumbFileName;
+                }
+                return current;
+            }
+            created.set(true);
+            Mono<Void> previous = (current == null) ? Mono.empty() : current.done.asMono().onErrorResume(err -> Mono.empty());
+            return new PendingUpdate(previous, thumbFileName);
+        });
+
+        if (created.get()) {
+            Mono.delay(this.delay)
+                    .then(pendingUpdate.previous)
+                    .then(Mono.defer(() -> this.start(userId, pendingUpdate)))
+                    .subscribe(null, err -> this.finish(userId, pendingUpdate, err), () -> this.finish(userId, pendingUpdate, null));
+        }
+        return pendingUpdate.done.asMono();
+    }
+
+    /**
+     * Начать обновление. После этого новые запросы пользователя попадут в следующее обновление
+     * @param userId String
+     * @param pendingUpdate PendingUpdate
+     * @return Mono<Void>
+     */
+    private Mono<Void> start(String userId, PendingUpdate pendingUpdate) {
+        this.pending.computeIfPresent(userId, (key, current) -> {
+            if (current == pendingUpdate) {
+                current.started = true;
+            }
+            return current;
+        });
+        return this.update.apply(userId, pendingUpdate.thumbFileName);
+    }
+
+    /**
+     * Сообщить ожидающим о завершении обновления
+     * @param userId String
+     * @param pendingUpdate PendingUpdate
+     * @param err Throwable
+     */
+    private void finish(String userId, PendingUpdate pendingUpdate, Throwable err) {
+        this.pending.remove(userId, pendingUpdate);
+        if (err == null) {
+            pendingUpdate.done.tryEmitEmpty();
+        } else {
+            pendingUpdate.done.tryEmitError(err);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.romanm.jwtservicedata.components.files;
+
+import com.romanm.jwtservicedata.components.confs.FileConfig;
+import com.romanm.jwtservicedata.constants.MessageConstants;
+import com.romanm.jwtservicedata.models.files.VariantResource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Класс формирования заголовков HTTP кеширования (ETag, Last-Modified, Cache-Control) для файлов пользователя
+ */
+@Slf4j
+@Component
+public class ResourceCacheHandler {
+    private static final String IMMUTABLE_DIRECTIVE = ", immutable";
+
+    private final FileConfig fileConfig;
+
+    /**
+     * Конструктор класса ResourceCacheHandler
+     * @param fileConfig FileConfig
+     */
+    @Autowired
+    public ResourceCacheHandler(FileConfig fileConfig) {
+        this.fileConfig = fileConfig;
+    }
+
+    /**
+     * Получить версию файла по его размеру и дате изменения
+     * @param length long
+     * @param lastModified long
+     * @return String
+     */
+    public static String getVersion(long length, long lastModified) {
+        return Long.toHexString(length)+"-"+Long.toHexString(lastModified);
+    }
+
+    /**
+     * Получить версию файла
+     * @param file File
+     * @return String
+     */
+    public static String getVersion(File file) {
+        return getVersion(file.length(), file.lastModified());
+    }
+
+    /**
+     * Получить версию ресурса. Версия уменьшенной копии складывается из версии исходного файла и ширины копии.
+     * Вернет null, если версию определить нельзя
+     * @param resource Resource
+     * @return String
+     */
+    public final String getVersion(Resource resource) {
+        if (resource instanceof VariantResource) {
+            VariantResource variant = (VariantResource) resource;
+            return variant.getSourceVersion()+"-"+Integer.toHexString(variant.getWidth());
+        }
+        try {
+            return getVersion(resource.contentLength(), resource.lastModified());
+        } catch (IOException e) {
+            log.error(MessageConstants.errorPrefixMsg(e.getMessage()));
+        }
+        return null;
+    }
+
+    /**
+     * Получить значение заголовка Cache-Control. Ссылка с актуальной версией файла неизменяема, остальные проверяются при каждом запросе
+     * @param version String
+     * @param requestedVersion String
+     * @return String
+     */
+    public final String getCacheControl(String version, String requestedVersion) {
+        if ((version != null) && version.equals(requestedVersion)) {
+            return CacheControl.maxAge(this.fileConfig.getCacheMaxAge(), TimeUnit.SECONDS).cachePublic().getHeaderValue()+IMMUTABLE_DIRECTIVE;
+        }
+        return CacheControl.noCache().cachePublic().getHeaderValue();
+    }
+
+    /**
+     * Получить версию, указываемую в ссылке на ресурс. Для уменьшенной копии это версия исходного файла
+     * @param resource Resource
+     * @param version String
+     * @return String
+     */
+    private String getLinkVersion(Resource resource, String version) {
+        return (resource instanceof VariantResource) ? ((VariantResource) resource).getSourceVersion() : version;
+    }
+
+    /**
+     * Сформировать ответ с файлом и заголовками кеширования. Условный запрос с совпавшим ETag получит 304 без чтения файла
+     * @param resource Resource
+     * @param mediaType String
+     * @param requestedVersion String
+     * @return ResponseEntity<Resource>
+     */
+    public final ResponseEntity<Resource> toResponse(Resource resource, String mediaType, String requestedVersion) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok().contentType(MediaType.parseMediaType(mediaType));
+
+        String version = this.getVersion(resource);
+        if (version != null) {
+            builder.eTag(version);
+            try {
+                builder.lastModified(resource.lastModified());
+            } catch (IOException e) {
+                log.error(MessageConstants.errorPrefixMsg(e.getMessage()));
+            }
+        }
+
+        return builder.header(HttpHeaders.CACHE_CONTROL, this.getCacheControl(this.getLinkVersion(resource, version), requestedVersion)).body(resource);
+    }
+
+    /**
+     * Сформировать ответ с уменьшенной копией файла для заданного размера. Если копии еще нет и отдается исходный файл,
+     * ответ проверяется при каждом запросе, чтобы после создания копии клиент получил ее по той же ссылке
+     * @param resource Resource
+     * @param mediaType String
+     * @param requestedVersion String
+     * @param size int
+     * @return ResponseEntity<Resource>
+     */
+    public final ResponseEntity<Resource> toResponse(Resource resource, String mediaType, String requestedVersion, int size) {
+        boolean isFallback = (size > 0) && !(resource instanceof VariantResource);
+        return this.toResponse(resource, mediaType, isFallback ? null : requestedVersion);
+    }
+}
@@ -0,0 +1,151 @@
+package com.romanm.jwtservicedata.components.files;
+
+import com.romanm.jwtservicedata.components.confs.FileConfig;
+import com.romanm.jwtservicedata.constants.MessageConstants;
+import com.romanm.jwtservicedata.models.files.CachedResource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU кеш миниатюр пользователей в памяти, ограниченный суммарным размером содержимого в байтах
+ */
+@Slf4j
+@Component
+public class ThumbCache {
+    private final long maxBytes;
+    private final LinkedHashMap<String, CachedResource> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes = 0;
+    private long generation = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Конструктор класса ThumbCache
+     * @param fileConfig FileConfig
+     */
+    @Autowired
+    public ThumbCache(FileConfig fileConfig) {
+        this.maxBytes = fileConfig.getThumbCacheSize();
+    }
+
+    /**
+     * Получить миниатюру пользователя из кеша или прочитать ее с диска и поместить в кеш. Вернет null, если файла нет
+     * @param userId String
+     * @param thumbFile Path
+     * @return CachedResource
+     */
+    public CachedResource load(String userId, Path thumbFile) {
+        long loadGeneration;
+        synchronized (this) {
+            CachedResource cached = this.entries.get(userId);
+            if (cached != null) {
+                this.hits.incrementAndGet();
+                return cached;
+            }
+            this.misses.incrementAndGet();
+            loadGeneration = this.generation;
+        }
+
+        CachedResource resource;
+        try {
+            resource = new CachedResource(Files.readAllBytes(thumbFile), Files.getLastModifiedTime(thumbFile).toMillis(), thumbFile.toString());
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.error(MessageConstants.errorPrefixMsg(e.getMessage()));
+            return null;
+        }
+
+        synchronized (this) {
+            //Миниатюра могла измениться, пока файл читался - такое содержимое в кеш не кладем
+            if ((loadGeneration == this.generation) && (resource.contentLength() <= this.maxBytes)) {
+                this.put(userId, resource);
+            }
+        }
+        return resource;
+    }
+
+    /**
+     * Удалить миниатюру пользователя из кеша
+     * @param userId String
+     */
+    public synchronized void invalidate(String userId) {
+        this.generation++;
+        CachedResource removed = this.entries.remove(userId);
+        if (removed != null) {
+            this.currentBytes -= removed.contentLength();
+        }
+    }
+
+    /**
+     * Поместить миниатюру в кеш и вытеснить давно не запрашиваемые, если превышен лимит по объему
+     * @param userId String
+     * @param resource CachedResource
+     */
+    private void put(String userId, CachedResource resource) {
+        CachedResource previous = this.entries.put(userId, resource);
+        if (previous != null) {
+            this.currentBytes -= previous.contentLength();
+        }
+        this.currentBytes += resource.contentLength();
+
+        Iterator<Map.Entry<String, CachedResource>> iterator = this.entries.entrySet().iterator();
+        while ((this.currentBytes > this.maxBytes) && iterator.hasNext()) {
+            this.currentBytes -= iterator.next().getValue().contentLength();
+            iterator.remove();
+            this.evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Число попаданий в кеш
+     * @return long
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * Число промахов кеша
+     * @return long
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * Число вытесненных из кеша миниатюр
+     * @return long
+     */
+    public long getEvictions() {
+        return this.evictions.get();
+    }
+
+    /**
+     * Число миниатюр в кеше
+     * @return int
+     */
+    public synchronized int getSize() {
+        return this.entries.size();
+    }
+
+    /**
+     * Суммарный размер миниатюр в кеше в байтах
+     * @return long
+     */
+    public synchronized long getBytes() {
+        return this.currentBytes;
+    }
+}
@@ -0,0 +1,168 @@
+package com.romanm.jwtservicedata.components.files;
+
+import com.romanm.jwtservicedata.components.confs.FileConfig;
+import com.romanm.jwtservicedata.models.responses.files.FileStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Очередь создания миниатюр и уменьшенных копий изображений в фоновом пуле потоков, ограниченном по числу ядер процессора.
+ * Задачи одного пользователя выполняются последовательно, повторный запрос той же задачи получит ожидающую в очереди задачу
+ */
+@Slf4j
+@Component
+public class ThumbPipeline {
+    private static final String THUMB_THREAD_PREFIX = "thumb-worker-";
+
+    private final ThreadPoolExecutor executor;
+    private final ConcurrentHashMap<String, ThumbTask> tasks = new ConcurrentHashMap<>();
+
+    /**
+     * Задача создания миниатюры выбранного файла и обработчики результата всех запросов, получивших эту задачу.
+     * Обработчики добавляются только пока задача не запущена
+     */
+    private static class ThumbTask {
+        private final String fileName;
+        private final List<UnaryOperator<FileStatus>> callbacks = new ArrayList<>();
+        private boolean started = false;
+        private CompletableFuture<FileStatus> future;
+
+        private ThumbTask(String fileName, UnaryOperator<FileStatus> onDone) {
+            this.fileName = fileName;
+            this.callbacks.add(onDone);
+        }
+
+        /**
+         * Добавить обработчик результата, если задача еще не запущена
+         * @param onDone UnaryOperator<FileStatus>
+         * @return boolean
+         */
+        private synchronized boolean join(UnaryOperator<FileStatus> onDone) {
+            if (this.started) {
+                return false;
+            }
+            this.callbacks.add(onDone);
+            return true;
+        }
+
+        /**
+         * Выполнить задачу и обработчики результата по порядку добавления
+         * @param task Supplier<FileStatus>
+         * @return FileStatus
+         */
+        private FileStatus run(Supplier<FileStatus> task) {
+            List<UnaryOperator<FileStatus>> onDone;
+            synchronized (this) {
+                this.started = true;
+                onDone = new ArrayList<>(this.callbacks);
+            }
+            FileStatus fileStatus = task.get();
+            for (UnaryOperator<FileStatus> callback : onDone) {
+                fileStatus = callback.apply(fileStatus);
+            }
+            return fileStatus;
+        }
+    }
+
+    /**
+     * Конструктор класса ThumbPipeline
+     * @param fileConfig FileConfig
+     */
+    @Autowired
+    public ThumbPipeline(FileConfig fileConfig) {
+        int workers = fileConfig.getThumbWorkers() > 0 ? fileConfig.getThumbWorkers() : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, THUMB_THREAD_PREFIX+threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, fileConfig.getThumbQueueSize())), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Поставить в очередь создание миниатюры пользователя
+     * @param userId String
+     * @param fileName String
+     * @param task Supplier<FileStatus>
+     * @return CompletableFuture<FileStatus>
+     */
+    public CompletableFuture<FileStatus> submit(String userId, String fileName, Supplier<FileStatus> task) {
+        return this.submit(userId, fileName, task, UnaryOperator.identity());
+    }
+
+    /**
+     * Поставить в очередь создание миниатюры пользователя. Если такая же задача еще ожидает в очереди, вернется она,
+     * а onDone выполнится вместе с обработчиками остальных запросов этой задачи. Иначе новая задача выполнится после
+     * текущей задачи пользователя, так как текущая могла прочитать устаревший файл.
+     * При переполнении очереди вернется задача, завершенная с RejectedExecutionException
+     * @param userId String
+     * @param fileName String
+     * @param task Supplier<FileStatus>
+     * @param onDone UnaryOperator<FileStatus> обработчик результата, выполняется в потоке задачи
+     * @return CompletableFuture<FileStatus>
+     */
+    public CompletableFuture<FileStatus> submit(String userId, String fileName, Supplier<FileStatus> task, UnaryOperator<FileStatus> onDone) {
+        ThumbTask thumbTask;
+        try {
+            thumbTask = this.tasks.compute(userId, (key, current) -> {
+                if ((current != null) && !current.future.isDone()) {
+                    if (current.fileName.equals(fileName) && current.join(onDone)) {
+                        return current;
+                    }
+                    if (this.executor.getQueue().remainingCapacity() == 0) {
+                        throw new RejectedExecutionException();
+                    }
+                    ThumbTask next = new ThumbTask(fileName, onDone);
+                    next.future = current.future.handle((res, err) -> fileName).thenApplyAsync(name -> next.run(task), this.executor);
+                    return next;
+                }
+                ThumbTask next = new ThumbTask(fileName, onDone);
+                next.future = CompletableFuture.supplyAsync(() -> next.run(task), this.executor);
+                return next;
+            });
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        thumbTask.future.whenComplete((res, err) -> this.tasks.remove(userId, thumbTask));
+        return thumbTask.future;
+    }
+
+    /**
+     * Число задач, ожидающих в очереди
+     * @return int
+     */
+    public int getQueued() {
+        return this.executor.getQueue().size();
+    }
+
+    /**
+     * Число выполняемых задач
+     * @return int
+     */
+    public int getActive() {
+        return this.executor.getActiveCount();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.executor.shutdownNow();
+    }
+}
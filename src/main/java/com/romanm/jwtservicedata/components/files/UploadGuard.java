@@ -0,0 +1,125 @@
+package com.romanm.jwtservicedata.components.files;
+
+import com.romanm.jwtservicedata.components.confs.FileConfig;
+import com.romanm.jwtservicedata.constants.MessageConstants;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Проверка загружаемого файла по мере поступления данных: сигнатура формата по первым байтам,
+ * размер файла и общий объем файлов пользователя. При нарушении загрузка прерывается, не дожидаясь конца файла.
+ * При необходимости по ходу загрузки считается хеш SHA-256 содержимого
+ */
+public class UploadGuard {
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    private final FileConfig fileConfig;
+    private final UserFileIndex userFileIndex;
+    private final ImageSignatureHandler imageSignatureHandler;
+    private final String userId;
+    private final String fileName;
+    private final MessageDigest digest;
+
+    private final byte[] header = new byte[ImageSignatureHandler.SIGNATURE_LENGTH];
+    private int headerLength = 0;
+    private long bytes = 0;
+
+    /**
+     * Исключение, прерывающее загрузку файла, не прошедшего проверку
+     */
+    public static class UploadRejectedException extends RuntimeException {
+        public UploadRejectedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Конструктор класса UploadGuard. Место под файл должно быть зарезервировано в UserFileIndex
+     * @param fileConfig FileConfig
+     * @param userFileIndex UserFileIndex
+     * @param imageSignatureHandler ImageSignatureHandler
+     * @param userId String
+     * @param fileName String
+     * @param hashed boolean считать ли хеш содержимого
+     */
+    public UploadGuard(FileConfig fileConfig, UserFileIndex userFileIndex, ImageSignatureHandler imageSignatureHandler, String userId, String fileName, boolean hashed) {
+        this.fileConfig = fileConfig;
+        this.userFileIndex = userFileIndex;
+        this.imageSignatureHandler = imageSignatureHandler;
+        this.userId = userId;
+        this.fileName = fileName;
+        try {
+            this.digest = hashed ? MessageDigest.getInstance(HASH_ALGORITHM) : null;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Проверить очередную часть файла. При нарушении буфер освобождается и бросается UploadRejectedException
+     * @param buffer DataBuffer
+     * @return DataBuffer
+     */
+    public DataBuffer check(DataBuffer buffer) {
+        int readable = buffer.readableByteCount();
+        String error = null;
+
+        if (this.headerLength < this.header.length) {
+            int count = Math.min(readable, this.header.length-this.headerLength);
+            for (int i = 0; i < count; i++) {
+                this.header[this.headerLength+i] = buffer.getByte(buffer.readPosition()+i);
+            }
+            this.headerLength += count;
+            if ((this.headerLength == this.header.length) && !this.isSignatureValid()) {
+                error = String.format(MessageConstants.MSG_FILE_CONTENT_INVALID, this.fileName);
+            }
+        }
+
+        if ((error == null) && (this.bytes+readable > this.fileConfig.getMaxFileSize())) {
+            error = String.format(MessageConstants.MSG_FILE_TOO_LARGE, this.fileName, this.fileConfig.getMaxFileSize());
+        } else if ((error == null) && !this.userFileIndex.reserveBytes(this.userId, this.fileName, readable, this.fileConfig.getMaxUserBytes())) {
+            error = String.format(MessageConstants.MSG_USER_FILES_SIZE_EXCEEDED, this.fileConfig.getMaxUserBytes(), this.fileName);
+        }
+
+        if (error != null) {
+            DataBufferUtils.release(buffer);
+            throw new UploadRejectedException(error);
+        }
+
+        if (this.digest != null) {
+            this.digest.update(buffer.asByteBuffer());
+        }
+        this.bytes += readable;
+        return buffer;
+    }
+
+    /**
+     * Завершить проверку после получения всего файла. Файл короче сигнатуры проверяется здесь
+     * @return long размер файла
+     */
+    public long complete() {
+        if ((this.headerLength < this.header.length) && !this.isSignatureValid()) {
+            throw new UploadRejectedException(String.format(MessageConstants.MSG_FILE_CONTENT_INVALID, this.fileName));
+        }
+        return this.bytes;
+    }
+
+    /**
+     * Хеш SHA-256 полученного содержимого в шестнадцатеричном виде. Вызывается один раз после complete()
+     * @return String
+     */
+    public String getHash() {
+        StringBuilder hash = new StringBuilder();
+        for (byte b : this.digest.digest()) {
+            hash.append(String.format("%02x", b));
+        }
+        return hash.toString();
+    }
+
+    private boolean isSignatureValid() {
+        return this.imageSignatureHandler.isSignatureValid(this.fileName, this.header, this.headerLength);
+    }
+}
@@ -0,0 +1,160 @@
+package com.romanm.jwtservicedata.components.files;
+
+import com.romanm.jwtservicedata.components.confs.FileConfig;
+import com.romanm.jwtservicedata.constants.MessageConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Фоновый перенос каталогов пользователей из плоской раскладки files.uploads-dir/<userId>
+ * в раскладку по files.shard-levels уровням. За один запуск переносится не более files.shard-migration-batch каталогов,
+ * каталоги с незавершенными загрузками переносятся при следующих запусках. До завершения переноса
+ * FileConfig выдает еще не перенесенные каталоги по старому пути, поэтому сервис работает без остановки
+ */
+@Slf4j
+@Component
+public class UserDirMigrator {
+    private static final String HIDDEN_FILE_PREFIX = ".";
+    private static final String HEX_DIGITS = "0123456789abcdef";
+
+    private final FileConfig fileConfig;
+    private final UserFileIndex userFileIndex;
+    private final ThumbCache thumbCache;
+
+    /**
+     * Конструктор класса UserDirMigrator
+     * @param fileConfig FileConfig
+     * @param userFileIndex UserFileIndex
+     * @param thumbCache ThumbCache
+     */
+    @Autowired
+    public UserDirMigrator(FileConfig fileConfig, UserFileIndex userFileIndex, ThumbCache thumbCache) {
+        this.fileConfig = fileConfig;
+        this.userFileIndex = userFileIndex;
+        this.thumbCache = thumbCache;
+    }
+
+    /**
+     * Является ли имя каталога в files.uploads-dir именем каталога верхнего уровня раскладки, а не каталогом пользователя
+     * @param name String
+     * @return boolean
+     */
+    private boolean isShardDirName(String name) {
+        return (name.length() == FileConfig.SHARD_NAME_LENGTH) && name.chars().allMatch(c -> HEX_DIGITS.indexOf(c) >= 0);
+    }
+
+    /**
+     * Является ли каталог хранилищем содержимого BlobStore, если оно расположено внутри files.uploads-dir
+     * @param dir Path
+     * @return boolean
+     */
+    private boolean isBlobDir(Path dir) {
+        return (this.fileConfig.getBlobDir() != null) && dir.toAbsolutePath().normalize().equals(Paths.get(this.fileConfig.getBlobDir()).toAbsolutePath().normalize());
+    }
+
+    /**
+     * Перенести очередную часть каталогов пользователей. Когда переносить больше нечего, в FileConfig отмечается
+     * завершение переноса, и проверка старых путей прекращается
+     * @param limit int
+     * @return int число перенесенных каталогов
+     */
+    public int migrate(int limit) throws IOException {
+        Path uploadsDir = Paths.get(this.fileConfig.getUploadsDir());
+        if (!Files.isDirectory(uploadsDir)) {
+            this.fileConfig.setLegacyDirsMigrated(true);
+            return 0;
+        }
+
+        List<String> legacyUsers = new ArrayList<>();
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(uploadsDir, Files::isDirectory)) {
+            for (Path dir : dirs) {
+                String name = dir.getFileName().toString();
+                if (!name.startsWith(HIDDEN_FILE_PREFIX) && !this.isShardDirName(name) && !this.isBlobDir(dir)) {
+                    legacyUsers.add(name);
+                }
+                if (legacyUsers.size() >= limit) {
+                    break;
+                }
+            }
+        }
+
+        if (legacyUsers.isEmpty()) {
+            this.fileConfig.setLegacyDirsMigrated(true);
+            log.info(MessageConstants.MSG_PREFIX+MessageConstants.MSG_USER_DIRS_MIGRATED);
+            return 0;
+        }
+
+        int migrated = 0;
+        for (String userId : legacyUsers) {
+            if (this.userFileIndex.runIfIdle(userId, () -> this.migrateUserDir(userId))) {
+                migrated++;
+            }
+        }
+        log.info(MessageConstants.MSG_PREFIX+MessageConstants.MSG_USER_DIRS_MOVED, migrated, legacyUsers.size());
+        return migrated;
+    }
+
+    /**
+     * Перенести каталог пользователя. Если каталог на новом месте уже есть, файлы переносятся по одному,
+     * при совпадении имен остается более новый файл
+     * @param userId String
+     * @return boolean
+     */
+    private boolean migrateUserDir(String userId) throws IOException {
+        Path legacyDir = this.fileConfig.getLegacyUserDir(userId);
+        Path userDir = this.fileConfig.getShardedUserDir(userId);
+        if (!Files.isDirectory(legacyDir)) {
+            return false;
+        }
+
+        Files.createDirectories(userDir.getParent());
+        if (!Files.exists(userDir)) {
+            Files.move(legacyDir, userDir, StandardCopyOption.ATOMIC_MOVE);
+        } else {
+            List<Path> files;
+            try (Stream<Path> walk = Files.walk(legacyDir)) {
+                files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+            }
+            for (Path file : files) {
+                Path target = userDir.resolve(legacyDir.relativize(file));
+                if (!Files.exists(target) || (Files.getLastModifiedTime(file).compareTo(Files.getLastModifiedTime(target)) > 0)) {
+                    Files.createDirectories(target.getParent());
+                    Files.move(file, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+            FileSystemUtils.deleteRecursively(legacyDir);
+        }
+
+        this.thumbCache.invalidate(userId);
+        return true;
+    }
+
+    /**
+     * Периодический перенос каталогов пользователей, пока он не завершен
+     */
+    @Scheduled(fixedDelayString = "${files.shard-migration-interval-ms}", initialDelayString = "${files.shard-migration-interval-ms}")
+    public void scheduledMigrate() {
+        if ((this.fileConfig.getShardLevels() <= 0) || this.fileConfig.isLegacyDirsMigrated()) {
+            return;
+        }
+        try {
+            this.migrate(this.fileConfig.getShardMigrationBatch());
+        } catch (IOException e) {
+            log.error(MessageConstants.errorPrefixMsg(e.getMessage()));
+        }
+    }
+}
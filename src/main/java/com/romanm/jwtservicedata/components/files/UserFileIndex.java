@@ -0,0 +1,349 @@
+package com.romanm.jwtservicedata.components.files;
+
+import com.romanm.jwtservicedata.components.confs.FileConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Индекс файлов в каталогах пользователей. Каталог читается с диска один раз при первом обращении,
+ * далее индекс поддерживается в актуальном состоянии при сохранении и удалении файлов.
+ * Загрузки резервируют место в каталоге пользователя атомарно, поэтому параллельные загрузки не превысят лимиты
+ */
+@Component
+public class UserFileIndex {
+    private static final String HIDDEN_FILE_PREFIX = ".";
+    private static final int TRIM_BATCH_DIVISOR = 10;
+
+    private final FileConfig fileConfig;
+    private final ConcurrentHashMap<String, UserFiles> index = new ConcurrentHashMap<>();
+    private final AtomicLong accessClock = new AtomicLong();
+    private final AtomicBoolean trimming = new AtomicBoolean();
+
+    /**
+     * Файлы каталога пользователя с размерами и незавершенные загрузки с числом уже принятых байт
+     */
+    private static class UserFiles {
+        private final Map<String, Long> sizes = new TreeMap<>();
+        private final Map<String, Long> reserved = new HashMap<>();
+        private boolean evicted = false;
+        private volatile boolean loaded = false;
+        private volatile long lastAccess;
+
+        /**
+         * Занятый файлами и загрузками объем. Перезаписываемый файл учитывается только объемом загрузки
+         * @return long
+         */
+        private long usedBytes() {
+            long used = this.reserved.values().stream().mapToLong(Long::longValue).sum();
+            for (Map.Entry<String, Long> file : this.sizes.entrySet()) {
+                if (!this.reserved.containsKey(file.getKey())) {
+                    used += file.getValue();
+                }
+            }
+            return used;
+        }
+
+        /**
+         * Число занятых мест в каталоге с учетом незавершенных загрузок новых файлов
+         * @return int
+         */
+        private int usedSlots() {
+            int slots = this.sizes.size();
+            for (String fileName : this.reserved.keySet()) {
+                if (!this.sizes.containsKey(fileName)) {
+                    slots++;
+                }
+            }
+            return slots;
+        }
+    }
+
+    /**
+     * Операция с каталогом пользователя, выполняемая при отсутствии незавершенных загрузок
+     */
+    public interface IdleAction {
+        boolean run() throws IOException;
+    }
+
+    /**
+     * Конструктор класса UserFileIndex
+     * @param fileConfig FileConfig
+     */
+    @Autowired
+    public UserFileIndex(FileConfig fileConfig) {
+        this.fileConfig = fileConfig;
+    }
+
+    /**
+     * Получить файлы пользователя, при отсутствии в индексе прочитать каталог. Каталог читается под блокировкой
+     * записи пользователя, а не ConcurrentHashMap, поэтому чтение диска не задерживает других пользователей
+     * @param userId String
+     * @return UserFiles
+     */
+    private UserFiles files(String userId) {
+        UserFiles files = this.index.get(userId);
+        if (files == null) {
+            UserFiles created = new UserFiles();
+            files = this.index.putIfAbsent(userId, created);
+            if (files == null) {
+                files = created;
+                files.lastAccess = this.accessClock.incrementAndGet();
+                this.trim(userId);
+            }
+        }
+        files.lastAccess = this.accessClock.incrementAndGet();
+
+        if (!files.loaded) {
+            synchronized (files) {
+                if (!files.loaded) {
+                    this.readDir(userId, files);
+                    files.loaded = true;
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Прочитать файлы из каталога пользователя. Временные файлы незавершенных загрузок не учитываются
+     * @param userId String
+     * @param files UserFiles
+     */
+    private void readDir(String userId, UserFiles files) {
+        if (Files.isDirectory(this.fileConfig.getUserDir(userId))) {
+            this.fileConfig.listFiles(userId).stream()
+                    .filter(file -> !file.getName().startsWith(HIDDEN_FILE_PREFIX))
+                    .forEach(file -> files.sizes.put(file.getName(), file.length()));
+        }
+    }
+
+    /**
+     * Ограничить число каталогов в индексе, вытесняя каталоги, к которым дольше всего не обращались.
+     * Вытесняется сразу десятая часть files.index-max-users сверх превышения, а вытеснение выполняет
+     * только один поток, поэтому сортировка индекса повторяется не чаще, чем через столько же промахов.
+     * Каталоги с незавершенными загрузками не вытесняются, вытесненные каталоги будут прочитаны
+     * повторно при следующем обращении. Каталог keepUserId, только что добавленный для вызывающего, не вытесняется:
+     * иначе reserve и runIfIdle повторно читали бы его с диска без конца
+     * @param keepUserId String
+     */
+    private void trim(String keepUserId) {
+        int maxUsers = this.fileConfig.getIndexMaxUsers();
+        if ((this.index.size() <= maxUsers) || !this.trimming.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            int excess = this.index.size() - maxUsers + maxUsers / TRIM_BATCH_DIVISOR;
+            List<Map.Entry<String, UserFiles>> entries = new ArrayList<>(this.index.entrySet());
+            entries.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccess));
+            for (Map.Entry<String, UserFiles> entry : entries) {
+                if (excess <= 0) {
+                    break;
+                }
+                if (entry.getKey().equals(keepUserId)) {
+                    continue;
+                }
+                UserFiles files = entry.getValue();
+                synchronized (files) {
+                    if (files.reserved.isEmpty() && this.index.remove(entry.getKey(), files)) {
+                        files.evicted = true;
+                        excess--;
+                    }
+                }
+            }
+        } finally {
+            this.trimming.set(false);
+        }
+    }
+
+    /**
+     * Число файлов в каталоге пользователя
+     * @param userId String
+     * @return int
+     */
+    public int count(String userId) {
+        UserFiles files = this.files(userId);
+        synchronized (files) {
+            return files.sizes.size();
+        }
+    }
+
+    /**
+     * Есть ли файл в каталоге пользователя
+     * @param userId String
+     * @param fileName String
+     * @return boolean
+     */
+    public boolean contains(String userId, String fileName) {
+        UserFiles files = this.files(userId);
+        synchronized (files) {
+            return files.sizes.containsKey(fileName);
+        }
+    }
+
+    /**
+     * Список файлов в каталоге пользователя, упорядоченный по имени
+     * @param userId String
+     * @return List<File>
+     */
+    public List<File> listFiles(String userId) {
+        Path userDir = this.fileConfig.getUserDir(userId);
+        UserFiles files = this.files(userId);
+        synchronized (files) {
+            return files.sizes.keySet().stream().map(name -> userDir.resolve(name).toFile()).collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Объем файлов пользователя с учетом незавершенных загрузок, байты
+     * @param userId String
+     * @return long
+     */
+    public long usedBytes(String userId) {
+        UserFiles files = this.files(userId);
+        synchronized (files) {
+            return files.usedBytes();
+        }
+    }
+
+    /**
+     * Зарезервировать место под загрузку файла. Вернет false, если каталог заполнен или этот файл уже загружается.
+     * Перезапись существующего файла нового места не занимает
+     * @param userId String
+     * @param fileName String
+     * @param maxCount int
+     * @return boolean
+     */
+    public boolean reserve(String userId, String fileName, int maxCount) {
+        while (true) {
+            UserFiles files = this.files(userId);
+            synchronized (files) {
+                if (files.evicted) {
+                    continue;
+                }
+                if (files.reserved.containsKey(fileName)) {
+                    return false;
+                }
+                if (!files.sizes.containsKey(fileName) && (files.usedSlots() >= maxCount)) {
+                    return false;
+                }
+                files.reserved.put(fileName, 0L);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Учесть принятую часть загружаемого файла. Вернет false, если общий объем файлов пользователя превысит maxUserBytes
+     * @param userId String
+     * @param fileName String
+     * @param bytes long
+     * @param maxUserBytes long
+     * @return boolean
+     */
+    public boolean reserveBytes(String userId, String fileName, long bytes, long maxUserBytes) {
+        UserFiles files = this.index.get(userId);
+        if (files == null) {
+            return false;
+        }
+        synchronized (files) {
+            if (!files.reserved.containsKey(fileName) || (files.usedBytes()+bytes > maxUserBytes)) {
+                return false;
+            }
+            files.reserved.merge(fileName, bytes, Long::sum);
+            return true;
+        }
+    }
+
+    /**
+     * Завершить загрузку и добавить в индекс сохраненный файл
+     * @param userId String
+     * @param fileName String
+     * @param size long
+     */
+    public void commit(String userId, String fileName, long size) {
+        UserFiles files = this.index.get(userId);
+        if (files == null) {
+            return;
+        }
+        synchronized (files) {
+            files.reserved.remove(fileName);
+            files.sizes.put(fileName, size);
+        }
+    }
+
+    /**
+     * Отменить резервирование места под незавершенную загрузку
+     * @param userId String
+     * @param fileName String
+     */
+    public void cancel(String userId, String fileName) {
+        UserFiles files = this.index.get(userId);
+        if (files == null) {
+            return;
+        }
+        synchronized (files) {
+            files.reserved.remove(fileName);
+        }
+    }
+
+    /**
+     * Удалить из индекса удаленный файл
+     * @param userId String
+     * @param fileName String
+     */
+    public void remove(String userId, String fileName) {
+        UserFiles files = this.index.get(userId);
+        if (files == null) {
+            return;
+        }
+        synchronized (files) {
+            files.sizes.remove(fileName);
+        }
+    }
+
+    /**
+     * Выполнить операцию с каталогом пользователя, если в нем нет незавершенных загрузок.
+     * Пока операция выполняется, новые загрузки в этот каталог ожидают. Вернет false, если каталог занят
+     * @param userId String
+     * @param action IdleAction
+     * @return boolean
+     */
+    public boolean runIfIdle(String userId, IdleAction action) throws IOException {
+        while (true) {
+            UserFiles files = this.files(userId);
+            synchronized (files) {
+                if (files.evicted) {
+                    continue;
+                }
+                if (!files.reserved.isEmpty()) {
+                    return false;
+                }
+                return action.run();
+            }
+        }
+    }
+
+    /**
+     * Удалить каталог пользователя из индекса, при следующем обращении он будет прочитан с диска
+     * @param userId String
+     */
+    public void invalidate(String userId) {
+        this.index.remove(userId);
+    }
+}
@@ -0,0 +1,67 @@
+package com.romanm.jwtservicedata.components.logs;
+
+import com.romanm.jwtservicedata.components.confs.LogConfig;
+import com.romanm.jwtservicedata.constants.MessageConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Журнал доступа в отдельный логгер access. В журнал попадает доля запросов logs.access-sample-rate,
+ * строка сообщения собирается, только если запрос попал в выборку и уровень INFO включен
+ */
+@Slf4j(topic = "access")
+@Component
+public class AccessLogger {
+    private final double sampleRate;
+
+    /**
+     * Конструктор класса AccessLogger
+     * @param logConfig LogConfig
+     */
+    @Autowired
+    public AccessLogger(LogConfig logConfig) {
+        this.sampleRate = logConfig.getAccessSampleRate();
+    }
+
+    /**
+     * Записать запрос пользователя
+     * @param username String имя пользователя или null, если оно неизвестно
+     * @param request ServerHttpRequest
+     */
+    public void logRequest(String username, ServerHttpRequest request) {
+        if (this.isLogged()) {
+            this.write(username, request);
+        }
+    }
+
+    /**
+     * Записать запрос без токена. Вместо имени пользователя пишется его адрес
+     * @param request ServerHttpRequest
+     */
+    public void logAnonymousRequest(ServerHttpRequest request) {
+        if (this.isLogged()) {
+            InetSocketAddress address = request.getRemoteAddress();
+            this.write((address == null) ? null : address.getHostString(), request);
+        }
+    }
+
+    private void write(String username, ServerHttpRequest request) {
+        log.info(MessageConstants.MSG_PREFIX+MessageConstants.MSG_USER_REQUESTED_DATA, (username == null) ? MessageConstants.UNKNOWN_USER : username, request.getMethodValue(), request.getURI());
+    }
+
+    /**
+     * Попадает ли текущий запрос в журнал
+     * @return boolean
+     */
+    private boolean isLogged() {
+        if (!log.isInfoEnabled() || (this.sampleRate <= 0)) {
+            return false;
+        }
+        return (this.sampleRate >= 1) || (ThreadLocalRandom.current().nextDouble() < this.sampleRate);
+    }
+}
@@ -0,0 +1,41 @@
+package com.romanm.jwtservicedata.components.metrics;
+
+import com.romanm.jwtservicedata.components.auth.AuthUserCache;
+import com.romanm.jwtservicedata.components.auth.TokenVerifier;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Метрики кешей проверенных токенов и пользователей
+ */
+@Component
+public class AuthMetrics implements MeterBinder {
+    private final TokenVerifier tokenVerifier;
+    private final AuthUserCache authUserCache;
+
+    /**
+     * Конструктор класса AuthMetrics
+     * @param tokenVerifier TokenVerifier
+     * @param authUserCache AuthUserCache
+     */
+    @Autowired
+    public AuthMetrics(TokenVerifier tokenVerifier, AuthUserCache authUserCache) {
+        this.tokenVerifier = tokenVerifier;
+        this.authUserCache = authUserCache;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("auth.token.cache.hits", this.tokenVerifier, TokenVerifier::getHits).register(registry);
+        FunctionCounter.builder("auth.token.cache.misses", this.tokenVerifier, TokenVerifier::getMisses).register(registry);
+        Gauge.builder("auth.token.cache.size", this.tokenVerifier, TokenVerifier::getSize).register(registry);
+
+        FunctionCounter.builder("auth.user.cache.hits", this.authUserCache, AuthUserCache::getHits).register(registry);
+        FunctionCounter.builder("auth.user.cache.misses", this.authUserCache, AuthUserCache::getMisses).register(registry);
+        Gauge.builder("auth.user.cache.size", this.authUserCache, AuthUserCache::getSize).register(registry);
+    }
+}
@@ -0,0 +1,42 @@
+package com.romanm.jwtservicedata.components.metrics;
+
+import com.romanm.jwtservicedata.components.files.ThumbCache;
+import com.romanm.jwtservicedata.components.files.ThumbPipeline;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Метрики кеша и очереди создания миниатюр
+ */
+@Component
+public class StorageMetrics implements MeterBinder {
+    private final ThumbCache thumbCache;
+    private final ThumbPipeline thumbPipeline;
+
+    /**
+     * Конструктор класса StorageMetrics
+     * @param thumbCache ThumbCache
+     * @param thumbPipeline ThumbPipeline
+     */
+    @Autowired
+    public StorageMetrics(ThumbCache thumbCache, ThumbPipeline thumbPipeline) {
+        this.thumbCache = thumbCache;
+        this.thumbPipeline = thumbPipeline;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("thumb.cache.hits", this.thumbCache, ThumbCache::getHits).register(registry);
+        FunctionCounter.builder("thumb.cache.misses", this.thumbCache, ThumbCache::getMisses).register(registry);
+        FunctionCounter.builder("thumb.cache.evictions", this.thumbCache, ThumbCache::getEvictions).register(registry);
+        Gauge.builder("thumb.cache.size", this.thumbCache, ThumbCache::getSize).register(registry);
+        Gauge.builder("thumb.cache.bytes", this.thumbCache, ThumbCache::getBytes).baseUnit("bytes").register(registry);
+
+        Gauge.builder("thumb.pipeline.queued", this.thumbPipeline, ThumbPipeline::getQueued).register(registry);
+        Gauge.builder("thumb.pipeline.active", this.thumbPipeline, ThumbPipeline::getActive).register(registry);
+    }
+}
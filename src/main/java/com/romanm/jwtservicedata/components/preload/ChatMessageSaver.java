@@ -3,7 +3,9 @@ package com.romanm.jwtservicedata.components.preload;
 import com.romanm.jwtservicedata.components.preload.interfaces.SingleSaver;
 import com.romanm.jwtservicedata.constants.MessageConstants;
 import com.romanm.jwtservicedata.models.ChatItem;
+import com.romanm.jwtservicedata.services.mongodb.MongoOperations;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.ArrayList;
@@ -11,21 +13,24 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 
-@SuppressWarnings("rawtypes")
+@SuppressWarnings({"rawtypes", "unchecked"})
 public class ChatMessageSaver implements SingleSaver<List<ChatItem>, ReactiveCrudRepository> {
 
     private ReactiveCrudRepository r;
+    private MongoOperations mongoOperations;
 
     /**
      * Конструктор класса ChatMessageSaver
      * @param r ReactiveCrudRepository
+     * @param mongoOperations MongoOperations
      */
-    public ChatMessageSaver(ReactiveCrudRepository r) {
+    public ChatMessageSaver(ReactiveCrudRepository r, MongoOperations mongoOperations) {
         this.r = r;
+        this.mongoOperations = mongoOperations;
     }
 
     /**
-     * Сохранение группы сообщений
+     * Сохранение группы сообщений вместе со сводками переписки
      * @param args String[]
      * @return Mono<List<ChatItem>>
      */
@@ -44,6 +49,7 @@ public class ChatMessageSaver implements SingleSaver<List<ChatItem>, ReactiveCru
                     )
             );
         }
-        return Mono.from(r.saveAll(chatMessageList));
+        Flux<ChatItem> saved = r.saveAll(chatMessageList);
+        return saved.concatMap(chatItem -> this.mongoOperations.updateConversations(chatItem).thenReturn(chatItem)).collectList();
     }
 }
@@ -10,6 +10,7 @@ import com.romanm.jwtservicedata.models.responses.files.FileStatus;
 import com.romanm.jwtservicedata.repositories.ChatMessageRepository;
 import com.romanm.jwtservicedata.repositories.UserProfileRepository;
 import com.romanm.jwtservicedata.repositories.VisitorRepository;
+import com.romanm.jwtservicedata.services.mongodb.MongoOperations;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -49,6 +50,8 @@ public class DataPreloader {
     private ChatMessageRepository chatMessageRepository;
     @Autowired
     private VisitorRepository visitorRepository;
+    @Autowired
+    private MongoOperations mongoOperations;
 
     @Value("classpath:test3/*")
     Resource[] resourceFilesTest3;
@@ -172,13 +175,17 @@ public class DataPreloader {
             //Заполнить коллекцию начальными профилями
             this.fillUserProfileCollectionByStartData().collectList().block();
             //Заполнить коллекцию чат-переписки начальными данными
-            this.fillCollectionByUserPairsStartData(new ChatMessageSaver(this.chatMessageRepository)).collectList().block();
+            this.fillCollectionByUserPairsStartData(new ChatMessageSaver(this.chatMessageRepository, this.mongoOperations)).collectList().block();
             //Заполнить коллекцию тестовыми обезличенными профилями
             this.fillUserProfileCollectionByStartDataDef().collectList().block();
             //Заполнить коллекцию посетителей начальными данными
             this.fillCollectionByUserPairsStartData(new VisitorSaver(this.visitorRepository)).collectList().block();
         } else {
-            log.info(MessageConstants.prefixMsg(MessageConstants.MSG_USER_PROFILE_COLLECTION_FILLED));
+            log.info(MessageConstants.MSG_PREFIX+MessageConstants.MSG_USER_PROFILE_COLLECTION_FILLED);
+            //Собрать сводки переписки, если сообщения чата появились раньше коллекции сводок
+            if (Boolean.TRUE.equals(this.mongoOperations.rebuildConversationsIfEmpty().block())) {
+                log.info(MessageConstants.MSG_PREFIX+MessageConstants.MSG_CONVERSATIONS_REBUILT);
+            }
         }
     }
 
@@ -215,9 +222,9 @@ public class DataPreloader {
      */
     private Flux<UserProfile> saveUserProfiles(List<UserProfile> userProfiles) {
        return this.userProfileRepository.saveAll(userProfiles).doOnError(s -> {
-            log.info(MessageConstants.prefixMsg(String.format(MessageConstants.MSG_CANT_SAVE_USER, s.getMessage())));
+            log.info(MessageConstants.MSG_PREFIX+MessageConstants.MSG_CANT_SAVE_USER, s.getMessage());
         }).doOnNext(s -> {
-            log.info(MessageConstants.prefixMsg(String.format(MessageConstants.MSG_SAVED_USER, s.getFirstName())));
+            log.info(MessageConstants.MSG_PREFIX+MessageConstants.MSG_SAVED_USER, s.getFirstName());
         });
     }
 
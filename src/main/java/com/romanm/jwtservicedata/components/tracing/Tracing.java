@@ -0,0 +1,117 @@
+package com.romanm.jwtservicedata.components.tracing;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.propagation.TextMapPropagator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.util.context.ContextView;
+
+/**
+ * Интервалы трассировки для реактивных операций. Текущий контекст трассы передается в контексте Reactor
+ * под ключом CONTEXT_KEY, поэтому вложенные операции становятся дочерними интервалами независимо от того,
+ * в каком потоке они выполняются
+ */
+@Component
+public class Tracing {
+    public static final String CONTEXT_KEY = Tracing.class.getName()+".CONTEXT";
+    private static final String INSTRUMENTATION_NAME = "jwt-service-data";
+
+    private final Tracer tracer;
+    private final TextMapPropagator propagator;
+
+    /**
+     * Конструктор класса Tracing
+     * @param openTelemetry OpenTelemetry
+     */
+    @Autowired
+    public Tracing(OpenTelemetry openTelemetry) {
+        this.tracer = openTelemetry.getTracer(INSTRUMENTATION_NAME);
+        this.propagator = openTelemetry.getPropagators().getTextMapPropagator();
+    }
+
+    /**
+     * Выполнить Mono в интервале с заданным именем. Интервал начинается при подписке и заканчивается
+     * при завершении, ошибке или отмене
+     * @param name String
+     * @param mono Mono<T>
+     * @return Mono<T>
+     */
+    public <T> Mono<T> trace(String name, Mono<T> mono) {
+        return Mono.deferContextual(view -> {
+            Context parent = getContext(view);
+            Span span = this.startSpan(name, SpanKind.INTERNAL, parent);
+            return mono.doOnError(err -> recordError(span, err))
+                    .doFinally(signal -> endSpan(span, signal))
+                    .contextWrite(ctx -> ctx.put(CONTEXT_KEY, parent.with(span)));
+        });
+    }
+
+    /**
+     * Выполнить Flux в интервале с заданным именем
+     * @param name String
+     * @param flux Flux<T>
+     * @return Flux<T>
+     */
+    public <T> Flux<T> trace(String name, Flux<T> flux) {
+        return Flux.deferContextual(view -> {
+            Context parent = getContext(view);
+            Span span = this.startSpan(name, SpanKind.INTERNAL, parent);
+            return flux.doOnError(err -> recordError(span, err))
+                    .doFinally(signal -> endSpan(span, signal))
+                    .contextWrite(ctx -> ctx.put(CONTEXT_KEY, parent.with(span)));
+        });
+    }
+
+    /**
+     * Начать интервал
+     * @param name String
+     * @param kind SpanKind
+     * @param parent Context
+     * @return Span
+     */
+    public Span startSpan(String name, SpanKind kind, Context parent) {
+        return this.tracer.spanBuilder(name).setSpanKind(kind).setParent(parent).startSpan();
+    }
+
+    /**
+     * Распространитель контекста трассы в заголовках запросов
+     * @return TextMapPropagator
+     */
+    public TextMapPropagator getPropagator() {
+        return this.propagator;
+    }
+
+    /**
+     * Контекст трассы из контекста Reactor или корневой контекст, если трассы нет
+     * @param view ContextView
+     * @return Context
+     */
+    public static Context getContext(ContextView view) {
+        return view.getOrDefault(CONTEXT_KEY, Context.root());
+    }
+
+    /**
+     * Отметить интервал как завершенный с ошибкой
+     * @param span Span
+     * @param err Throwable
+     */
+    public static void recordError(Span span, Throwable err) {
+        span.recordException(err);
+        span.setStatus(StatusCode.ERROR);
+    }
+
+    private static void endSpan(Span span, SignalType signal) {
+        if (signal == SignalType.CANCEL) {
+            span.setAttribute("cancelled", true);
+        }
+        span.end();
+    }
+}
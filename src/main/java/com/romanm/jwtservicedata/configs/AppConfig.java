@@ -9,12 +9,14 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.data.mongodb.repository.config.EnableReactiveMongoRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
 @Slf4j
 @Configuration
-@PropertySource("classpath:/config/filescfg.properties")
+@PropertySource({"classpath:/config/filescfg.properties", "classpath:/config/authcfg.properties", "classpath:/config/logscfg.properties", "classpath:/config/tracingcfg.properties", "classpath:/config/chatcfg.properties"})
 @EnableReactiveMongoRepositories(value = "com.romanm.jwtservicedata.repositories")
+@EnableScheduling
 public class AppConfig implements CommandLineRunner {
     @Autowired
     private DataPreloader dataPreloader;
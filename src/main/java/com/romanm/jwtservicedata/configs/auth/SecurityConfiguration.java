@@ -1,6 +1,9 @@
 package com.romanm.jwtservicedata.configs.auth;
 
 import com.romanm.jwtservicedata.components.auth.OpenUrlChecker;
+import com.romanm.jwtservicedata.components.auth.TokenVerifier;
+import com.romanm.jwtservicedata.components.logs.AccessLogger;
+import com.romanm.jwtservicedata.components.tracing.Tracing;
 import com.romanm.jwtservicedata.configs.auth.filters.JWTAuthorizationFilter;
 import com.romanm.jwtservicedata.configs.auth.filters.OpenedPathsFilter;
 import com.romanm.jwtservicedata.services.UserServiceV1;
@@ -26,18 +29,27 @@ public class SecurityConfiguration {
     private final BCryptPasswordEncoder bCryptPasswordEncoder;
     private final UserServiceV1 userService;
     private final OpenUrlChecker openUrlChecker;
+    private final TokenVerifier tokenVerifier;
+    private final AccessLogger accessLogger;
+    private final Tracing tracing;
 
     /**
      * Конструктор класса SecurityConfiguration
      * @param bCryptPasswordEncoder BCryptPasswordEncoder
      * @param userService UserServiceV1
      * @param openUrlChecker OpenUrlChecker
+     * @param tokenVerifier TokenVerifier
+     * @param accessLogger AccessLogger
+     * @param tracing Tracing
      */
     @Autowired
-    public SecurityConfiguration(BCryptPasswordEncoder bCryptPasswordEncoder, UserServiceV1 userService, OpenUrlChecker openUrlChecker) {
+    public SecurityConfiguration(BCryptPasswordEncoder bCryptPasswordEncoder, UserServiceV1 userService, OpenUrlChecker openUrlChecker, TokenVerifier tokenVerifier, AccessLogger accessLogger, Tracing tracing) {
         this.bCryptPasswordEncoder = bCryptPasswordEncoder;
         this.userService = userService;
         this.openUrlChecker = openUrlChecker;
+        this.tokenVerifier = tokenVerifier;
+        this.accessLogger = accessLogger;
+        this.tracing = tracing;
     }
 
     @Bean
@@ -48,7 +60,7 @@ public class SecurityConfiguration {
                .formLogin().disable()
                .logout().disable()
                .addFilterAt(new OpenedPathsFilter(this.openUrlChecker), SecurityWebFiltersOrder.FIRST)
-               .addFilterAt(new JWTAuthorizationFilter(this.userService), SecurityWebFiltersOrder.AUTHENTICATION)
+               .addFilterAt(new JWTAuthorizationFilter(this.userService, this.tokenVerifier, this.accessLogger, this.tracing), SecurityWebFiltersOrder.AUTHENTICATION)
                .build();
     }
 
@@ -1,7 +1,9 @@
 package com.romanm.jwtservicedata.configs.auth.filters;
 
-import com.auth0.jwt.JWT;
-import com.auth0.jwt.algorithms.Algorithm;
+import com.romanm.jwtservicedata.components.auth.OpenUrlChecker;
+import com.romanm.jwtservicedata.components.auth.TokenVerifier;
+import com.romanm.jwtservicedata.components.logs.AccessLogger;
+import com.romanm.jwtservicedata.components.tracing.Tracing;
 import com.romanm.jwtservicedata.constants.Api;
 import com.romanm.jwtservicedata.constants.MessageConstants;
 import com.romanm.jwtservicedata.models.auth.AuthUser;
@@ -22,9 +24,22 @@ import java.util.List;
 @Slf4j
 public class JWTAuthorizationFilter implements WebFilter {
     private final UserServiceV1 userService;
+    private final TokenVerifier tokenVerifier;
+    private final AccessLogger accessLogger;
+    private final Tracing tracing;
 
-    public JWTAuthorizationFilter(UserServiceV1 userService) {
+    /**
+     * Конструктор класса JWTAuthorizationFilter
+     * @param userService UserServiceV1
+     * @param tokenVerifier TokenVerifier
+     * @param accessLogger AccessLogger
+     * @param tracing Tracing
+     */
+    public JWTAuthorizationFilter(UserServiceV1 userService, TokenVerifier tokenVerifier, AccessLogger accessLogger, Tracing tracing) {
         this.userService = userService;
+        this.tokenVerifier = tokenVerifier;
+        this.accessLogger = accessLogger;
+        this.tracing = tracing;
     }
 
     /**
@@ -38,43 +53,50 @@ public class JWTAuthorizationFilter implements WebFilter {
         ServerHttpResponse response = exchange.getResponse();
 
 
-        if (response.getRawStatusCode() == HttpStatus.FORBIDDEN.value()) {
+        if (!Boolean.TRUE.equals(exchange.getAttribute(OpenUrlChecker.OPEN_URL_ATTRIBUTE))) {
             if (exchange.getRequest().getHeaders().get(MessageConstants.HEADER_STRING) != null) {
                 String header = exchange.getRequest().getHeaders().get(MessageConstants.HEADER_STRING).get(0);
 
                 if (header == null || !header.startsWith(MessageConstants.TOKEN_PREFIX)) {
-                    return response.setComplete();
+                    return this.forbid(response);
                 }
                 //Здесь проверяется токен JWT
-                AuthUser authUser = getAuthentication(exchange);
-
-                if (authUser == null) {
-                    return response.setComplete();
-                } else {
-                    exchange.getRequest().mutate().header(Api.X_CONFIRMED_UID, authUser.getId());
-                }
+                return this.tracing.trace("JWTAuthorizationFilter", Mono.defer(() -> getAuthentication(exchange)))
+                        .map(authUser -> exchange.mutate().request(request -> request.headers(headers -> headers.set(Api.X_CONFIRMED_UID, authUser.getId()))).build())
+                        .switchIfEmpty(Mono.defer(() -> this.forbid(response).then(Mono.empty())))
+                        .flatMap(chain::filter); //Если токен валидный и срок его не истек
             } else {
-                MessageConstants.getDecodedUserMsg(exchange.getRequest().getRemoteAddress().getHostString(), exchange.getRequest().getURI().toString(), exchange.getRequest().getMethod().name());
-                return response.setComplete();
+                this.accessLogger.logAnonymousRequest(exchange.getRequest());
+                return this.forbid(response);
             }
         } else {
-            MessageConstants.getDecodedUserMsg(exchange.getRequest().getRemoteAddress().getHostString(), exchange.getRequest().getURI().toString(), exchange.getRequest().getMethod().name());
+            this.accessLogger.logAnonymousRequest(exchange.getRequest());
         }
 
-        response.setStatusCode(HttpStatus.OK); //Если токен валидный и срок его не истек
         return chain.filter(exchange);
     }
 
+    /**
+     * Завершить запрос без доступа
+     * @param response ServerHttpResponse
+     * @return Mono<Void>
+     */
+    private Mono<Void> forbid(ServerHttpResponse response) {
+        response.setStatusCode(HttpStatus.FORBIDDEN);
+        return response.setComplete();
+    }
+
 
     /**
-     * Метод, проверяющий токен авторизации на валидность
+     * Метод, проверяющий токен авторизации на валидность. Если токен неверный или пользователь
+     * не найден либо заблокирован, Mono будет пустым
      * @param exchange ServerWebExchange
-     * @return AuthUser
+     * @return Mono<AuthUser>
      */
-    private AuthUser getAuthentication(ServerWebExchange exchange) {
+    private Mono<AuthUser> getAuthentication(ServerWebExchange exchange) {
         List<String> headers = exchange.getRequest().getHeaders().get(MessageConstants.HEADER_STRING);
         if ((headers == null) || (headers.size() == 0)) {
-            return null;
+            return Mono.empty();
         }
         String token = headers.get(0);
 
@@ -82,31 +104,26 @@ public class JWTAuthorizationFilter implements WebFilter {
         if (token != null) {
             String userName = null;
             try {
-                userName = JWT.require(Algorithm.HMAC512(MessageConstants.SECRET.getBytes()))
-                        .build()
-                        .verify(token.replace(MessageConstants.TOKEN_PREFIX, ""))
-                        .getSubject();
+                userName = this.tokenVerifier.verify(token.replace(MessageConstants.TOKEN_PREFIX, ""));
             } catch (Exception e) { // Неверный токен или истекло его время действия
                 MessageConstants.invalidToken(e.getMessage());
             }
 
-            MessageConstants.getDecodedUserMsg(userName, exchange.getRequest().getURI().toString(), exchange.getRequest().getMethod().name());
+            this.accessLogger.logRequest(userName, exchange.getRequest());
             if (userName != null) {
-                AuthUser authUser = this.userService.readUserByUsername(userName);
-
-                if (authUser == null) {
-                    MessageConstants.getUserNotFoundMsg(userName);
-                    return null;
-                }
-
-                if (authUser.isDisabled()) {
-                    MessageConstants.userBlocked(authUser.getUsername());
-                    return null;
-                }
-                return authUser;
+                String verifiedUserName = userName;
+                return this.userService.readUserByUsername(verifiedUserName)
+                        .switchIfEmpty(Mono.fromRunnable(() -> MessageConstants.getUserNotFoundMsg(verifiedUserName)))
+                        .filter(authUser -> {
+                            if (authUser.isDisabled()) {
+                                MessageConstants.userBlocked(authUser.getUsername());
+                                return false;
+                            }
+                            return true;
+                        });
             }
-            return null;
+            return Mono.empty();
         }
-        return null;
+        return Mono.empty();
     }
 }
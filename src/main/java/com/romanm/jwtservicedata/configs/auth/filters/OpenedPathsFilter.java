@@ -2,7 +2,6 @@ package com.romanm.jwtservicedata.configs.auth.filters;
 
 import com.romanm.jwtservicedata.components.auth.OpenUrlChecker;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.server.WebFilter;
 import org.springframework.web.server.WebFilterChain;
@@ -26,13 +25,9 @@ public class OpenedPathsFilter implements WebFilter {
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
 
-        if (this.openUrlChecker.check(exchange.getRequest().getURI().getPath())) {
-            //Если текущий url открыт - доступ без токена
-            exchange.getResponse().setStatusCode(HttpStatus.ACCEPTED);
-        } else {
-            //Если текущий url закрыт - доступ по токену
-            exchange.getResponse().setStatusCode(HttpStatus.FORBIDDEN);
-        }
+        //Если текущий url открыт - доступ без токена, иначе - доступ по токену
+        boolean opened = this.openUrlChecker.check(exchange.getRequest().getPath().pathWithinApplication());
+        exchange.getAttributes().put(OpenUrlChecker.OPEN_URL_ATTRIBUTE, opened);
 
         return chain.filter(exchange);
     }
@@ -0,0 +1,26 @@
+package com.romanm.jwtservicedata.configs.files;
+
+import com.romanm.jwtservicedata.components.confs.FileConfig;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Класс-конфигурация планировщика блокирующих операций с файловой системой
+ */
+@Configuration
+public class StorageIoConfiguration {
+    private static final String STORAGE_THREAD_PREFIX = "storage-io";
+
+    /**
+     * Планировщик для операций с каталогами пользователей. Число потоков и очередь задач ограничены,
+     * при переполнении очереди задача завершится ошибкой, а не займет поток обработки запросов
+     * @param fileConfig FileConfig
+     * @return Scheduler
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler storageScheduler(FileConfig fileConfig) {
+        return Schedulers.newBoundedElastic(fileConfig.getIoThreads(), fileConfig.getIoQueueSize(), STORAGE_THREAD_PREFIX);
+    }
+}
@@ -0,0 +1,23 @@
+package com.romanm.jwtservicedata.configs.metrics;
+
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Класс-конфигурация метрик сервера Netty: соединения, буферы и объем переданных данных (reactor.netty.*)
+ */
+@Configuration
+public class NettyMetricsConfiguration {
+    /**
+     * Время запросов по маршрутам уже учитывается в http.server.requests, поэтому метрики Netty
+     * не делятся по адресам запросов, чтобы не плодить временные ряды по каждому пути
+     */
+    private static final String URI_TAG = "all";
+
+    @Bean
+    public WebServerFactoryCustomizer<NettyReactiveWebServerFactory> nettyMetricsCustomizer() {
+        return factory -> factory.addServerCustomizers(httpServer -> httpServer.metrics(true, uri -> URI_TAG));
+    }
+}
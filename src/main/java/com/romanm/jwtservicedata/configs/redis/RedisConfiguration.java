@@ -2,8 +2,11 @@ package com.romanm.jwtservicedata.configs.redis;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
 
 /**
  * Класс-конфигурация для работы с Redis
@@ -17,4 +20,16 @@ public class RedisConfiguration {
         redisTemplate.setEnableTransactionSupport(true);
         return redisTemplate;
     }
+
+    /**
+     * Контейнер подписок Redis подключается к серверу при создании, поэтому создается при первой подписке:
+     * без Redis приложение запускается, а подписчики повторяют попытки
+     * @param connectionFactory ReactiveRedisConnectionFactory
+     * @return ReactiveRedisMessageListenerContainer
+     */
+    @Lazy
+    @Bean(destroyMethod = "destroy")
+    ReactiveRedisMessageListenerContainer redisMessageListenerContainer(ReactiveRedisConnectionFactory connectionFactory) {
+        return new ReactiveRedisMessageListenerContainer(connectionFactory);
+    }
 }
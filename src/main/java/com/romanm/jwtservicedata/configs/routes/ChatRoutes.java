@@ -0,0 +1,28 @@
+package com.romanm.jwtservicedata.configs.routes;
+
+import com.romanm.jwtservicedata.configs.auth.filters.UserProfileTokenOwnerFilter;
+import com.romanm.jwtservicedata.configs.routes.handlers.ChatRoutesHandler;
+import com.romanm.jwtservicedata.constants.Api;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import static org.springframework.web.reactive.function.server.RequestPredicates.*;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+@Configuration
+public class ChatRoutes {
+
+    /**
+     * Подписаться на новые сообщения пользователя с userId вместо периодического опроса переписки
+     * @param chatRoutesHandler ChatRoutesHandler
+     * @return  RouterFunction<ServerResponse>
+     */
+    @Bean
+    public RouterFunction<ServerResponse> getChatStreamRoute(ChatRoutesHandler chatRoutesHandler) {
+        return route(GET(Api.API_PREFIX+Api.API_CHAT_STREAM).and(accept(MediaType.TEXT_EVENT_STREAM)),
+                chatRoutesHandler::getChatStream)
+                .filter(new UserProfileTokenOwnerFilter());
+    }
+}
@@ -0,0 +1,53 @@
+package com.romanm.jwtservicedata.configs.routes.handlers;
+
+import com.romanm.jwtservicedata.components.chat.ChatMessageBroker;
+import com.romanm.jwtservicedata.components.confs.ChatConfig;
+import com.romanm.jwtservicedata.configs.routes.Routes;
+import com.romanm.jwtservicedata.constants.Api;
+import com.romanm.jwtservicedata.models.ChatItem;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+@Slf4j
+@Component
+public class ChatRoutesHandler {
+    private static final String EVENT_MESSAGE = "message";
+    private static final String HEARTBEAT_COMMENT = "ping";
+    private static final ParameterizedTypeReference<ServerSentEvent<ChatItem>> EVENT_TYPE = new ParameterizedTypeReference<>() {};
+
+    private final ChatMessageBroker chatMessageBroker;
+    private final ChatConfig chatConfig;
+
+    @Autowired
+    public ChatRoutesHandler(ChatMessageBroker chatMessageBroker, ChatConfig chatConfig) {
+        this.chatMessageBroker = chatMessageBroker;
+        this.chatConfig = chatConfig;
+    }
+
+    /**
+     * Поток новых сообщений пользователя с userId в формате Server-Sent Events. Между сообщениями
+     * передаются пустые события, чтобы соединение не закрывалось по таймауту
+     * @param serverRequest ServerRequest
+     * @return Mono<ServerResponse>
+     */
+    public Mono<ServerResponse> getChatStream(ServerRequest serverRequest) {
+        String userId = Routes.getQueryParam(Api.PARAM_USER_ID, serverRequest);
+
+        Flux<ServerSentEvent<ChatItem>> messages = this.chatMessageBroker.messagesOf(userId)
+                .map(chatItem -> ServerSentEvent.builder(chatItem).id(chatItem.getId()).event(EVENT_MESSAGE).build());
+        Flux<ServerSentEvent<ChatItem>> heartbeats = Flux.interval(Duration.ofMillis(this.chatConfig.getPushHeartbeatMs()))
+                .map(tick -> ServerSentEvent.<ChatItem>builder().comment(HEARTBEAT_COMMENT).build());
+
+        return ServerResponse.ok().contentType(MediaType.TEXT_EVENT_STREAM).body(Flux.merge(messages, heartbeats), EVENT_TYPE);
+    }
+}
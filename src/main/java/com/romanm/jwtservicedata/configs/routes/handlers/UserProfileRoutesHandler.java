@@ -77,7 +77,7 @@ public class UserProfileRoutesHandler {
                              .contentType(MediaType.APPLICATION_JSON)
                              .body(fromProducer(this.save(userProfile), UserProfile.class));
                  } else {
-                     log.warn(MessageConstants.prefixMsg(String.format(MessageConstants.MSG_FORMAT_INVALID_JWT_OWNER, confirmedUserId, userProfile.getId())));
+                     log.warn(MessageConstants.MSG_PREFIX+MessageConstants.MSG_FORMAT_INVALID_JWT_OWNER, confirmedUserId, userProfile.getId());
                      return ServerResponse
                              .status(HttpStatus.FORBIDDEN)
                              .build();
@@ -0,0 +1,56 @@
+package com.romanm.jwtservicedata.configs.tracing;
+
+import com.romanm.jwtservicedata.components.confs.TracingConfig;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.exporter.otlp.trace.OtlpGrpcSpanExporter;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PreDestroy;
+
+/**
+ * Класс-конфигурация трассировки OpenTelemetry. Трассы пакетами отправляются в коллектор по OTLP,
+ * если трассировка выключена, используется реализация без записи
+ */
+@Configuration
+public class TracingConfiguration {
+    private static final AttributeKey<String> SERVICE_NAME = AttributeKey.stringKey("service.name");
+
+    private SdkTracerProvider tracerProvider;
+
+    @Bean
+    public OpenTelemetry openTelemetry(TracingConfig tracingConfig) {
+        if (!tracingConfig.isEnabled()) {
+            return OpenTelemetry.noop();
+        }
+
+        this.tracerProvider = SdkTracerProvider.builder()
+                .setResource(Resource.getDefault().merge(Resource.create(Attributes.of(SERVICE_NAME, tracingConfig.getServiceName()))))
+                .setSampler(Sampler.parentBased(Sampler.traceIdRatioBased(tracingConfig.getSampleRatio())))
+                .addSpanProcessor(BatchSpanProcessor.builder(OtlpGrpcSpanExporter.builder().setEndpoint(tracingConfig.getOtlpEndpoint()).build()).build())
+                .build();
+        return OpenTelemetrySdk.builder()
+                .setTracerProvider(this.tracerProvider)
+                .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+                .build();
+    }
+
+    /**
+     * Отправить накопленные трассы и остановить экспорт
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (this.tracerProvider != null) {
+            this.tracerProvider.shutdown();
+        }
+    }
+}
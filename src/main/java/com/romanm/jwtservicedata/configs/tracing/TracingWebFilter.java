@@ -0,0 +1,75 @@
+package com.romanm.jwtservicedata.configs.tracing;
+
+import com.romanm.jwtservicedata.components.tracing.Tracing;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.propagation.TextMapGetter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import reactor.core.publisher.Mono;
+
+/**
+ * Фильтр, открывающий серверный интервал трассы на каждый запрос. Родительская трасса берется из заголовка traceparent.
+ * Имя интервала - метод и шаблон маршрута, а не фактический путь, чтобы имена не зависели от параметров
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE+1)
+public class TracingWebFilter implements WebFilter {
+    private static final TextMapGetter<HttpHeaders> HEADERS_GETTER = new TextMapGetter<>() {
+        @Override
+        public Iterable<String> keys(HttpHeaders headers) {
+            return headers.keySet();
+        }
+
+        @Override
+        public String get(HttpHeaders headers, String key) {
+            return (headers == null) ? null : headers.getFirst(key);
+        }
+    };
+
+    private final Tracing tracing;
+
+    /**
+     * Конструктор класса TracingWebFilter
+     * @param tracing Tracing
+     */
+    @Autowired
+    public TracingWebFilter(Tracing tracing) {
+        this.tracing = tracing;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String method = exchange.getRequest().getMethodValue();
+        Context parent = this.tracing.getPropagator().extract(Context.root(), exchange.getRequest().getHeaders(), HEADERS_GETTER);
+        Span span = this.tracing.startSpan(method, SpanKind.SERVER, parent);
+        span.setAttribute("http.method", method);
+        span.setAttribute("http.target", exchange.getRequest().getPath().value());
+
+        return chain.filter(exchange)
+                .doOnError(err -> Tracing.recordError(span, err))
+                .doFinally(signal -> {
+                    Object pattern = exchange.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                    if (pattern != null) {
+                        String route = (pattern instanceof PathPattern) ? ((PathPattern) pattern).getPatternString() : pattern.toString();
+                        span.setAttribute("http.route", route);
+                        span.updateName(method+" "+route);
+                    }
+                    Integer status = exchange.getResponse().getRawStatusCode();
+                    if (status != null) {
+                        span.setAttribute("http.status_code", status);
+                    }
+                    span.end();
+                })
+                .contextWrite(ctx -> ctx.put(Tracing.CONTEXT_KEY, parent.with(span)));
+    }
+}
@@ -6,7 +6,9 @@ public class Api {
     public final static String API_PREFIX = "/api";
     public final static String PARAM_PAGE = "page";
     public final static String PARAM_PAGE_SIZE = "size";
+    public final static String PARAM_CURSOR = "cursor";
     public final static String PARAM_USER_ID = "user_id";
+    public final static String PARAM_USER_IDS = "user_ids";
     public final static String PARAM_VISITOR_USER_ID = "visitor_user_id";
     public final static String PARAM_NOT_USER_ID = "not_user_id";
     public final static String PARAM_FILE_ID = "file_id";
@@ -14,6 +16,8 @@ public class Api {
     public final static String PARAM_CHAT_MESSAGE = "chat_message";
     public final static String PARAM_FILE = "file";
     public final static String PARAM_FILES = "files";
+    public final static String PARAM_VERSION = "v";
+    public final static String PARAM_IMAGE_SIZE = "size";
 
     public final static String BASE_URL = "http://localhost:8090";
 
@@ -27,6 +31,7 @@ public class Api {
     public final static String API_USER_IMAGE = "/resource";
     public final static String API_USER_IMAGES = "/uploads";
     public final static String API_USER_RESOURCE_THUMB = "/resource/thumb";
+    public final static String API_USER_RESOURCE_THUMBS = "/resource/thumbs";
     public final static String API_USER_IMAGE_THUMB = "/upload/thumb";
     public final static String API_IMAGE_THUMB = "/thumb";
     public final static String API_USER_IMAGES_ALL = "/uploads/all";
@@ -35,10 +40,14 @@ public class Api {
     public final static String API_CHAT_ADD_ITEM = "/chat/add";
     public final static String API_CHAT_MESSAGE_APPLY = "/chat/apply/messages";
     public final static String API_CHAT_MESSAGES_STATUS = "/chat/status/messages";
+    public final static String API_CHAT_CONVERSATION_READ = "/chat/apply/conversation";
+    public final static String API_CHAT_STREAM = "/chat/stream";
     public final static String API_USER_VISITOR = "/user/visitor";
+    public final static String ACTUATOR_HEALTH = "/actuator/health";
+    public final static String ACTUATOR_PROMETHEUS = "/actuator/prometheus";
 
-    public final static String API_RESOURCE_URI_TEMP = API_PREFIX+API_USER_IMAGE+"?user_id=%s&file_id=%s";
-    public final static String API_RESOURCE_URI_THUMB = API_PREFIX+API_USER_IMAGE+"/thumb?user_id=%s";
+    public final static String API_RESOURCE_URI_TEMP = API_PREFIX+API_USER_IMAGE+"?user_id=%s&file_id=%s&v=%s";
+    public final static String API_RESOURCE_URI_THUMB = API_PREFIX+API_USER_IMAGE+"/thumb?user_id=%s&v=%s";
 
-    public final static String[] openedUrlPaths = {API_USER_IMAGE, MAIN_ICON};
+    public final static String[] openedUrlPaths = {API_PREFIX+API_USER_IMAGE+"/**", MAIN_ICON+"*", ACTUATOR_HEALTH};
 }
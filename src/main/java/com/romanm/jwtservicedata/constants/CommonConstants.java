@@ -23,6 +23,7 @@ public class CommonConstants
     public static final String COMMENT_COLLECTION = "comments";
     public static final String VISITOR_COLLECTION = "visitors";
     public static final String CHAT_MESSAGE_COLLECTION = "chat_messages";
+    public static final String CONVERSATION_COLLECTION = "conversations";
     public static final String USER_PROFILE_COLLECTION = "user_profiles";
     public static final String LIKES_COLLECTION = "likes";
     public static final String MULTIMEDIA_DEST_DIR = "%s/%s";
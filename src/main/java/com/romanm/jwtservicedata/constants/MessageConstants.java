@@ -11,31 +11,52 @@ public class MessageConstants {
     public static final String MSG_PREFIX = ">> ";
     public static final String ERROR_MSG_PREFIX = " **** : ";
 
-    public static final String MSG_USER_NOT_FOUND = "User '%s' not found!";
-    public static final String MSG_USER_BLOCKED = "User '%s' was blocked!";
-    public static final String MSG_SAVED_USER = "Saved user: %s";
-    public static final String MSG_CANT_SAVE_USER = "Can't save users: %s";
+    public static final String MSG_USER_NOT_FOUND = "User '{}' not found!";
+    public static final String MSG_USER_BLOCKED = "User '{}' was blocked!";
+    public static final String MSG_INVALID_TOKEN = "Invalid token: '{}' !";
+    public static final String MSG_USER_REQUESTED_DATA = "User '{}' requested data: {} {}";
+    public static final String MSG_SAVED_USER = "Saved user: {}";
+    public static final String MSG_CANT_SAVE_USER = "Can't save users: {}";
     public static final String MSG_USER_PROFILE_COLLECTION_FILLED = "UserProfile collection is already filled!";
     public static final String MSG_CHAT_MESSAGE_FROM_USER = "Message from '%s' number '%s'.";
+    public static final String MSG_CONVERSATIONS_REBUILT = "Conversation collection was rebuilt from chat messages!";
 
     public static final String MSG_FILE_NOT_FOUND = "File '%s' not found! Can't create thumb icon!";
-    public static final String MSG_FILE_SAVED_SUCCESSFUL = "File '%s' was saved successfully!";
-    public static final String MSG_THUMB_FILE_SAVED_SUCCESSFUL = "Thumb file '%s' was saved successfully!";
+    public static final String MSG_FILE_SAVED_SUCCESSFUL = "File '{}' was saved successfully!";
+    public static final String MSG_THUMB_FILE_SAVED_SUCCESSFUL = "Thumb file '{}' was saved successfully!";
     public static final String MSG_ERR_FILE_SAVING = "Can't save file '%s'! Error: %s";
-    public static final String MSG_CANT_DELETE_FILE = "Can't delete file '%s' or it was deleted before!";
-    public static final String MSG_CANT_DELETE_FILES = "Can't delete files of directory '%s' or its were deleted before!";
-    public static final String MSG_DELETED_FILE_SUCCESSFUL = "File '%s' was deleted successfully!";
-    public static final String MSG_DELETED_FILES_SUCCESSFUL = "Files in directory '%s' were deleted successfully and directory was too!";
+    public static final String MSG_CANT_DELETE_FILE = "Can't delete file '{}' or it was deleted before!";
+    public static final String MSG_CANT_DELETE_FILES = "Can't delete files of directory '{}' or its were deleted before!";
+    public static final String MSG_DELETED_FILE_SUCCESSFUL = "File '{}' was deleted successfully!";
+    public static final String MSG_DELETED_FILES_SUCCESSFUL = "Files in directory '{}' were deleted successfully and directory was too!";
     public static final String MSG_FILES_COUNT = "Files in directory '%s' count: %d";
     public static final String MSG_FORMAT_FILE_INVALID = "Format file '%s' is invalid! Valid formats are: %s";
     public static final String MSG_MAX_FILES_COUNT = "Files amount for saving permitted are: %d";
     public static final String MSG_DELETE_THUMB_SUCCESSFULLY = "Thumb was deleted successfully!";
     public static final String MSG_DELETE_THUMB_FAILED = "Can't delete thumb!";
+    public static final String MSG_THUMB_IN_PROGRESS = "Thumb of file '%s' is being created!";
+    public static final String MSG_THUMB_QUEUE_FULL = "Too many thumbs are being created! Try again later.";
+    public static final String MSG_VARIANTS_SAVED_SUCCESSFUL = "Variants of file '{}' were saved successfully!";
+    public static final String MSG_CANT_READ_IMAGE = "Can't read image '%s'!";
+    public static final String MSG_TOO_MANY_USER_IDS = "Too many user ids! Max count is %d.";
+    public static final String MSG_BLOBS_COLLECTED = "Unreferenced blobs deleted: {}";
+    public static final String MSG_USER_DIRS_MOVED = "User directories moved to sharded layout: {} of {}";
+    public static final String MSG_USER_DIRS_MIGRATED = "All user directories are in sharded layout";
+    public static final String MSG_FILE_NAME_INVALID = "File name '%s' is invalid!";
+    public static final String MSG_FILE_CONTENT_INVALID = "Content of file '%s' doesn't match its format!";
+    public static final String MSG_FILE_TOO_LARGE = "File '%s' is too large! Max file size is %d bytes.";
+    public static final String MSG_USER_FILES_SIZE_EXCEEDED = "Files size limit of %d bytes is exceeded! Can't save file '%s'.";
 
     public static final String MSG_NOT_ALL_HTTP_PARAMS = "Not all params have been passed!";
     public static final String MSG_UNKNOWN_MEDIA_TYPE = "It's unknown media type!";
+    public static final String MSG_INVALID_CURSOR = "Invalid chat cursor!";
+    public static final String MSG_USER_INVALIDATION_FAILED = "Can't receive user changes from Redis: {}";
+    public static final String MSG_CHAT_PUSH_FAILED = "Can't publish chat message '{}' to Redis: {}";
+    public static final String MSG_CHAT_PUSH_RECEIVE_FAILED = "Can't receive chat messages from Redis: {}";
+    public static final String MSG_CHAT_PUSH_INVALID = "Invalid chat message from Redis: {}";
+    public static final String MSG_CHAT_PUSH_DROPPED = "Chat message '{}' for user '{}' was dropped: push buffer is full";
     public static final String MSG_INVALID_JWT_OWNER = "Access is denied! Tried to access to stranger account!";
-    public static final String MSG_FORMAT_INVALID_JWT_OWNER = "Access is denied! Tried to access to stranger account! Expected '%s', got '%s'.";
+    public static final String MSG_FORMAT_INVALID_JWT_OWNER = "Access is denied! Tried to access to stranger account! Expected '{}', got '{}'.";
 
     public static final String UNKNOWN_USER = "Unknown";
 
@@ -51,12 +72,9 @@ public class MessageConstants {
     /**
      *
      * @param username String
-     * @return String
      */
-    public static String getUserNotFoundMsg(String username) {
-        String msg = String.format(MSG_USER_NOT_FOUND, username);
-        log.info(prefixMsg(msg));
-        return msg;
+    public static void getUserNotFoundMsg(String username) {
+        log.info(MSG_PREFIX+MSG_USER_NOT_FOUND, username);
     }
 
     /**
@@ -64,29 +82,14 @@ public class MessageConstants {
      * @param username String
      */
     public static void userBlocked(String username) {
-        String msg = String.format(MSG_USER_BLOCKED, username);
-        log.info(prefixMsg(msg));
+        log.info(MSG_PREFIX+MSG_USER_BLOCKED, username);
     }
 
     /**
      *
      * @param message String
-     * @return String
      */
-    public static String invalidToken(String message) {
-        String msg = String.format("Invalid token: '%s' !", message);
-        log.info(prefixMsg(msg));
-        return msg;
-    }
-
-    /**
-     *
-     * @param username String
-     * @param url String
-     * @param method String
-     */
-    public static void getDecodedUserMsg(String username, String url, String method) {
-        String msg = String.format("User '%s' requested data: %s %s", (username == null) ? UNKNOWN_USER : username, method, url);
-        log.info(prefixMsg(msg));
+    public static void invalidToken(String message) {
+        log.info(MSG_PREFIX+MSG_INVALID_TOKEN, message);
     }
 }
@@ -1,8 +1,12 @@
 package com.romanm.jwtservicedata.controllers;
 
 import com.romanm.jwtservicedata.constants.Api;
+import com.romanm.jwtservicedata.constants.MessageConstants;
 import com.romanm.jwtservicedata.models.ChatItem;
+import com.romanm.jwtservicedata.models.requests.ChatCursor;
+import com.romanm.jwtservicedata.models.requests.ConversationRead;
 import com.romanm.jwtservicedata.models.requests.MessageApplier;
+import com.romanm.jwtservicedata.models.responses.ConversationReadResponse;
 import com.romanm.jwtservicedata.models.responses.MessageApplierResponse;
 import com.romanm.jwtservicedata.models.responses.ResponseData;
 import com.romanm.jwtservicedata.services.interfaces.ChatService;
@@ -10,8 +14,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -49,18 +55,41 @@ public class ChatMessageController {
     }
 
     /**
-     * Получить переписку двух пользователей
+     * Получить переписку двух пользователей. Если передан параметр cursor (пустой для первой страницы),
+     * страница читается после этой позиции, а в ответе передается nextCursor для следующей страницы.
+     * Без параметра cursor страница выбирается по номеру page
      * @param page int
      * @param pageSize int
      * @param userId String
      * @param fromUserId String
+     * @param cursor String
      * @return ResponseEntity<Mono<ResponseData<ChatItem>>>
      */
     @GetMapping(value = Api.API_CHAT_USERS_MESSAGES)
     public ResponseEntity<Mono<ResponseData<ChatItem>>> getUsersChatMessages(@RequestParam(value = Api.PARAM_PAGE, defaultValue = "0", required = false) int page,
                                                                              @RequestParam(value = Api.PARAM_PAGE_SIZE, defaultValue = "10", required = false) int pageSize,
                                                                              @RequestParam(value = Api.PARAM_USER_ID, defaultValue = "", required = true) String userId,
-                                                                             @RequestParam(value = Api.PARAM_FROM_USER_ID, defaultValue = "", required = true) String fromUserId) {
+                                                                             @RequestParam(value = Api.PARAM_FROM_USER_ID, defaultValue = "", required = true) String fromUserId,
+                                                                             @RequestParam(value = Api.PARAM_CURSOR, required = false) String cursor) {
+        if (cursor != null) {
+            ChatCursor chatCursor;
+            try {
+                chatCursor = ChatCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, MessageConstants.MSG_INVALID_CURSOR);
+            }
+            return ResponseEntity.ok(this.chatService
+                    .findUsersMessages(userId, fromUserId, chatCursor, pageSize)
+                    .collectList()
+                    .map(data -> {
+                        ResponseData<ChatItem> responseData = new ResponseData<>(page, pageSize, data);
+                        if (data.size() == pageSize) {
+                            responseData.setNextCursor(ChatCursor.of(data.get(0)).encode());
+                        }
+                        return responseData;
+                    }));
+        }
+
         return ResponseEntity.ok(this.chatService
                 .findUsersMessages(userId, fromUserId, page, pageSize, Sort.Direction.DESC)
                 .collectList()
@@ -92,6 +121,19 @@ public class ChatMessageController {
         return ResponseEntity.ok(this.chatService.appliedMessages(messageApplier));
     }
 
+    /**
+     * Отметить прочитанной переписку до указанного времени, без списка сообщений
+     * @param conversationRead ConversationRead
+     * @return ResponseEntity<Mono<ConversationReadResponse>>
+     */
+    @PostMapping(value = Api.API_CHAT_CONVERSATION_READ)
+    public ResponseEntity<Mono<ConversationReadResponse>> applyConversation(@RequestBody ConversationRead conversationRead) {
+        if ((conversationRead.getUserId() == null) || (conversationRead.getFromUserId() == null) || (conversationRead.getTimestamp() == null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, MessageConstants.MSG_NOT_ALL_HTTP_PARAMS);
+        }
+        return ResponseEntity.ok(this.chatService.readConversation(conversationRead));
+    }
+
     /**
      * Получить сообщения
      * @param messageIds List<String>
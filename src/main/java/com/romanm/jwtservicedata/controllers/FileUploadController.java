@@ -2,79 +2,99 @@ package com.romanm.jwtservicedata.controllers;
 
 import com.romanm.jwtservicedata.components.confs.FileConfig;
 import com.romanm.jwtservicedata.components.files.MediaTypeHandler;
+import com.romanm.jwtservicedata.components.files.MultipartMixedEncoder;
+import com.romanm.jwtservicedata.components.files.ResourceCacheHandler;
 import com.romanm.jwtservicedata.constants.Api;
 import com.romanm.jwtservicedata.constants.MessageConstants;
+import com.romanm.jwtservicedata.models.responses.files.FileStatus;
 import com.romanm.jwtservicedata.services.interfaces.StorageService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
 @Slf4j
 @RestController
 @RequestMapping(value = Api.API_PREFIX)
 public class FileUploadController {
+    private static final String THUMB_RETRY_AFTER_SECONDS = "1";
+
     @Autowired
     private StorageService storageService;
     @Autowired
     private MediaTypeHandler mediaTypeHandler;
     @Autowired
     private FileConfig fileConfig;
+    @Autowired
+    private ResourceCacheHandler resourceCacheHandler;
+    @Autowired
+    private MultipartMixedEncoder multipartMixedEncoder;
 
     /**
-     * Получить файл изображения по ссылке. Пример: /api/resource?user_id=208&file_id=ford_mustang_ford_avtomobil_226678_1280x1024.jpg
+     * Получить файл изображения по ссылке. Пример: /api/resource?user_id=208&file_id=ford_mustang_ford_avtomobil_226678_1280x1024.jpg&v=1f2a-17c8e3a0b10&size=160
+     * Файл отдается потоком без копирования в память (sendfile), поддерживаются запросы с заголовком Range.
+     * Условный запрос (If-None-Match, If-Modified-Since) для неизмененного файла получит 304.
+     * Параметр size выбирает уменьшенную копию изображения не уже заданной ширины, без него отдается исходный файл
      * @param userId String
-     * @return  Mono<ResponseEntity<byte[]>>
+     * @param fileName String
+     * @param version String
+     * @param size int
+     * @return  Mono<ResponseEntity<Resource>>
      */
     @GetMapping(value = Api.API_USER_IMAGE)
-    public ResponseEntity<Mono<byte[]>> getFile(
+    public Mono<ResponseEntity<Resource>> getFile(
             @RequestParam(value = Api.PARAM_USER_ID, defaultValue = "") String userId,
-            @RequestParam(value = Api.PARAM_FILE_ID, defaultValue = "") String fileName) {
+            @RequestParam(value = Api.PARAM_FILE_ID, defaultValue = "") String fileName,
+            @RequestParam(value = Api.PARAM_VERSION, defaultValue = "") String version,
+            @RequestParam(value = Api.PARAM_IMAGE_SIZE, defaultValue = "0") int size) {
 
-        //Найти файл пользователя по имени
-        byte[] bytes = this.storageService.getFile(userId, fileName);
         //Получить медиатип по названию файла
         String mediaType = this.mediaTypeHandler.getFileMediaType(fileName);
         if (mediaType == null) {
-            return ResponseEntity.badRequest().build();
+            return Mono.just(ResponseEntity.badRequest().build());
         }
-        //Присвоить медиатип заголовку ответа сервера
-        HttpHeaders headers = new HttpHeaders();
-        headers.add("Content-Type", mediaType);
-        //return Mono.just(bytes.length > 0 ? new ResponseEntity<>(bytes, headers, HttpStatus.OK): ResponseEntity.notFound().build());
-        return bytes.length > 0 ? new ResponseEntity<>(Mono.just(bytes), headers, HttpStatus.OK): ResponseEntity.notFound().build();
+        //Найти файл пользователя по имени и присвоить медиатип и заголовки кеширования ответу сервера
+        return this.storageService.getFileResource(userId, fileName, size)
+                .map(resource -> this.resourceCacheHandler.toResponse(resource, mediaType, version, size))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
     /**
-     * Получить файл изображения по ссылке. Пример: /api/resource/thumb?user_id=208
+     * Получить файл изображения по ссылке. Пример: /api/resource/thumb?user_id=208&v=1f2a-17c8e3a0b10
      * @param userId String
-     * @return  Mono<ResponseEntity<byte[]>>
+     * @param version String
+     * @return  Mono<ResponseEntity<Resource>>
      */
     @GetMapping(value = Api.API_USER_RESOURCE_THUMB)
-    public Mono<ResponseEntity<byte[]>> getFileThumb(
-            @RequestParam(value = Api.PARAM_USER_ID, defaultValue = "") String userId) {
+    public Mono<ResponseEntity<Resource>> getFileThumb(
+            @RequestParam(value = Api.PARAM_USER_ID, defaultValue = "") String userId,
+            @RequestParam(value = Api.PARAM_VERSION, defaultValue = "") String version) {
 
-        return Mono.create(sink -> {
-            //Найти файл пользователя по имени
-            byte[] bytes = this.storageService.getFileThumb(userId);
-            //Получить медиатип по названию файла
-            String mediaType;
-            if ((mediaType = this.mediaTypeHandler.getFileMediaType("_."+this.fileConfig.getThumbExt())) == null) {
-                sink.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, MessageConstants.MSG_UNKNOWN_MEDIA_TYPE));
-                return;
-            }
-            //Присвоить медиатип заголовку ответа сервера
-            HttpHeaders headers = new HttpHeaders();
-            headers.add("Content-Type", mediaType);
-            sink.success(bytes.length > 0 ? new ResponseEntity<>(bytes, headers, HttpStatus.OK): ResponseEntity.notFound().build());
-        });
+        //Получить медиатип по расширению миниатюры
+        String mediaType;
+        if ((mediaType = this.mediaTypeHandler.getFileMediaType("_."+this.fileConfig.getThumbExt())) == null) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, MessageConstants.MSG_UNKNOWN_MEDIA_TYPE));
+        }
+        //Найти миниатюру пользователя и присвоить медиатип и заголовки кеширования ответу сервера
+        return this.storageService.getFileThumbResource(userId)
+                .map(resource -> this.resourceCacheHandler.toResponse(resource, mediaType, version))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
     /**
@@ -96,7 +116,60 @@ public class FileUploadController {
     }
 
     /**
-     * Сохранить миниатюру файла по коду пользователя и названию файла
+     * Получить миниатюры нескольких пользователей одним ответом multipart/mixed. Пример: /api/resource/thumbs?user_ids=208,209,210
+     * Миниатюры читаются параллельно (не более files.thumbs-batch-concurrency одновременно) и отдаются в порядке запроса
+     * по мере готовности. Каждая часть содержит Content-Disposition с кодом пользователя и ETag, пользователи без миниатюры пропускаются
+     * @param userIds List<String>
+     * @param response ServerHttpResponse
+     * @return ResponseEntity<Flux<DataBuffer>>
+     */
+    @GetMapping(value = Api.API_USER_RESOURCE_THUMBS)
+    public ResponseEntity<Flux<DataBuffer>> getFileThumbs(
+            @RequestParam(value = Api.PARAM_USER_IDS, defaultValue = "") List<String> userIds,
+            ServerHttpResponse response) {
+
+        String mediaType;
+        if ((mediaType = this.mediaTypeHandler.getFileMediaType("_."+this.fileConfig.getThumbExt())) == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, MessageConstants.MSG_UNKNOWN_MEDIA_TYPE);
+        }
+        if (userIds.size() > this.fileConfig.getThumbsBatchMaxUsers()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, String.format(MessageConstants.MSG_TOO_MANY_USER_IDS, this.fileConfig.getThumbsBatchMaxUsers()));
+        }
+
+        //Код пользователя попадает в заголовки части, поэтому управляющие символы недопустимы
+        Flux<HttpEntity<Resource>> parts = Flux.fromIterable(userIds)
+                .filter(userId -> !userId.isEmpty() && userId.chars().noneMatch(Character::isISOControl))
+                .distinct()
+                .flatMapSequential(userId -> this.storageService.getFileThumbResource(userId)
+                        .map(resource -> this.toThumbPart(userId, resource, mediaType)), this.fileConfig.getThumbsBatchConcurrency());
+
+        String boundary = this.multipartMixedEncoder.generateBoundary();
+        return ResponseEntity.ok()
+                .contentType(this.multipartMixedEncoder.getMediaType(boundary))
+                .body(this.multipartMixedEncoder.encode(parts, boundary, response.bufferFactory()));
+    }
+
+    /**
+     * Часть ответа с миниатюрой пользователя
+     * @param userId String
+     * @param resource Resource
+     * @param mediaType String
+     * @return HttpEntity<Resource>
+     */
+    private HttpEntity<Resource> toThumbPart(String userId, Resource resource, String mediaType) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(mediaType));
+        headers.setContentDisposition(ContentDisposition.inline().name(userId).build());
+        String version = this.resourceCacheHandler.getVersion(resource);
+        if (version != null) {
+            headers.setETag("\""+version+"\"");
+        }
+        return new HttpEntity<>(resource, headers);
+    }
+
+    /**
+     * Сохранить миниатюру файла по коду пользователя и названию файла.
+     * Если миниатюра не создана за files.thumb-wait-ms, вернется 202 и она будет создана в фоне, при переполнении очереди - 503
      * @param userId String
      * @param file String
      * @return Mono<ResponseEntity<?>>
@@ -105,11 +178,14 @@ public class FileUploadController {
     public Mono<ResponseEntity<?>> saveFileThumb(
             @RequestPart(value = Api.PARAM_USER_ID) String userId,
             @RequestPart(value = Api.PARAM_FILE_ID) String file) {
-        return Mono.create(sink -> {
-            this.storageService.saveThumb(userId, file).doOnSuccess(res -> {
-                sink.success(ResponseEntity.ok(res));
-            }).subscribe();
-        });
+        return this.storageService.saveThumb(userId, file)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .timeout(Duration.ofMillis(this.fileConfig.getThumbWaitMs()), Mono.fromSupplier(() ->
+                        ResponseEntity.accepted().body(new FileStatus(false, file, String.format(MessageConstants.MSG_THUMB_IN_PROGRESS, file)))))
+                .onErrorResume(RejectedExecutionException.class, e -> Mono.just(
+                        ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                .header(HttpHeaders.RETRY_AFTER, THUMB_RETRY_AFTER_SECONDS)
+                                .body(new FileStatus(false, file, MessageConstants.MSG_THUMB_QUEUE_FULL))));
     }
 
     /**
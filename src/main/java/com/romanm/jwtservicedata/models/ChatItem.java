@@ -6,6 +6,7 @@ import lombok.*;
 import org.springframework.context.annotation.Scope;
 import org.springframework.context.annotation.ScopedProxyMode;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -21,6 +22,8 @@ import java.util.Date;
 @NoArgsConstructor
 @ToString
 @Document(collection = CommonConstants.CHAT_MESSAGE_COLLECTION)
+//Индекс для постраничного чтения переписки по позиции (timestamp, _id)
+@CompoundIndex(name = "userId_fromUserId_timestamp", def = "{'userId': 1, 'fromUserId': 1, 'timestamp': -1, '_id': -1}")
 public class ChatItem implements Serializable {
     @Id
     @NotNull
@@ -0,0 +1,47 @@
+package com.romanm.jwtservicedata.models;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.romanm.jwtservicedata.constants.CommonConstants;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Сводка переписки пользователя ownerId с пользователем peerId: последнее сообщение и число непрочитанных.
+ * На каждую пару пользователей хранится по документу для каждого из участников
+ */
+@Data
+@NoArgsConstructor
+@Document(collection = CommonConstants.CONVERSATION_COLLECTION)
+//Индекс для чтения списка чатов пользователя от последних к старым
+@CompoundIndex(name = "ownerId_lastTimestamp", def = "{'ownerId': 1, 'lastTimestamp': -1}")
+public class Conversation implements Serializable {
+    public static final String ID_SEPARATOR = ":";
+
+    @Id
+    @NotNull
+    private String id;
+    private String ownerId;
+    private String peerId;
+    private String lastFromUserId;
+    private String lastMessage;
+    @JsonFormat(pattern="yyyy-MM-dd HH:mm:ss")
+    private Date lastTimestamp;
+    private long unreadCount = 0;
+
+    /**
+     * Код сводки переписки владельца ownerId с пользователем peerId
+     * @param ownerId String
+     * @param peerId String
+     * @return String
+     */
+    public static String idOf(String ownerId, String peerId) {
+        return ownerId+ID_SEPARATOR+peerId;
+    }
+}
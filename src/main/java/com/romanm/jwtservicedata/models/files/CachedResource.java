@@ -0,0 +1,26 @@
+package com.romanm.jwtservicedata.models.files;
+
+import org.springframework.core.io.ByteArrayResource;
+
+/**
+ * Содержимое файла в памяти с сохраненной датой изменения исходного файла
+ */
+public class CachedResource extends ByteArrayResource {
+    private final long lastModified;
+
+    /**
+     * Конструктор класса CachedResource
+     * @param byteArray byte[]
+     * @param lastModified long
+     * @param description String
+     */
+    public CachedResource(byte[] byteArray, long lastModified, String description) {
+        super(byteArray, description);
+        this.lastModified = lastModified;
+    }
+
+    @Override
+    public long lastModified() {
+        return this.lastModified;
+    }
+}
@@ -0,0 +1,33 @@
+package com.romanm.jwtservicedata.models.files;
+
+import org.springframework.core.io.FileSystemResource;
+
+import java.nio.file.Path;
+
+/**
+ * Уменьшенная копия файла пользователя с версией исходного файла, из которого она создана
+ */
+public class VariantResource extends FileSystemResource {
+    private final String sourceVersion;
+    private final int width;
+
+    /**
+     * Конструктор класса VariantResource
+     * @param path Path
+     * @param sourceVersion String
+     * @param width int
+     */
+    public VariantResource(Path path, String sourceVersion, int width) {
+        super(path);
+        this.sourceVersion = sourceVersion;
+        this.width = width;
+    }
+
+    public String getSourceVersion() {
+        return this.sourceVersion;
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+}
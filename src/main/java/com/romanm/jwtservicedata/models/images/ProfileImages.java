@@ -0,0 +1,16 @@
+package com.romanm.jwtservicedata.models.images;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProfileImages {
+    private List<ImageRef> imgUrls; //Ссылки на изображения пользователя
+    private ImageRef thumbUrl; //Ссылка на миниатюру, null - оставить прежнюю, если ее файл не удален
+    private boolean thumbObsolete; //Файл миниатюры нужно удалить
+}
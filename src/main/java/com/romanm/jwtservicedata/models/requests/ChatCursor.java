@@ -0,0 +1,62 @@
+package com.romanm.jwtservicedata.models.requests;
+
+import com.romanm.jwtservicedata.models.ChatItem;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Позиция в переписке: время и код последнего выданного сообщения. Следующая страница начинается
+ * с сообщений, которые старше этой позиции. Клиенту передается в виде непрозрачной строки
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class ChatCursor implements Serializable {
+    private static final String SEPARATOR = ":";
+
+    private Date timestamp;
+    private String id;
+
+    /**
+     * Позиция сообщения в переписке
+     * @param chatItem ChatItem
+     * @return ChatCursor
+     */
+    public static ChatCursor of(ChatItem chatItem) {
+        return new ChatCursor(chatItem.getTimestamp(), chatItem.getId());
+    }
+
+    /**
+     * Строковое представление позиции для передачи клиенту
+     * @return String
+     */
+    public String encode() {
+        String value = this.timestamp.getTime()+SEPARATOR+this.id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Разобрать строку, полученную от клиента. Для пустой строки вернет null - начало переписки
+     * @param cursor String
+     * @return ChatCursor
+     * @throws IllegalArgumentException если строка не является позицией в переписке
+     */
+    public static ChatCursor decode(String cursor) {
+        if ((cursor == null) || cursor.isEmpty()) {
+            return null;
+        }
+
+        String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        int separatorIndex = value.indexOf(SEPARATOR);
+        if ((separatorIndex <= 0) || (separatorIndex == value.length()-1)) {
+            throw new IllegalArgumentException(cursor);
+        }
+        return new ChatCursor(new Date(Long.parseLong(value.substring(0, separatorIndex))), value.substring(separatorIndex+1));
+    }
+}
@@ -0,0 +1,23 @@
+package com.romanm.jwtservicedata.models.requests;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Отметка о прочтении переписки: пользователь userId прочитал все сообщения от fromUserId,
+ * отправленные не позже timestamp
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class ConversationRead implements Serializable {
+    private String userId;
+    private String fromUserId;
+    @JsonFormat(pattern="yyyy-MM-dd HH:mm:ss")
+    private Date timestamp;
+}
@@ -0,0 +1,17 @@
+package com.romanm.jwtservicedata.models.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ConversationReadResponse implements Serializable {
+    private String userId;
+    private String fromUserId;
+    //Кол-во сообщений, отмеченных прочитанными этим запросом
+    private long modifiedCount;
+}
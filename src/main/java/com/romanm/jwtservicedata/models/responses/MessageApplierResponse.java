@@ -14,5 +14,7 @@ import java.util.List;
 @Data
 public class MessageApplierResponse implements Serializable {
     private List<ChatItem> readMessages = new ArrayList<>();
-    private List<ChatItem> writeMessages = new ArrayList<>();
+    private List<String> writeMessagesIds = new ArrayList<>();
+    //Кол-во сообщений из writeMessagesIds, отмеченных прочитанными этим запросом
+    private long writeModifiedCount;
 }
@@ -17,6 +17,8 @@ public class ResponseData<T> implements Serializable {
     private int page;
     private int size;
     private int total;
+    //Позиция для запроса следующей страницы, null если страница последняя
+    private String nextCursor;
     @JsonFormat(pattern="yyyy-MM-dd HH:mm:ss")
     private LocalDateTime timestamp;
 
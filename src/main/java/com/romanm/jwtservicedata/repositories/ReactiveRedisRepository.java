@@ -0,0 +1,43 @@
+package com.romanm.jwtservicedata.repositories;
+
+import com.romanm.jwtservicedata.components.tracing.Tracing;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.ReactiveHashOperations;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Неблокирующий доступ к пользователям в Redis. Хранилище то же, что у RedisRepository
+ */
+@Repository
+public class ReactiveRedisRepository {
+    public static final String USER = "users";
+    private final ReactiveHashOperations<String, String, String> hashOperations;
+    private final Tracing tracing;
+
+    @Autowired
+    public ReactiveRedisRepository(ReactiveStringRedisTemplate redisTemplate, Tracing tracing) {
+        this.hashOperations = redisTemplate.opsForHash();
+        this.tracing = tracing;
+    }
+
+    public Mono<Boolean> add(String key, final String value) {
+        return this.tracing.trace("redis.hset", this.hashOperations.put(USER, key, value));
+    }
+
+    public Mono<Boolean> delete(final String id) {
+        return this.tracing.trace("redis.hdel", this.hashOperations.remove(USER, id).map(count -> count > 0));
+    }
+
+    public Mono<String> find(final String id) {
+        return this.tracing.trace("redis.hget", this.hashOperations.get(USER, id));
+    }
+
+    public Flux<Map.Entry<String, String>> findAll() {
+        return this.tracing.trace("redis.hgetall", this.hashOperations.entries(USER));
+    }
+}
@@ -1,7 +1,11 @@
 package com.romanm.jwtservicedata.services;
 
+import com.romanm.jwtservicedata.components.chat.ChatMessageBroker;
 import com.romanm.jwtservicedata.models.ChatItem;
+import com.romanm.jwtservicedata.models.requests.ChatCursor;
+import com.romanm.jwtservicedata.models.requests.ConversationRead;
 import com.romanm.jwtservicedata.models.requests.MessageApplier;
+import com.romanm.jwtservicedata.models.responses.ConversationReadResponse;
 import com.romanm.jwtservicedata.models.responses.MessageApplierResponse;
 import com.romanm.jwtservicedata.repositories.ChatMessageRepository;
 import com.romanm.jwtservicedata.repositories.pageble.ChatMessagePageRepository;
@@ -14,9 +18,9 @@ import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 
 
 @Service("chatServiceV1")
@@ -24,35 +28,45 @@ public class ChatServiceV1 implements ChatService {
     private final ChatMessageRepository chatMessageRepository;
     private final ChatMessagePageRepository chatMessagePageRepository;
     private final MongoOperations mongoOperations;
+    private final ChatMessageBroker chatMessageBroker;
 
     @Autowired
     public ChatServiceV1(
             ChatMessageRepository chatMessageRepository,
             ChatMessagePageRepository chatMessagePageRepository,
-            MongoOperations mongoOperations) {
+            MongoOperations mongoOperations,
+            ChatMessageBroker chatMessageBroker) {
         this.chatMessageRepository = chatMessageRepository;
         this.chatMessagePageRepository = chatMessagePageRepository;
         this.mongoOperations = mongoOperations;
+        this.chatMessageBroker = chatMessageBroker;
     }
 
     /**
-     * Метод добавления сообщения объекту
+     * Метод добавления сообщения объекту. Вместе с сообщением обновляются сводки переписки обоих пользователей,
+     * а сохраненное сообщение доставляется подключенному получателю
      * @param chatMessage ChatItem
      * @return Mono<ChatItem>
      */
     @Override
     public Mono<ChatItem> saveMessage(ChatItem chatMessage) {
-        return this.chatMessageRepository.save(chatMessage);
+        return this.chatMessageRepository.save(chatMessage)
+                .flatMap(chatItem -> this.mongoOperations.updateConversations(chatItem)
+                        .then(this.chatMessageBroker.publish(chatItem))
+                        .thenReturn(chatItem));
     }
 
     /**
-     * Сохранение группы сообщений
+     * Сохранение группы сообщений. Сводки переписки обновляются, а сообщения доставляются в порядке сообщений
      * @param chatMessages List<ChatItem>
      * @return  Flux<ChatItem>
      */
     @Override
     public Flux<ChatItem> saveMessages(List<ChatItem> chatMessages) {
-        return this.chatMessageRepository.saveAll(chatMessages);
+        return this.chatMessageRepository.saveAll(chatMessages)
+                .concatMap(chatItem -> this.mongoOperations.updateConversations(chatItem)
+                        .then(this.chatMessageBroker.publish(chatItem))
+                        .thenReturn(chatItem));
     }
 
     /**
@@ -69,29 +83,39 @@ public class ChatServiceV1 implements ChatService {
     }
 
     /**
-     * Получить и передать статус непрочитанных сообщений
+     * Получить статусы сообщений readMessagesIds и отметить прочитанными сообщения writeMessagesIds.
+     * Отмечаемые сообщения не читаются из базы, в ответе передается кол-во отмеченных
      * @param messageApplier MessageApplier
      * @return Mono<MessageApplier>
      */
     @Override
     public Mono<MessageApplierResponse> appliedMessages(MessageApplier messageApplier) {
-        Mono<List<ChatItem>> readMessagesMono = this.chatMessageRepository.findChatItemsByIdIn(messageApplier.getReadMessagesIds()).collectList();
+        List<String> writeMessagesIds = Optional.ofNullable(messageApplier.getWriteMessagesIds()).orElse(List.of());
+        Mono<List<ChatItem>> readMessagesMono = this.findMessagesByIds(Optional.ofNullable(messageApplier.getReadMessagesIds()).orElse(List.of())).collectList();
+        Mono<Long> writeMessagesMono = this.mongoOperations.markMessagesRead(writeMessagesIds);
 
-        Mono<List<ChatItem>> writeMessagesMono = this.findMessagesByIds(messageApplier.getWriteMessagesIds()).map(chatItem -> {
-            chatItem.setRead(true);
-            return chatItem;
-        }).collectList().flatMap(chatItems -> this.chatMessageRepository.saveAll(chatItems).collectList());
-
-
-
-        return Mono.from(Flux.zip(readMessagesMono, writeMessagesMono)).map(data -> {
+        return Mono.zip(readMessagesMono, writeMessagesMono).map(data -> {
             MessageApplierResponse messageApplierResponse = new MessageApplierResponse();
             messageApplierResponse.getReadMessages().addAll(data.getT1());
-            messageApplierResponse.getWriteMessages().addAll(data.getT2());
+            messageApplierResponse.getWriteMessagesIds().addAll(writeMessagesIds);
+            messageApplierResponse.setWriteModifiedCount(data.getT2());
             return messageApplierResponse;
         });
     }
 
+    /**
+     * Отметить прочитанными все сообщения пользователю userId от fromUserId, отправленные не позже timestamp.
+     * Время в API передается с точностью до секунды, поэтому отмечаются сообщения до конца этой секунды
+     * @param conversationRead ConversationRead
+     * @return Mono<ConversationReadResponse>
+     */
+    @Override
+    public Mono<ConversationReadResponse> readConversation(ConversationRead conversationRead) {
+        Date upTo = new Date(conversationRead.getTimestamp().getTime() / 1000 * 1000 + 999);
+        return this.mongoOperations.markConversationRead(conversationRead.getUserId(), conversationRead.getFromUserId(), upTo)
+                .map(modifiedCount -> new ConversationReadResponse(conversationRead.getUserId(), conversationRead.getFromUserId(), modifiedCount));
+    }
+
     /**
      * Найти сообщения по конкретным параметрам
      * @param userId String
@@ -106,16 +130,36 @@ public class ChatServiceV1 implements ChatService {
         return this.chatMessagePageRepository.findChatMessageByUserIdAndFromUserIdOrderByTimestampDesc(userId, fromUserId, PageRequest.of(page, size));
     }
 
+    /**
+     * Страница переписки двух пользователей по номеру страницы. Сообщения обоих направлений выбираются одним
+     * запросом от новых к старым, страница page содержит size сообщений и выдается от старых к новым
+     * @param userId1 String
+     * @param userId2 String
+     * @param page int
+     * @param size int
+     * @param direction Sort.Direction
+     * @return Flux<ChatItem>
+     */
     @Override
     public Flux<ChatItem> findUsersMessages(String userId1, String userId2, int page, int size, Sort.Direction direction) {
-        return Flux.concat(
-                      this.mongoOperations.getCurrentProfileChatCorrespondence(userId1, userId2, page, size, direction),
-                      this.mongoOperations.getCurrentProfileChatCorrespondence(userId2, userId1, page, size, direction)
-        ).sort(Comparator.comparing(ChatItem::getTimestamp));
+        return this.mongoOperations.getConversation(userId1, userId2, null, (long) page*size, size);
+    }
+
+    /**
+     * Страница переписки двух пользователей, начинающаяся после позиции cursor, от старых к новым
+     * @param userId1 String
+     * @param userId2 String
+     * @param cursor ChatCursor позиция самого старого сообщения предыдущей страницы или null для первой страницы
+     * @param size int
+     * @return Flux<ChatItem>
+     */
+    @Override
+    public Flux<ChatItem> findUsersMessages(String userId1, String userId2, ChatCursor cursor, int size) {
+        return this.mongoOperations.getConversation(userId1, userId2, cursor, 0, size);
     }
 
     /**
-     *
+     * То же, что findUsersMessages: оба направления переписки читаются одним запросом
      * @param userId1 String
      * @param userId2 String
      * @param page int
@@ -125,10 +169,7 @@ public class ChatServiceV1 implements ChatService {
      */
     @Override
     public Flux<ChatItem> findUsersMessagesMerged(String userId1, String userId2, int page, int size, Sort.Direction direction) {
-        return Flux.mergeSequential(
-                this.mongoOperations.getCurrentProfileChatCorrespondence(userId1, userId2, page, size, direction),
-                this.mongoOperations.getCurrentProfileChatCorrespondence(userId2, userId1, page, size, direction)
-        ).sort(Comparator.comparing(ChatItem::getTimestamp));
+        return this.findUsersMessages(userId1, userId2, page, size, direction);
     }
 
     /**
@@ -140,7 +181,7 @@ public class ChatServiceV1 implements ChatService {
      */
     @Override
     public Mono<ChatItem> addMessage(String toUserId, String fromUserId, String message) {
-        return this.chatMessageRepository.save(new ChatItem(toUserId, fromUserId, message));
+        return this.saveMessage(new ChatItem(toUserId, fromUserId, message));
     }
 
 
@@ -1,25 +1,41 @@
 package com.romanm.jwtservicedata.services;
 
 import com.romanm.jwtservicedata.components.confs.FileConfig;
+import com.romanm.jwtservicedata.components.files.BlobStore;
+import com.romanm.jwtservicedata.components.files.ImageSignatureHandler;
+import com.romanm.jwtservicedata.components.files.ProfileUpdateCoalescer;
+import com.romanm.jwtservicedata.components.files.ResourceCacheHandler;
+import com.romanm.jwtservicedata.components.files.ThumbCache;
+import com.romanm.jwtservicedata.components.files.ThumbPipeline;
+import com.romanm.jwtservicedata.components.files.UserFileIndex;
+import com.romanm.jwtservicedata.components.tracing.Tracing;
 import com.romanm.jwtservicedata.constants.Api;
 import com.romanm.jwtservicedata.constants.MessageConstants;
+import com.romanm.jwtservicedata.models.files.VariantResource;
 import com.romanm.jwtservicedata.models.images.ImageRef;
+import com.romanm.jwtservicedata.models.images.ProfileImages;
 import com.romanm.jwtservicedata.models.responses.files.FileStatus;
-import com.romanm.jwtservicedata.repositories.UserProfileRepository;
 import com.romanm.jwtservicedata.services.abstracts.StorageServiceBase;
 import com.romanm.jwtservicedata.services.interfaces.StorageService;
+import com.romanm.jwtservicedata.services.mongodb.MongoOperations;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
 import java.io.File;
-import java.io.IOException;
 import java.nio.file.Files;
+import java.time.Duration;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -27,13 +43,19 @@ import java.util.stream.Collectors;
 public class StorageServiceV1 extends StorageServiceBase implements StorageService {
 
     private final FileConfig fileConfig;
-    private final UserProfileRepository userProfileRepository;
+    private final MongoOperations mongoOperations;
+    private final ThumbCache thumbCache;
+    private final UserFileIndex userFileIndex;
+    private final ProfileUpdateCoalescer profileUpdateCoalescer;
 
     @Autowired
-    public StorageServiceV1(FileConfig fileConfig, UserProfileRepository userProfileRepository) {
-        super(fileConfig);
+    public StorageServiceV1(FileConfig fileConfig, MongoOperations mongoOperations, ThumbCache thumbCache, UserFileIndex userFileIndex, Scheduler storageScheduler, ThumbPipeline thumbPipeline, ImageSignatureHandler imageSignatureHandler, BlobStore blobStore, Tracing tracing) {
+        super(fileConfig, thumbCache, userFileIndex, storageScheduler, thumbPipeline, imageSignatureHandler, blobStore, tracing);
         this.fileConfig = fileConfig;
-        this.userProfileRepository = userProfileRepository;
+        this.mongoOperations = mongoOperations;
+        this.thumbCache = thumbCache;
+        this.userFileIndex = userFileIndex;
+        this.profileUpdateCoalescer = new ProfileUpdateCoalescer(Duration.ofMillis(fileConfig.getProfileUpdateDelayMs()), this::applyImgUrlsOfUserProfile);
     }
 
     /**
@@ -43,104 +65,109 @@ public class StorageServiceV1 extends StorageServiceBase implements StorageServi
      */
     @Override
     public Flux<String> getFiles(String userId) {
-        this.fileConfig.listFiles(userId).forEach(file -> {
-            log.info(MessageConstants.prefixMsg("Got file: "+file.getName()));
-        });
-        return Flux.empty();
+        return this.io("storage.listFiles", () -> this.userFileIndex.listFiles(userId)).doOnNext(files -> files.forEach(file -> {
+            log.info(MessageConstants.MSG_PREFIX+"Got file: {}", file.getName());
+        })).thenMany(Flux.empty());
     }
 
     /**
-     * Получить экземпляр файла из каталога и перевезти его в массив байт
+     * Получить файл из каталога пользователя как ресурс без чтения его содержимого в память.
+     * Если задан размер, вернется наименьшая уменьшенная копия не меньше этого размера, а при ее отсутствии - исходный файл
      * @param userId String
      * @param fileName String
-     * @return byte[]
+     * @param size int
+     * @return Mono<Resource>
      */
     @Override
-    public byte[] getFile(String userId, String fileName) {
-        List<File> files = this.fileConfig.listFiles(userId)
-                .stream()
-                .filter(item -> (item.getName().equals(fileName)))
-                .collect(Collectors.toList());
-        if (files.size() > 0) {
-            File file = files.get(0);
-            try {
-                return Files.readAllBytes(file.toPath());
-            } catch (IOException e) {
-                log.error(MessageConstants.errorPrefixMsg(e.getMessage()));
+    public Mono<Resource> getFileResource(String userId, String fileName, int size) {
+        return this.io("storage.getFile", () -> Optional.ofNullable(this.fileConfig.resolveUserFile(userId, fileName))
+                .filter(Files::isRegularFile)
+                .map(path -> this.getFileVariant(userId, path, size))
+                .orElse(null));
+    }
+
+    /**
+     * Получить уменьшенную копию файла для заданного размера или сам файл, если копии нет
+     * @param userId String
+     * @param file Path
+     * @param size int
+     * @return Resource
+     */
+    private Resource getFileVariant(String userId, Path file, int size) {
+        Integer width = this.fileConfig.getVariantWidth(size);
+        if (width != null) {
+            Path variant = this.fileConfig.getUserVariantFile(userId, file.getFileName().toString(), width);
+            if (Files.isRegularFile(variant)) {
+                return new VariantResource(variant, ResourceCacheHandler.getVersion(file.toFile()), width);
             }
         }
-        return new byte[]{};
+        return new FileSystemResource(file);
     }
 
     /**
-     * Получить миниатюру файла из каталога пользователя
+     * Получить миниатюру файла из каталога пользователя. Миниатюра читается с диска только при промахе кеша
      * @param userId String
-     * @return byte[]
+     * @return Mono<Resource>
      */
     @Override
-    public byte[] getFileThumb(String userId) {
-        List<File> files = this.fileConfig
-                .listFiles(userId+"/"+this.fileConfig.getThumbDir())
-                .stream()
-                .filter(File::isFile)
-                .collect(Collectors.toList());
-        if (files.size() > 0) {
-            try {
-                return Files.readAllBytes(files.get(0).toPath());
-            } catch (IOException e) {
-                log.error(MessageConstants.errorPrefixMsg(e.getMessage()));
-            }
+    public Mono<Resource> getFileThumbResource(String userId) {
+        if ((userId == null) || userId.isEmpty()) {
+            return Mono.empty();
         }
-
-        return new byte[0];
+        //Код пользователя должен быть одним элементом пути
+        return this.io("storage.getThumb", () -> (this.fileConfig.resolveUserFile(userId, this.fileConfig.getThumbFileName()) != null) ?
+                this.thumbCache.load(userId, this.fileConfig.getUserThumbFile(userId)) : null);
     }
 
     /**
-     * Сохранить файл в каталог пользователя
+     * Сохранить файл в каталог пользователя. Ответ вернется после обновления ссылок в профиле
      * @param userId String
      * @param filePartMono Mono<FilePart>
      * @return Mono<Boolean>
      */
     @Override
     public Mono<FileStatus> save(String userId, Mono<FilePart> filePartMono) {
-        return Mono.create(sink -> {
-            if (userId != null) {Optional.ofNullable(filePartMono).ifPresent(file -> {
-                this.save(file, userId).map(fileStatus -> (this.updateImgUrlsOfUserProfile(fileStatus, userId))).doOnSuccess(sink::success).subscribe();
-            });
-            } else {
-                sink.success(new FileStatus(false, "", MessageConstants.MSG_NOT_ALL_HTTP_PARAMS, ""));
-            }
-        });
+        if (userId == null) {
+            return Mono.just(new FileStatus(false, "", MessageConstants.MSG_NOT_ALL_HTTP_PARAMS, ""));
+        }
+        return Mono.justOrEmpty(filePartMono)
+                .flatMap(file -> this.save(file, userId))
+                .flatMap(fileStatus -> fileStatus.isSaved() ? this.updateImgUrlsOfUserProfile(userId, null).thenReturn(fileStatus) : Mono.just(fileStatus));
     }
 
     /**
-     * Сохранить миниатюру выбранного файла.
+     * Сохранить миниатюру выбранного файла. Миниатюра создается в фоне, ссылка в профиле обновится после ее создания,
+     * даже если подписчик отменит ожидание. При переполнении очереди миниатюр вернется RejectedExecutionException
      * @param userId String
      * @param fileName String
      * @return Mono<FileStatus>
      */
     @Override
     public Mono<FileStatus> saveThumb(String userId, String fileName) {
-        return Mono.create(sink -> {
-            if ((userId != null) && (fileName != null)) {
-                this.saveFileThumb(userId, fileName).map(fileStatus -> (this.updateImgUrlsOfUserProfile(fileStatus, userId))).doOnSuccess(sink::success).subscribe();
-            } else {
-                sink.success(new FileStatus(false, "", MessageConstants.MSG_NOT_ALL_HTTP_PARAMS, ""));
+        if ((userId == null) || (fileName == null)) {
+            return Mono.just(new FileStatus(false, "", MessageConstants.MSG_NOT_ALL_HTTP_PARAMS, ""));
+        }
+
+        AtomicReference<Mono<Void>> profileUpdated = new AtomicReference<>(Mono.empty());
+        return this.saveFileThumb(userId, fileName, fileStatus -> {
+            if (fileStatus.isSaved()) {
+                profileUpdated.set(this.updateImgUrlsOfUserProfile(userId, fileStatus.getFileName()));
             }
-        });
+            return fileStatus;
+        }).flatMap(fileStatus -> profileUpdated.get().thenReturn(fileStatus));
     }
 
     /**
-     * Сохранение нескольких файлов одновременно
+     * Сохранение нескольких файлов одновременно. Изменения профиля от всех файлов объединяются,
+     * поток завершится после обновления ссылок в профиле
      * @param userId String
      * @param files  Flux<FilePart>
      * @return Flux<FileStatus>
      */
     @Override
     public Flux<FileStatus> saveAll(String userId, Flux<FilePart> files) {
-        return this.saveAllFlux(files, userId).doOnComplete(() -> {
-            this.updateImgUrlsOfUserProfile(null, userId);
-        });
+        return this.saveAllFlux(files, userId)
+                .concatWith(Mono.defer(() -> this.updateImgUrlsOfUserProfile(userId, null)).then(Mono.empty()));
     }
 
     /**
@@ -151,17 +178,10 @@ public class StorageServiceV1 extends StorageServiceBase implements StorageServi
      */
     @Override
     public Mono<Boolean> remove(String userId, String fileName) {
-        return Mono.create(sink -> {
-            if ((userId != null) && (fileName != null)) {
-                boolean isDeleted = this.deleteUserFile(fileName, userId);
-                if (isDeleted) {
-                    this.updateImgUrlsOfUserProfile(null, userId);
-                }
-                sink.success(isDeleted);
-            } else {
-                sink.success(false);
-            }
-        });
+        if ((userId == null) || (fileName == null)) {
+            return Mono.just(false);
+        }
+        return this.deleteUserFile(fileName, userId).flatMap(this.updateImgUrlsIfChanged(userId));
     }
 
     /**
@@ -171,17 +191,10 @@ public class StorageServiceV1 extends StorageServiceBase implements StorageServi
      */
     @Override
     public Mono<Boolean> removeAll(String userId) {
-        return Mono.create(sink -> {
-           if (userId != null) {
-               boolean isDeletedAll = this.deleteAll(userId);
-               if (isDeletedAll) {
-                   this.updateImgUrlsOfUserProfile(null, userId);
-               }
-               sink.success(isDeletedAll);
-           } else {
-               sink.success(false);
-           }
-        });
+        if (userId == null) {
+            return Mono.just(false);
+        }
+        return this.deleteAll(userId).flatMap(this.updateImgUrlsIfChanged(userId));
     }
 
     /**
@@ -191,65 +204,59 @@ public class StorageServiceV1 extends StorageServiceBase implements StorageServi
      */
     @Override
     public Mono<Boolean> removeThumb(String userId) {
-        boolean isDeleted = this.deleteThumb(userId);
-        if (isDeleted) {
-            this.updateImgUrlsOfUserProfile(null, userId);
-        }
-        return Mono.just(isDeleted);
+        return this.deleteThumb(userId).flatMap(this.updateImgUrlsIfChanged(userId));
     }
 
     /**
-     * Дописать/удалить/изменить в профиль пользователя ссылки на сохраненные изображения
-     * @param fileStatus FileStatus
+     * Обновить ссылки в профиле, если файлы пользователя изменились
      * @param userId String
-     * @return FileStatus
+     * @return Function<Boolean, Mono<Boolean>>
      */
-    private FileStatus updateImgUrlsOfUserProfile(FileStatus fileStatus, String userId) {
-        this.userProfileRepository
-                    .findUserProfileById(userId)
-                    .doOnSuccess(userProfile -> {
-                        if (userProfile != null) {
-                            List<String> fileThumbUrls = this.fileConfig
-                                    .listFiles(userId+"/"+this.fileConfig.getThumbDir())
-                                    .stream()
-                                    .map(file -> (String.format(Api.API_RESOURCE_URI_THUMB, userId)))
-                                    .collect(Collectors.toList());
-
-                            List<ImageRef> imgRefs = this.fileConfig
-                                    .listFiles(userId)
-                                    .stream()
-                                    .map(file -> (new ImageRef(String.format(Api.API_RESOURCE_URI_TEMP, userId, file.getName()), file.getName())))
-                                    .collect(Collectors.toList());
-
-
-
-                            if ((fileStatus == null) && ((imgRefs.size() == 0) || (fileThumbUrls.size() == 0))) {
-                                userProfile.setThumbUrl(new ImageRef());
-                                this.deleteThumb(userId);
-                                log.info("Ok 1 Deletes thumb");
-                            } else if ((fileStatus != null) && (imgRefs.size() > 0) && (fileThumbUrls.size() > 0)) {
-                                // log.info("Ok 2 fileStatus.getFileName().split "+fileStatus.getFileName().split("/").length);
-                                if (!fileStatus.getFileName().contains("/")) {
-                                    userProfile.setThumbUrl(new ImageRef(fileThumbUrls.get(0), fileStatus.getFileName()));
-                                }
-                                log.info("Ok 2 Add/Update thumb "+fileStatus.getFileName());
-                            } else if ((fileStatus == null) && (imgRefs.size() > 0) && (fileThumbUrls.size() > 0)) {
-                                if (imgRefs.stream().filter(item -> (item.getAlt().equals(userProfile.getThumbUrl().getAlt()))).count() == 0) {
-                                    //Если такой файл не найден после удаления, то удаляем миниатюру из БД
-                                    userProfile.setThumbUrl(new ImageRef());
-                                }
-                            }
-
-                            //userProfile.setThumbUrl(((fileThumbUrls.size() > 0) && (fileStatus != null)) ? new ImageRef(fileThumbUrls.get(0), fileStatus.getFileName()) : new ImageRef());
-                            userProfile.getImgUrls().clear();
-                            userProfile.getImgUrls().addAll(imgRefs);
-                            this.userProfileRepository.save(userProfile).subscribe();
-                        }
-
-                     }).doOnError(throwable -> {
-                         log.error(throwable.getMessage());
-        }).subscribe();
-
-        return fileStatus;
+    private Function<Boolean, Mono<Boolean>> updateImgUrlsIfChanged(String userId) {
+        return isChanged -> isChanged ? this.updateImgUrlsOfUserProfile(userId, null).thenReturn(true) : Mono.just(false);
+    }
+
+    /**
+     * Запросить обновление ссылок на изображения в профиле пользователя. Запросы одного пользователя объединяются
+     * в одно обновление, ошибка обновления не влияет на результат операции с файлами
+     * @param userId String
+     * @param thumbFileName String имя файла новой миниатюры или null
+     * @return Mono<Void>
+     */
+    private Mono<Void> updateImgUrlsOfUserProfile(String userId, String thumbFileName) {
+        return this.profileUpdateCoalescer.submit(userId, thumbFileName).onErrorResume(err -> {
+            log.error(MessageConstants.errorPrefixMsg(err.getMessage()));
+            return Mono.empty();
+        });
+    }
+
+    /**
+     * Дописать/удалить/изменить в профиль пользователя ссылки на сохраненные изображения по текущему содержимому каталога.
+     * Если изображений или миниатюры нет, ссылка на миниатюру очищается, а файл миниатюры удаляется
+     * @param userId String
+     * @param thumbFileName String
+     * @return Mono<Void>
+     */
+    private Mono<Void> applyImgUrlsOfUserProfile(String userId, String thumbFileName) {
+        return this.io("storage.readProfileImages", () -> {
+            List<ImageRef> imgRefs = this.userFileIndex
+                    .listFiles(userId)
+                    .stream()
+                    .map(file -> (new ImageRef(String.format(Api.API_RESOURCE_URI_TEMP, userId, file.getName(), ResourceCacheHandler.getVersion(file)), file.getName())))
+                    .collect(Collectors.toList());
+            List<File> thumbFiles = this.getThumbFiles(userId);
+
+            if (imgRefs.isEmpty() || thumbFiles.isEmpty()) {
+                return new ProfileImages(imgRefs, new ImageRef(), true);
+            }
+            if ((thumbFileName != null) && imgRefs.stream().anyMatch(imgRef -> imgRef.getAlt().equals(thumbFileName))) {
+                String thumbUrl = String.format(Api.API_RESOURCE_URI_THUMB, userId, ResourceCacheHandler.getVersion(thumbFiles.get(0)));
+                return new ProfileImages(imgRefs, new ImageRef(thumbUrl, thumbFileName), false);
+            }
+            //Ссылка на миниатюру очистится, только если ее файл удален
+            return new ProfileImages(imgRefs, null, false);
+        }).flatMap(profileImages -> this.mongoOperations
+                .updateUserProfileImages(userId, profileImages.getImgUrls(), profileImages.getThumbUrl())
+                .then(profileImages.isThumbObsolete() ? this.deleteThumb(userId).then() : Mono.empty()));
     }
 }
@@ -1,49 +1,64 @@
 package com.romanm.jwtservicedata.services;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.romanm.jwtservicedata.components.auth.AuthUserCache;
 import com.romanm.jwtservicedata.models.auth.AuthUser;
-import com.romanm.jwtservicedata.repositories.RedisRepository;
+import com.romanm.jwtservicedata.repositories.ReactiveRedisRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 
 @Slf4j
 @Service
 public class UserServiceV1 {
 
-    private final RedisRepository redisRepository;
+    private final ReactiveRedisRepository redisRepository;
     private final BCryptPasswordEncoder passwordEncoder;
+    private final ObjectMapper objectMapper;
+    private final AuthUserCache authUserCache;
 
     /**
      * Конструктор класса UserServiceV1
-     * @param redisRepository RedisRepository
+     * @param redisRepository ReactiveRedisRepository
      * @param passwordEncoder BCryptPasswordEncoder
+     * @param objectMapper ObjectMapper
+     * @param authUserCache AuthUserCache
      */
     @Autowired
-    public UserServiceV1(RedisRepository redisRepository, BCryptPasswordEncoder passwordEncoder) {
+    public UserServiceV1(ReactiveRedisRepository redisRepository, BCryptPasswordEncoder passwordEncoder, ObjectMapper objectMapper, AuthUserCache authUserCache) {
         this.redisRepository = redisRepository;
         this.passwordEncoder = passwordEncoder;
+        this.objectMapper = objectMapper;
+        this.authUserCache = authUserCache;
     }
 
     /**
-     * Получить объект параметров пользователя по имени пользователя
+     * Получить объект параметров пользователя по имени пользователя из локального кеша или из Redis.
+     * Если пользователь не найден или его данные не читаются, Mono будет пустым
      * @param username String
-     * @return AuthUser
+     * @return Mono<AuthUser>
      */
-    public AuthUser readUserByUsername (String username) {
-        Object res = this.redisRepository.find(username);
-        AuthUser authUser = null;
-        try {
-            if (res != null) {
-                ObjectMapper mapper = new ObjectMapper();
-                authUser = mapper.readValue(res.toString(), AuthUser.class);
+    public Mono<AuthUser> readUserByUsername(String username) {
+        return Mono.defer(() -> {
+            AuthUser cached = this.authUserCache.get(username);
+            if (cached != null) {
+                return Mono.just(cached);
             }
-        } catch (Exception e) {
-            log.error(e.getLocalizedMessage());
-        }
-        return authUser;
-     }
-
 
+            long generation = this.authUserCache.getGeneration();
+            return this.redisRepository.find(username)
+                    .flatMap(res -> {
+                        try {
+                            return Mono.just(this.objectMapper.readValue(res, AuthUser.class));
+                        } catch (JsonProcessingException e) {
+                            log.error(e.getLocalizedMessage());
+                            return Mono.empty();
+                        }
+                    })
+                    .doOnNext(authUser -> this.authUserCache.put(username, authUser, generation));
+        });
+    }
 }
@@ -1,180 +1,222 @@
 package com.romanm.jwtservicedata.services.abstracts;
 
 import com.romanm.jwtservicedata.components.confs.FileConfig;
+import com.romanm.jwtservicedata.components.files.BlobStore;
+import com.romanm.jwtservicedata.components.files.ImageSignatureHandler;
+import com.romanm.jwtservicedata.components.files.ResourceCacheHandler;
+import com.romanm.jwtservicedata.components.files.ThumbCache;
+import com.romanm.jwtservicedata.components.files.ThumbPipeline;
+import com.romanm.jwtservicedata.components.files.UploadGuard;
+import com.romanm.jwtservicedata.components.files.UserFileIndex;
+import com.romanm.jwtservicedata.components.tracing.Tracing;
 import com.romanm.jwtservicedata.constants.Api;
-import com.romanm.jwtservicedata.constants.CommonConstants;
 import com.romanm.jwtservicedata.constants.MessageConstants;
 import com.romanm.jwtservicedata.models.responses.files.FileStatus;
 import lombok.extern.slf4j.Slf4j;
 import net.coobird.thumbnailator.Thumbnails;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.util.FileSystemUtils;
+import org.springframework.util.StringUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
-import java.util.stream.Stream;
+import java.util.concurrent.Callable;
+import java.util.function.UnaryOperator;
 
 @Slf4j
 public class StorageServiceBase {
-    private final FileConfig fileConfig;
+    private static final String VARIANTS_TASK_PREFIX = "variants/";
+    private static final String UPLOAD_FILE_SUFFIX = ".upload";
 
-    public StorageServiceBase(FileConfig fileConfig) {
+    private final FileConfig fileConfig;
+    private final ThumbCache thumbCache;
+    private final UserFileIndex userFileIndex;
+    private final Scheduler storageScheduler;
+    private final ThumbPipeline thumbPipeline;
+    private final ImageSignatureHandler imageSignatureHandler;
+    private final BlobStore blobStore;
+    private final Tracing tracing;
+
+    public StorageServiceBase(FileConfig fileConfig, ThumbCache thumbCache, UserFileIndex userFileIndex, Scheduler storageScheduler,
+                              ThumbPipeline thumbPipeline, ImageSignatureHandler imageSignatureHandler, BlobStore blobStore, Tracing tracing) {
         this.fileConfig = fileConfig;
+        this.thumbCache = thumbCache;
+        this.userFileIndex = userFileIndex;
+        this.storageScheduler = storageScheduler;
+        this.thumbPipeline = thumbPipeline;
+        this.imageSignatureHandler = imageSignatureHandler;
+        this.blobStore = blobStore;
+        this.tracing = tracing;
     }
 
     /**
-     * Создание каталога
-     * @param dir String
+     * Выполнить блокирующую операцию с файловой системой в планировщике хранилища, а не в потоке обработки запросов.
+     * Операция записывается в трассу интервалом с заданным именем
+     * @param name String
+     * @param operation Callable<T>
+     * @return Mono<T>
      */
-    private void createWorkDir(String dir) {
+    protected <T> Mono<T> io(String name, Callable<T> operation) {
+        return this.tracing.trace(name, Mono.fromCallable(operation).subscribeOn(this.storageScheduler));
+    }
+
+    /**
+     * Подготовить рабочие директории для файлов
+     * @param fileConfig FileConfig
+     * @param userId String
+     */
+    private String initFilesDirectory(FileConfig fileConfig, String userId, boolean isThumb) {
+        Path userDir = fileConfig.getUserDir(userId);
+        Path thumbDir = userDir.resolve(fileConfig.getThumbDir());
+        //Для существующего каталога достаточно одной проверки, промежуточные каталоги создаются только при первом обращении
         try {
-            Files.createDirectory(Paths.get(dir));
+            Files.createDirectories(thumbDir);
         } catch (IOException e) {
             log.error(MessageConstants.errorPrefixMsg(e.getMessage()));
         }
+
+        return isThumb ? thumbDir.toString() : userDir.toString();
     }
 
     /**
-     * Проверка существования каталога
-     * @param dir String
-     * @return boolean
+     * Сохранить группу файлов в каталоге пользователя
+     * @param files Flux<FilePart>
+     * @param userId String
+     * @return Mono<Void>
      */
-    private boolean isDirExists(String dir) {
-        return Files.exists(Paths.get(dir));
+    protected Flux<FileStatus> saveAllFlux(Flux<FilePart> files, String userId) {
+        return files.flatMap(filePart -> this.saveFilePart(filePart, userId));
     }
 
     /**
-     * Подготовить рабочие директории для файлов
-     * @param fileConfig FileConfig
+     * Сохранить/изменить файл пользователя в каталоге
+     * @param file Mono<FilePart>
      * @param userId String
+     * @return Mono<Boolean>
      */
-    private String initFilesDirectory(FileConfig fileConfig, String userId, boolean isThumb) {
-        if (!this.isDirExists(fileConfig.getUploadsDir())) {
-            this.createWorkDir(fileConfig.getUploadsDir());
-        }
-
-        String userDirPath = String.format(CommonConstants.MULTIMEDIA_DEST_DIR, fileConfig.getUploadsDir(), userId);
-        if (!this.isDirExists(userDirPath)) {
-            this.createWorkDir(userDirPath);
-        }
-
-        String thumbDirPath = userDirPath+"/"+fileConfig.getThumbDir();
-        if (!this.isDirExists(thumbDirPath)) {
-            this.createWorkDir(thumbDirPath);
-        }
+    protected Mono<FileStatus> save(Mono<FilePart> file, String userId) {
+        return file.flatMap(filePart -> this.saveFilePart(filePart, userId)).onErrorResume(err -> {
+            log.info(MessageConstants.errorPrefixMsg(err.getMessage()));
+            return Mono.just(new FileStatus(false, "", err.getMessage()));
+        });
+    }
 
-        return isThumb ? thumbDirPath : userDirPath;
+    /**
+     * Поставить в очередь создание миниатюры изображения и передать Mono<FileStatus>, завершаемый после ее создания.
+     * Отмена подписки не отменяет создание миниатюры, onSaved будет вызван в любом случае
+     * @param userId String
+     * @param fileName String
+     * @param onSaved UnaryOperator<FileStatus>
+     * @return Mono<FileStatus>
+     */
+    protected Mono<FileStatus> saveFileThumb(String userId, String fileName, UnaryOperator<FileStatus> onSaved) {
+        return Mono.fromFuture(this.thumbPipeline.submit(userId, fileName, () -> this.createFileThumb(userId, fileName), onSaved).copy());
     }
 
     /**
-     * Получить число файлов в каталоге
+     * Сохранить изображение в уменьшенном виде.
      * @param userId String
-     * @return int
+     * @param fileName String
+     * @return FileStatus
      */
-    private boolean isFilesLimit(String userId, int maxFilesCount) {
-        try (Stream<Path> files = Files.list(Paths.get(String.format(CommonConstants.MULTIMEDIA_DEST_DIR, this.fileConfig.getUploadsDir(), userId)))) {
-            long filesCount = files.filter(f -> (f.toFile().isFile())).count();
-           // log.info(MessageConstants.prefixMsg(String.format(MessageConstants.MSG_FILES_COUNT, userId, filesCount)));
-            return filesCount > maxFilesCount-1;
-        } catch (IOException e) {
-            log.error(MessageConstants.errorPrefixMsg(e.getMessage()));
+    private FileStatus createFileThumb(String userId, String fileName) {
+        String thumbDir = this.initFilesDirectory(this.fileConfig, userId, true);
+        File file;
+        if (this.userFileIndex.contains(userId, fileName) && ((file = this.fileConfig.findFile(fileName, userId)) != null)) {
+            if (this.saveThumb(file, thumbDir, userId)) {
+                this.thumbCache.invalidate(userId);
+                log.info(MessageConstants.MSG_PREFIX+MessageConstants.MSG_THUMB_FILE_SAVED_SUCCESSFUL, fileName);
+                String version = ResourceCacheHandler.getVersion(this.fileConfig.getUserThumbFile(userId).toFile());
+                return new FileStatus(true, fileName, "", String.format(Api.API_RESOURCE_URI_THUMB, userId, version));
+            }
         }
-        return false;
+        return new FileStatus(false, fileName, String.format(MessageConstants.MSG_FILE_NOT_FOUND, fileName));
     }
 
     /**
-     * Сохранить группу файлов в каталоге пользователя
-     * @param files Flux<FilePart>
+     * Поставить в очередь создание уменьшенных копий изображения всех настроенных ширин и передать Mono<FileStatus>,
+     * завершаемый после их создания
      * @param userId String
-     * @return Mono<Void>
+     * @param fileName String
+     * @return Mono<FileStatus>
      */
-    protected Flux<FileStatus> saveAllFlux(Flux<FilePart> files, String userId) {
-        this.initFilesDirectory(this.fileConfig, userId, false);
-
-        return files.flatMap(filePart -> {
-            String fileName = String.format(CommonConstants.MULTIMEDIA_DEST_DIR, this.fileConfig.getUploadsDir(), userId)+"/"+filePart.filename();
-            return Mono.create(sink -> {
-                if (this.isFilesLimit(userId, this.fileConfig.getMaxCount())) {
-                    sink.success(new FileStatus(false, fileName, String.format(MessageConstants.MSG_MAX_FILES_COUNT, this.fileConfig.getMaxCount()), ""));
-                    return;
-                }
-
-                if (!this.fileConfig.isFileFormatConfirmed(sink, filePart)) {
-                    return;
-                }
-
-                this.saveFileItem(sink, filePart, fileName, userId);
-            });
-        });
+    protected Mono<FileStatus> saveFileVariants(String userId, String fileName) {
+        return Mono.fromFuture(this.thumbPipeline.submit(userId, VARIANTS_TASK_PREFIX+fileName, () -> this.createFileVariants(userId, fileName)).copy());
     }
 
     /**
-     * Сохранить/изменить файл пользователя в каталоге
-     * @param file Mono<FilePart>
+     * Создать уменьшенные копии изображения. Изображение декодируется один раз, копии не шире исходного файла не создаются.
+     * Копия записывается во временный файл и атомарно заменяет прежнюю, чтобы не отдать клиенту недописанный файл
      * @param userId String
-     * @return Mono<Boolean>
+     * @param fileName String
+     * @return FileStatus
      */
-    protected Mono<FileStatus> save(Mono<FilePart> file, String userId) {
-        this.initFilesDirectory(this.fileConfig, userId, false);
+    private FileStatus createFileVariants(String userId, String fileName) {
+        File file = this.fileConfig.findFile(fileName, userId);
+        if (file == null) {
+            return new FileStatus(false, fileName, String.format(MessageConstants.MSG_FILE_NOT_FOUND, fileName));
+        }
 
-        return Mono.create(sink -> {
-            file.doOnSuccess(filePart -> {
-                String fileName = String.format(CommonConstants.MULTIMEDIA_DEST_DIR, this.fileConfig.getUploadsDir(), userId)+"/"+filePart.filename();
+        try {
+            BufferedImage image = ImageIO.read(file);
+            if (image == null) {
+                return new FileStatus(false, fileName, String.format(MessageConstants.MSG_CANT_READ_IMAGE, fileName));
+            }
 
-                if (!this.fileConfig.isFileFormatConfirmed(sink, filePart)) {
-                    return;
+            String format = StringUtils.getFilenameExtension(file.getName());
+            for (int width : this.fileConfig.getVariantWidths()) {
+                Path variant = this.fileConfig.getUserVariantFile(userId, file.getName(), width);
+                if (width >= image.getWidth()) {
+                    Files.deleteIfExists(variant);
+                    continue;
                 }
 
-                if (this.isFilesLimit(userId, this.fileConfig.getMaxCount())) {
-                    sink.success(new FileStatus(false, fileName, String.format(MessageConstants.MSG_MAX_FILES_COUNT, this.fileConfig.getMaxCount())));
-                    return;
+                Files.createDirectories(variant.getParent());
+                Path tmp = variant.resolveSibling("."+variant.getFileName()+".tmp");
+                try (OutputStream out = Files.newOutputStream(tmp)) {
+                    Thumbnails.of(image).width(width).outputFormat(format).toOutputStream(out);
                 }
+                Files.move(tmp, variant, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            log.error(MessageConstants.errorPrefixMsg(e.getMessage()));
+            return new FileStatus(false, fileName, e.getMessage());
+        }
 
-                this.saveFileItem(sink, filePart, fileName, userId);
-
-            }).doOnError(err -> {
-                log.info(MessageConstants.errorPrefixMsg(err.getMessage()));
-                sink.success(new FileStatus(false, "", err.getMessage()));
-            }).subscribe();
-        });
+        log.info(MessageConstants.MSG_PREFIX+MessageConstants.MSG_VARIANTS_SAVED_SUCCESSFUL, fileName);
+        return new FileStatus(true, fileName, "");
     }
 
     /**
-     * Сохранить изображение в уменьшенном виде и передать Mono<FileStatus>.
-     * @param fileName String
+     * Удалить уменьшенные копии файла пользователя
      * @param userId String
-     * @return Mono<FileStatus>
+     * @param fileName String
      */
-    protected Mono<FileStatus> saveFileThumb(String userId, String fileName) {
-        String thumbDir = this.initFilesDirectory(this.fileConfig, userId, true);
-
-        return Mono.create(sink -> {
-            File file;
-            if ((file = this.fileConfig.findFile(fileName, userId)) != null) {
-                if (this.saveThumb(file, thumbDir, userId)) {
-                    String msg = String.format(MessageConstants.MSG_THUMB_FILE_SAVED_SUCCESSFUL, fileName);
-                    log.info(MessageConstants.prefixMsg(msg));
-                    sink.success(new FileStatus(true, fileName, "", String.format(Api.API_RESOURCE_URI_THUMB, userId)));
-                }
-            }
-            sink.success(new FileStatus(false, fileName, String.format(MessageConstants.MSG_FILE_NOT_FOUND, fileName)));
-        });
+    private void deleteFileVariants(String userId, String fileName) throws IOException {
+        for (int width : this.fileConfig.getVariantWidths()) {
+            Files.deleteIfExists(this.fileConfig.getUserVariantFile(userId, fileName, width));
+        }
     }
 
     /**
-     * Получить число сохраненных миниатюр для пользователя
+     * Получить сохраненные миниатюры пользователя без просмотра каталога миниатюр
      * @param userId String
-     * @return int
+     * @return List<File>
      */
-    private int getFilesThumbCount(String userId) {
-        return this.fileConfig.listFiles(userId+"/"+this.fileConfig.getThumbDir()).size();
+    protected List<File> getThumbFiles(String userId) {
+        File thumb = this.fileConfig.getUserThumbFile(userId).toFile();
+        return thumb.isFile() ? List.of(thumb) : List.of();
     }
 
     /**
@@ -191,7 +233,7 @@ public class StorageServiceBase {
                     .size(this.fileConfig.getThumbWidth(), this.fileConfig.getThumbWidth())
                     .toFile(thumbDir+"/"+this.fileConfig.getThumbFileName());
 
-            filesCount = this.getFilesThumbCount(userId);
+            filesCount = this.getThumbFiles(userId).size();
 
         } catch (IOException e) {
             log.info(MessageConstants.errorPrefixMsg(e.getMessage()));
@@ -203,16 +245,26 @@ public class StorageServiceBase {
     /**
      * Удалить миниатюру изображения
      * @param userId String
+     * @return Mono<Boolean>
+     */
+    protected Mono<Boolean> deleteThumb(String userId) {
+        return this.io("storage.deleteThumb", () -> this.deleteThumbFile(userId));
+    }
+
+    /**
+     * Удалить файл миниатюры изображения
+     * @param userId String
      * @return boolean
      */
-    protected boolean deleteThumb(String userId) {
-        List<File> files = this.fileConfig.listFiles(userId+"/"+this.fileConfig.getThumbDir());
+    private boolean deleteThumbFile(String userId) {
+        List<File> files = this.getThumbFiles(userId);
         if (files.size() > 0)  {
             boolean res =files.get(0).delete();
+            this.thumbCache.invalidate(userId);
             if (res) {
-                log.info(MessageConstants.prefixMsg(MessageConstants.MSG_DELETE_THUMB_SUCCESSFULLY));
+                log.info(MessageConstants.MSG_PREFIX+MessageConstants.MSG_DELETE_THUMB_SUCCESSFULLY);
             } else {
-                log.info(MessageConstants.prefixMsg(MessageConstants.MSG_DELETE_THUMB_FAILED));
+                log.info(MessageConstants.MSG_PREFIX+MessageConstants.MSG_DELETE_THUMB_FAILED);
             }
             return res;
         }
@@ -223,35 +275,57 @@ public class StorageServiceBase {
      * Удалить файл пользователя из каталога
      * @param fileName String
      * @param userId String
-     * @return boolean
+     * @return Mono<Boolean>
      */
-    protected boolean deleteUserFile(String fileName, String userId) {
-        try {
-           String file = String.format(CommonConstants.MULTIMEDIA_DEST_DIR, this.fileConfig.getUploadsDir(), userId)+"/"+fileName;
-           boolean res = Files.deleteIfExists(Paths.get(file));
+    protected Mono<Boolean> deleteUserFile(String fileName, String userId) {
+        return this.io("storage.deleteUserFile", () -> {
+           Path file = this.fileConfig.resolveUserFile(userId, fileName);
+           if (file == null) {
+               log.info(MessageConstants.MSG_PREFIX+MessageConstants.MSG_CANT_DELETE_FILE, fileName);
+               return false;
+           }
+           boolean res = Files.deleteIfExists(file);
            if (res) {
-               log.info(MessageConstants.prefixMsg(String.format(MessageConstants.MSG_DELETED_FILE_SUCCESSFUL, file)));
+               this.userFileIndex.remove(userId, fileName);
+               if (this.blobStore.isEnabled()) {
+                   this.blobStore.unreference(userId, file.getFileName().toString());
+               }
+               this.deleteFileVariants(userId, file.getFileName().toString());
+               log.info(MessageConstants.MSG_PREFIX+MessageConstants.MSG_DELETED_FILE_SUCCESSFUL, file);
            } else {
-               log.info(MessageConstants.prefixMsg(String.format(MessageConstants.MSG_CANT_DELETE_FILE, file)));
+               log.info(MessageConstants.MSG_PREFIX+MessageConstants.MSG_CANT_DELETE_FILE, file);
            }
            return res;
-        } catch (IOException e) {
+        }).onErrorResume(IOException.class, e -> {
             log.error(MessageConstants.errorPrefixMsg(e.getMessage()));
-        }
-        return false;
+            return Mono.just(false);
+        });
     }
 
     /**
      * Удалить все файлы из каталога пользователя
      * @param userId String
+     * @return Mono<Boolean>
+     */
+    protected Mono<Boolean> deleteAll(String userId) {
+        return this.io("storage.deleteAll", () -> this.deleteUserDir(userId));
+    }
+
+    /**
+     * Удалить каталог пользователя со всеми файлами
+     * @param userId String
      * @return boolean
      */
-    protected boolean deleteAll(String userId) {
-        boolean res = FileSystemUtils.deleteRecursively(Paths.get(String.format(CommonConstants.MULTIMEDIA_DEST_DIR, this.fileConfig.getUploadsDir(), userId)).toFile());
+    private boolean deleteUserDir(String userId) {
+        //Удаляется и каталог в плоской раскладке, если он еще не перенесен
+        boolean res = FileSystemUtils.deleteRecursively(this.fileConfig.getShardedUserDir(userId).toFile());
+        res = FileSystemUtils.deleteRecursively(this.fileConfig.getLegacyUserDir(userId).toFile()) || res;
+        this.thumbCache.invalidate(userId);
+        this.userFileIndex.invalidate(userId);
         if (res) {
-            log.info(MessageConstants.prefixMsg(String.format(MessageConstants.MSG_DELETED_FILES_SUCCESSFUL, userId)));
+            log.info(MessageConstants.MSG_PREFIX+MessageConstants.MSG_DELETED_FILES_SUCCESSFUL, userId);
         } else {
-            log.info(MessageConstants.prefixMsg(String.format(MessageConstants.MSG_CANT_DELETE_FILES, userId)));
+            log.info(MessageConstants.MSG_PREFIX+MessageConstants.MSG_CANT_DELETE_FILES, userId);
         }
         return res;
     }
@@ -259,22 +333,85 @@ public class StorageServiceBase {
 
 
     /**
-     * Асинхронное сохранение файла с передачей синхронизатора
-     * @param sink MonoSink<FileStatus>
+     * Проверить имя файла и зарезервировать место в каталоге пользователя, затем сохранить файл.
+     * Резервирование атомарно, поэтому параллельные загрузки не превысят допустимое число файлов
      * @param filePart FilePart
-     * @param fileName String
+     * @param userId String
+     * @return Mono<FileStatus>
      */
-    private void saveFileItem(MonoSink<FileStatus> sink, FilePart filePart, String fileName, String userId) {
-        String resourceUri = String.format(Api.API_RESOURCE_URI_TEMP, userId, filePart.filename() );
-
-        filePart.transferTo(Paths.get(fileName).toFile()).doOnSuccess(t -> {
-            String msg = String.format(MessageConstants.MSG_FILE_SAVED_SUCCESSFUL, filePart.filename());
-            log.info(MessageConstants.prefixMsg(msg));
-            sink.success(new FileStatus(true, fileName, "", resourceUri));
-        }).doOnError(err -> {
-            String msg = String.format(MessageConstants.MSG_ERR_FILE_SAVING, filePart.filename(), err.getMessage());
-            log.info(MessageConstants.prefixMsg(msg));
-            sink.success(new FileStatus(false, fileName, msg));
-        }).subscribe();
+    private Mono<FileStatus> saveFilePart(FilePart filePart, String userId) {
+        FileStatus formatStatus = this.fileConfig.isPermittedFileType(filePart.filename());
+        if (!formatStatus.isSaved()) {
+            return Mono.just(formatStatus);
+        }
+
+        //Путь к каталогу пользователя зависит от раскладки на диске, поэтому здесь проверяется только имя
+        String fileName = this.fileConfig.getUserFileName(userId, filePart.filename());
+        if (fileName == null) {
+            return Mono.just(new FileStatus(false, filePart.filename(), String.format(MessageConstants.MSG_FILE_NAME_INVALID, filePart.filename())));
+        }
+
+        //Каталог создается после резервирования: пока есть резерв, UserDirMigrator не переносит каталог пользователя
+        return this.io("storage.reserve", () -> {
+            boolean isReserved = this.userFileIndex.reserve(userId, fileName, this.fileConfig.getMaxCount());
+            if (isReserved) {
+                this.initFilesDirectory(this.fileConfig, userId, false);
+            }
+            return isReserved;
+        }).flatMap(isReserved -> {
+            Path file = this.fileConfig.resolveUserFile(userId, fileName);
+            if (!isReserved) {
+                return Mono.just(new FileStatus(false, file.toString(), String.format(MessageConstants.MSG_MAX_FILES_COUNT, this.fileConfig.getMaxCount())));
+            }
+            return this.saveFileItem(filePart, file, userId);
+        });
+    }
+
+    /**
+     * Асинхронное сохранение файла потоком с проверкой содержимого по мере записи.
+     * Файл пишется во временный файл и заменяет прежний только после успешной проверки, при ошибке временный файл удаляется
+     * @param filePart FilePart
+     * @param file Path
+     * @param userId String
+     * @return Mono<FileStatus>
+     */
+    private Mono<FileStatus> saveFileItem(FilePart filePart, Path file, String userId) {
+        String fileName = file.getFileName().toString();
+        Path uploadFile = file.resolveSibling("."+fileName+UPLOAD_FILE_SUFFIX);
+        UploadGuard uploadGuard = new UploadGuard(this.fileConfig, this.userFileIndex, this.imageSignatureHandler, userId, fileName, this.blobStore.isEnabled());
+        Callable<Boolean> cleanUp = () -> {
+            this.userFileIndex.cancel(userId, fileName);
+            return Files.deleteIfExists(uploadFile);
+        };
+
+        return this.tracing.trace("storage.writeUpload", DataBufferUtils.write(filePart.content().map(uploadGuard::check), uploadFile)
+                        .subscribeOn(this.storageScheduler))
+                .then(this.io("storage.commitUpload", () -> {
+                    long size = uploadGuard.complete();
+                    //Копии прежней версии файла удаляются до замены, иначе они отдавались бы с версией нового файла
+                    this.deleteFileVariants(userId, fileName);
+                    if (this.blobStore.isEnabled()) {
+                        this.blobStore.store(uploadFile, uploadGuard.getHash(), userId, file);
+                    } else {
+                        Files.move(uploadFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    }
+                    this.userFileIndex.commit(userId, fileName, size);
+                    return ResourceCacheHandler.getVersion(file.toFile());
+                }))
+                .map(version -> {
+                    log.info(MessageConstants.MSG_PREFIX+MessageConstants.MSG_FILE_SAVED_SUCCESSFUL, fileName);
+
+                    this.saveFileVariants(userId, fileName).subscribe(null, err -> {
+                        log.error(MessageConstants.errorPrefixMsg(err.getMessage()));
+                    });
+                    return new FileStatus(true, file.toString(), "", String.format(Api.API_RESOURCE_URI_TEMP, userId, fileName, version));
+                })
+                .onErrorResume(err -> {
+                    String msg = (err instanceof UploadGuard.UploadRejectedException) ? err.getMessage() :
+                            String.format(MessageConstants.MSG_ERR_FILE_SAVING, fileName, err.getMessage());
+                    log.info(MessageConstants.prefixMsg(msg));
+                    return this.io("storage.cleanUpload", cleanUp).thenReturn(new FileStatus(false, file.toString(), msg));
+                })
+                .doOnCancel(() -> this.io("storage.cleanUpload", cleanUp).subscribe());
     }
 }
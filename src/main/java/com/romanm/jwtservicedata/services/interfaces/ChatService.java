@@ -1,7 +1,10 @@
 package com.romanm.jwtservicedata.services.interfaces;
 
 import com.romanm.jwtservicedata.models.ChatItem;
+import com.romanm.jwtservicedata.models.requests.ChatCursor;
+import com.romanm.jwtservicedata.models.requests.ConversationRead;
 import com.romanm.jwtservicedata.models.requests.MessageApplier;
+import com.romanm.jwtservicedata.models.responses.ConversationReadResponse;
 import com.romanm.jwtservicedata.models.responses.MessageApplierResponse;
 import org.springframework.data.domain.Sort;
 import reactor.core.publisher.Flux;
@@ -14,9 +17,11 @@ public interface ChatService {
     Mono<ChatItem> saveMessage(ChatItem chatMessage);
     Flux<ChatItem> findMessages(String userId, String fromUserId, int page, int size, Sort.Direction direction);
     Flux<ChatItem> findUsersMessages(String userId1, String userId2, int page, int size, Sort.Direction direction);
+    Flux<ChatItem> findUsersMessages(String userId1, String userId2, ChatCursor cursor, int size);
     Flux<ChatItem> findUsersMessagesMerged(String userId1, String userId2, int page, int size, Sort.Direction direction);
     Mono<ChatItem> addMessage(String toUserId, String fromUserId, String message);
     Flux<ChatItem> saveMessages(List<ChatItem> chatMessages);
     Flux<ChatItem> findMessagesByIds(List<String> messageIds);
     Mono<MessageApplierResponse> appliedMessages(MessageApplier messageApplier);
+    Mono<ConversationReadResponse> readConversation(ConversationRead conversationRead);
 }
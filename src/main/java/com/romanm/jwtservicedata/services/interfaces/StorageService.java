@@ -1,6 +1,7 @@
 package com.romanm.jwtservicedata.services.interfaces;
 
 import com.romanm.jwtservicedata.models.responses.files.FileStatus;
+import org.springframework.core.io.Resource;
 import org.springframework.http.codec.multipart.FilePart;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -8,8 +9,8 @@ import reactor.core.publisher.Mono;
 
 public interface StorageService {
     Flux<String> getFiles(String userId);
-    byte[] getFile(String userId, String fileName);
-    byte[] getFileThumb(String userId);
+    Mono<Resource> getFileResource(String userId, String fileName, int size);
+    Mono<Resource> getFileThumbResource(String userId);
     Mono<FileStatus> save(String userId, Mono<FilePart> filePartMono);
     Mono<FileStatus> saveThumb(String userId, String fileName);
     Flux<FileStatus> saveAll(String userId, Flux<FilePart> files);
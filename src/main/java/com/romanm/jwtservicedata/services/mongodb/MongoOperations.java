@@ -1,27 +1,40 @@
 package com.romanm.jwtservicedata.services.mongodb;
 
+import com.romanm.jwtservicedata.components.tracing.Tracing;
+import com.romanm.jwtservicedata.constants.CommonConstants;
 import com.romanm.jwtservicedata.models.ChatItem;
+import com.romanm.jwtservicedata.models.Conversation;
 import com.romanm.jwtservicedata.models.UserProfile;
 import com.romanm.jwtservicedata.models.Visitor;
+import com.romanm.jwtservicedata.models.images.ImageRef;
+import com.romanm.jwtservicedata.models.requests.ChatCursor;
 import com.romanm.jwtservicedata.models.requests.SearchBody;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
-import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.util.Optional;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class MongoOperations {
+    private static final String METRIC_NAME = "mongo.operations";
+    private static final String METRIC_TAG_METHOD = "method";
+    private static final String SPAN_PREFIX = "mongo.";
+
     @Autowired
     private ReactiveMongoTemplate reactiveMongoTemplate;
+    @Autowired
+    private Tracing tracing;
 
     /**
      * Постраничный запрос уникальных посетителей, отсортированный по последней дате посещения
@@ -31,11 +44,8 @@ public class MongoOperations {
      * @return Flux<Visitor>
      */
     public Flux<Visitor> findVisitorByUserIdDistinctVisitorUserIdOrderByTimestampDesc(String userId, int page, int pageSize) {
-        Query query = new Query();
-        query.addCriteria(Criteria.where(Visitor.getVisitorUserIdFieldName()).is(userId));
-        query.with(Sort.by(Visitor.getVisitorTimestampFieldName()).descending());
-        query.with(PageRequest.of(page, pageSize));
-        return reactiveMongoTemplate.find(query, Visitor.class).distinct(Visitor::getVisitorUserId);//.limitRate(pageSize);
+        Query query = MongoQueries.visitorsOfUser(userId, page, pageSize);
+        return this.observed(reactiveMongoTemplate.find(query, Visitor.class).distinct(Visitor::getVisitorUserId), "findVisitorByUserIdDistinctVisitorUserIdOrderByTimestampDesc");//.limitRate(pageSize);
     }
 
     /**
@@ -45,10 +55,8 @@ public class MongoOperations {
      * @return Flux<UserProfile>
      */
     public Flux<UserProfile> findAllUserProfilesByPage(int page, int pageSize, String notUserId) {
-        Query query = new Query();
-        query.addCriteria(Criteria.where("id").ne(notUserId));
-        query.with(PageRequest.of(page, pageSize));
-        return reactiveMongoTemplate.find(query, UserProfile.class);
+        Query query = MongoQueries.profilesPage(page, pageSize, notUserId);
+        return this.observed(reactiveMongoTemplate.find(query, UserProfile.class), "findAllUserProfilesByPage");
     }
 
     /**
@@ -57,9 +65,8 @@ public class MongoOperations {
      * @return Mono<UserProfile>
      */
     public Mono<UserProfile> findUserProfile(String userId) {
-        Query query = new Query();
-        query.addCriteria(Criteria.where("id").is(userId));
-        return reactiveMongoTemplate.findOne(query, UserProfile.class);
+        Query query = MongoQueries.profileById(userId);
+        return this.observed(reactiveMongoTemplate.findOne(query, UserProfile.class), "findUserProfile");
     }
 
     /**
@@ -69,87 +76,156 @@ public class MongoOperations {
      * @return Flux<UserProfile>
      */
     public Flux<UserProfile> findAllUserProfilesByPage(int page, int pageSize, String notUserId, SearchBody searchBody) {
-        Query query = new Query();
-        query.addCriteria(Criteria.where("id").ne(notUserId));
+        Query query = MongoQueries.profilesSearchPage(page, pageSize, notUserId, searchBody);
+        return this.observed(reactiveMongoTemplate.find(query, UserProfile.class), "findAllUserProfilesByPageAndSearch");
+    }
+
+    /**
+     * Постраничный список сводок переписки пользователя от последних к старым
+     * @param ownerId String
+     * @param page int
+     * @param pageSize int
+     * @return Flux<Conversation>
+     */
+    public Flux<Conversation> findConversations(String ownerId, int page, int pageSize) {
+        Query query = MongoQueries.conversationsOfUser(ownerId, page, pageSize);
+        return this.observed(reactiveMongoTemplate.find(query, Conversation.class), "findConversations");
+    }
 
-        if (searchBody.getKids() >= 0) {
-            query.addCriteria(Criteria.where("kids").is(searchBody.getKids()));
+    /**
+     * Обновить сводки переписки отправителя и получателя сообщением chatItem, создав их при первом сообщении
+     * @param chatItem ChatItem
+     * @return Mono<Void>
+     */
+    public Mono<Void> updateConversations(ChatItem chatItem) {
+        Mono<?> outgoing = reactiveMongoTemplate.upsert(
+                MongoQueries.conversationById(chatItem.getFromUserId(), chatItem.getUserId()),
+                MongoQueries.conversationUpdate(chatItem.getFromUserId(), chatItem), Conversation.class);
+        if (chatItem.getFromUserId().equals(chatItem.getUserId())) {
+            return this.observed(outgoing.then(), "updateConversations");
         }
-        if (searchBody.getAgeFrom() < searchBody.getAgeTo()) {
-            query.addCriteria(Criteria.where("age").gte(searchBody.getAgeFrom()).lte(searchBody.getAgeTo()));
+
+        Mono<?> incoming = reactiveMongoTemplate.upsert(
+                MongoQueries.conversationById(chatItem.getUserId(), chatItem.getFromUserId()),
+                MongoQueries.conversationUpdate(chatItem.getUserId(), chatItem), Conversation.class);
+        return this.observed(Mono.when(outgoing, incoming), "updateConversations");
+    }
+
+    /**
+     * Собрать сводки переписки из сообщений чата, если коллекция сводок пуста
+     * @return Mono<Boolean> true, если сводки были собраны
+     */
+    public Mono<Boolean> rebuildConversationsIfEmpty() {
+        return this.observed(reactiveMongoTemplate.count(new Query(), Conversation.class)
+                .filter(count -> count == 0)
+                .flatMap(count -> reactiveMongoTemplate.aggregate(MongoQueries.conversationSummaries(), CommonConstants.CHAT_MESSAGE_COLLECTION, Document.class)
+                        .then(Mono.just(true)))
+                .defaultIfEmpty(false), "rebuildConversations");
+    }
+
+    /**
+     * Отметить прочитанными сообщения из списка messageIds, не читая сами сообщения: по одному обновлению на переписку.
+     * Число непрочитанных в сводке переписки уменьшается на кол-во сообщений, отмеченных именно этим обновлением,
+     * поэтому одновременные отметки одних и тех же сообщений не уменьшают его дважды
+     * @param messageIds List<String>
+     * @return Mono<Long> кол-во сообщений, отмеченных прочитанными
+     */
+    public Mono<Long> markMessagesRead(List<String> messageIds) {
+        if (messageIds.isEmpty()) {
+            return Mono.just(0L);
         }
 
-        Optional.ofNullable(searchBody.getFamilyStatus()).ifPresent(familyStatus -> {
-            query.addCriteria(Criteria.where("familyStatus").is(familyStatus));
-        });
-        Optional.ofNullable(searchBody.getMeetPreferences()).ifPresent(meetPreferences -> {
-            query.addCriteria(Criteria.where("meetPreferences").is(meetPreferences));
-        });
-        Optional.ofNullable(searchBody.getSexOrientation()).ifPresent(sexOrientation -> {
-            query.addCriteria(Criteria.where("sexOrientation").is(sexOrientation));
-        });
-        Optional.ofNullable(searchBody.getSex()).ifPresent(sex -> {
-            query.addCriteria(Criteria.where("sex").is(sex));
-        });
-        Optional.ofNullable(searchBody.getCountry()).ifPresent(country -> {
-            query.addCriteria(Criteria.where("country").is(country));
-        });
-        Optional.ofNullable(searchBody.getRegion()).ifPresent(region -> {
-            query.addCriteria(Criteria.where("region").is(region));
-        });
-        Optional.ofNullable(searchBody.getLocality()).ifPresent(locality -> {
-            query.addCriteria(Criteria.where("locality").is(locality));
-        });
-
-        query.with(PageRequest.of(page, pageSize));
-        return reactiveMongoTemplate.find(query, UserProfile.class);
+        return this.observed(reactiveMongoTemplate.aggregate(MongoQueries.unreadByConversation(messageIds), Document.class)
+                .concatMap(conversation -> {
+                    Document pair = conversation.get("_id", Document.class);
+                    List<String> ids = conversation.getList("ids", Object.class).stream().map(String::valueOf).collect(Collectors.toList());
+                    return reactiveMongoTemplate.updateMulti(MongoQueries.unreadMessagesByIds(ids), MongoQueries.markRead(), ChatItem.class)
+                            .flatMap(result -> this.decrementUnread(pair.getString("userId"), pair.getString("fromUserId"), result.getModifiedCount())
+                                    .then(Mono.just(result.getModifiedCount())));
+                })
+                .reduce(0L, Long::sum), "markMessagesRead");
     }
 
     /**
-     * Получить уникальные чаты по полю fromUserId. Вернет [201,202,203]
+     * Отметить прочитанными все сообщения пользователю userId от fromUserId, отправленные не позже upTo,
+     * одним обновлением по индексу переписки
      * @param userId String
-     * @param page int
-     * @param pageSize int
-     * @return Flux<ChatItem>
+     * @param fromUserId String
+     * @param upTo Date
+     * @return Mono<Long> кол-во сообщений, отмеченных прочитанными
      */
-    public Flux<String> findDistinctProfileIdOfChat(String userId, long page, long pageSize) {
-        Query query = new Query();
-        //log.info("findDistinctProfileIdOfChat userId: "+userId);
-        query.addCriteria(Criteria.where("fromUserId").is(userId));
-        query.with(Sort.by("timestamp").descending());
-        return reactiveMongoTemplate.findDistinct(query, "userId", ChatItem.class, String.class).skip(page*pageSize).take(pageSize);
+    public Mono<Long> markConversationRead(String userId, String fromUserId, Date upTo) {
+        return this.observed(reactiveMongoTemplate.updateMulti(MongoQueries.unreadMessagesUpTo(userId, fromUserId, upTo), MongoQueries.markRead(), ChatItem.class)
+                .flatMap(result -> this.decrementUnread(userId, fromUserId, result.getModifiedCount())
+                        .then(Mono.just(result.getModifiedCount()))), "markConversationRead");
     }
 
     /**
-     * Получить уникальные чаты по полю fromUserId. Вернет [201,202,203]
-     * @param userId String
-     * @param page int
-     * @param pageSize int
+     * Уменьшить число непрочитанных в сводке переписки владельца ownerId с peerId
+     * @param ownerId String
+     * @param peerId String
+     * @param count long
+     * @return Mono<Void>
+     */
+    private Mono<Void> decrementUnread(String ownerId, String peerId, long count) {
+        if (count == 0) {
+            return Mono.empty();
+        }
+        return reactiveMongoTemplate.updateFirst(MongoQueries.conversationById(ownerId, peerId), MongoQueries.unreadDecrement(count), Conversation.class).then();
+    }
+
+    /**
+     * Страница переписки двух пользователей в обоих направлениях от старых к новым. Страница выбирается
+     * после позиции cursor, а если она не задана - с пропуском skip самых новых сообщений
+     * @param userId1 String
+     * @param userId2 String
+     * @param cursor ChatCursor позиция самого старого сообщения предыдущей страницы или null
+     * @param skip long
+     * @param size int
      * @return Flux<ChatItem>
      */
-    public Flux<ChatItem> findDistinctProfileIdOfChats(String userId, long page, long pageSize) {
-        Query query = new Query();
-        query.addCriteria(Criteria.where("fromUserId").is(userId));
-        query.with(Sort.by("timestamp").descending());
-        return reactiveMongoTemplate.find(query, ChatItem.class).distinct(ChatItem::getUserId).skip(page*pageSize).take(pageSize);
+    public Flux<ChatItem> getConversation(String userId1, String userId2, ChatCursor cursor, long skip, int size) {
+        return this.observed(reactiveMongoTemplate.aggregate(MongoQueries.conversationPage(userId1, userId2, cursor, skip, size), ChatItem.class), "getConversation");
     }
 
     /**
-     *
+     * Записать в профиль пользователя ссылки на изображения одним обновлением полей imgUrls и thumbUrl, не читая профиль.
+     * Если ссылка на миниатюру не задана, она очищается только когда ее файла больше нет среди изображений
      * @param userId String
-     * @param fromUserId String
-     * @param page long
-     * @param size long
-     * @param direction int
-     * @return Flux<ChatItem>
+     * @param imgUrls List<ImageRef>
+     * @param thumbUrl ImageRef
+     * @return Mono<Void>
+     */
+    public Mono<Void> updateUserProfileImages(String userId, List<ImageRef> imgUrls, ImageRef thumbUrl) {
+        Query query = MongoQueries.profileById(userId);
+        Update update = new Update().set("imgUrls", imgUrls);
+        if (thumbUrl != null) {
+            return this.observed(reactiveMongoTemplate.updateFirst(query, update.set("thumbUrl", thumbUrl), UserProfile.class).then(), "updateUserProfileImages");
+        }
+
+        Query staleThumbQuery = MongoQueries.staleThumb(userId, imgUrls);
+        return this.observed(reactiveMongoTemplate.updateFirst(query, update, UserProfile.class)
+                .then(reactiveMongoTemplate.updateFirst(staleThumbQuery, new Update().set("thumbUrl", new ImageRef()), UserProfile.class))
+                .then(), "updateUserProfileImages");
+    }
+
+    /**
+     * Учитывать время выполнения операции в метрике mongo.operations с тегом имени метода и записать ее в трассу
+     * @param flux Flux<T>
+     * @param method String
+     * @return Flux<T>
+     */
+    private <T> Flux<T> observed(Flux<T> flux, String method) {
+        return this.tracing.trace(SPAN_PREFIX+method, flux.name(METRIC_NAME).tag(METRIC_TAG_METHOD, method).metrics());
+    }
+
+    /**
+     * Учитывать время выполнения операции в метрике mongo.operations с тегом имени метода и записать ее в трассу
+     * @param mono Mono<T>
+     * @param method String
+     * @return Mono<T>
      */
-    public Flux<ChatItem> getCurrentProfileChatCorrespondence(String userId, String fromUserId, long page, long size, Sort.Direction direction) {
-        Query query = new Query();
-        query.addCriteria(Criteria.where("userId").is(userId));
-        query.addCriteria(Criteria.where("fromUserId").is(fromUserId));
-        query.addCriteria(Criteria.where("message").ne(""));
-        query.with(Sort.by("timestamp").descending());
-        //query.with(PageRequest.of(page, size));
-        return reactiveMongoTemplate.find(query, ChatItem.class).skip(page*size).take(size);
+    private <T> Mono<T> observed(Mono<T> mono, String method) {
+        return this.tracing.trace(SPAN_PREFIX+method, mono.name(METRIC_NAME).tag(METRIC_TAG_METHOD, method).metrics());
     }
 }
@@ -0,0 +1,334 @@
+package com.romanm.jwtservicedata.services.mongodb;
+
+import com.romanm.jwtservicedata.constants.CommonConstants;
+import com.romanm.jwtservicedata.models.ChatItem;
+import com.romanm.jwtservicedata.models.Conversation;
+import com.romanm.jwtservicedata.models.Visitor;
+import com.romanm.jwtservicedata.models.images.ImageRef;
+import com.romanm.jwtservicedata.models.requests.ChatCursor;
+import com.romanm.jwtservicedata.models.requests.SearchBody;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.MergeOperation;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Построение запросов MongoOperations. Запросы строятся без обращения к базе, поэтому их можно проверять
+ * и измерять отдельно от ReactiveMongoTemplate
+ */
+public final class MongoQueries {
+
+    private MongoQueries() {
+    }
+
+    /**
+     * Запрос посетителей пользователя, отсортированных по дате посещения
+     * @param userId String
+     * @param page int
+     * @param pageSize int
+     * @return Query
+     */
+    public static Query visitorsOfUser(String userId, int page, int pageSize) {
+        Query query = new Query();
+        query.addCriteria(Criteria.where(Visitor.getVisitorUserIdFieldName()).is(userId));
+        query.with(Sort.by(Visitor.getVisitorTimestampFieldName()).descending());
+        query.with(PageRequest.of(page, pageSize));
+        return query;
+    }
+
+    /**
+     * Запрос профиля по коду пользователя
+     * @param userId String
+     * @return Query
+     */
+    public static Query profileById(String userId) {
+        Query query = new Query();
+        query.addCriteria(Criteria.where("id").is(userId));
+        return query;
+    }
+
+    /**
+     * Постраничный запрос профилей, кроме профиля с notUserId
+     * @param page int
+     * @param pageSize int
+     * @param notUserId String
+     * @return Query
+     */
+    public static Query profilesPage(int page, int pageSize, String notUserId) {
+        Query query = new Query();
+        query.addCriteria(Criteria.where("id").ne(notUserId));
+        query.with(PageRequest.of(page, pageSize));
+        return query;
+    }
+
+    /**
+     * Постраничный запрос профилей c учетом параметров SearchBody, кроме профиля с notUserId
+     * @param page int
+     * @param pageSize int
+     * @param notUserId String
+     * @param searchBody SearchBody
+     * @return Query
+     */
+    public static Query profilesSearchPage(int page, int pageSize, String notUserId, SearchBody searchBody) {
+        Query query = new Query();
+        query.addCriteria(Criteria.where("id").ne(notUserId));
+
+        if (searchBody.getKids() >= 0) {
+            query.addCriteria(Criteria.where("kids").is(searchBody.getKids()));
+        }
+        if (searchBody.getAgeFrom() < searchBody.getAgeTo()) {
+            query.addCriteria(Criteria.where("age").gte(searchBody.getAgeFrom()).lte(searchBody.getAgeTo()));
+        }
+
+        Optional.ofNullable(searchBody.getFamilyStatus()).ifPresent(familyStatus -> {
+            query.addCriteria(Criteria.where("familyStatus").is(familyStatus));
+        });
+        Optional.ofNullable(searchBody.getMeetPreferences()).ifPresent(meetPreferences -> {
+            query.addCriteria(Criteria.where("meetPreferences").is(meetPreferences));
+        });
+        Optional.ofNullable(searchBody.getSexOrientation()).ifPresent(sexOrientation -> {
+            query.addCriteria(Criteria.where("sexOrientation").is(sexOrientation));
+        });
+        Optional.ofNullable(searchBody.getSex()).ifPresent(sex -> {
+            query.addCriteria(Criteria.where("sex").is(sex));
+        });
+        Optional.ofNullable(searchBody.getCountry()).ifPresent(country -> {
+            query.addCriteria(Criteria.where("country").is(country));
+        });
+        Optional.ofNullable(searchBody.getRegion()).ifPresent(region -> {
+            query.addCriteria(Criteria.where("region").is(region));
+        });
+        Optional.ofNullable(searchBody.getLocality()).ifPresent(locality -> {
+            query.addCriteria(Criteria.where("locality").is(locality));
+        });
+
+        query.with(PageRequest.of(page, pageSize));
+        return query;
+    }
+
+    /**
+     * Запрос сводок переписки пользователя ownerId от последних к старым. Читается по индексу ownerId_lastTimestamp
+     * @param ownerId String
+     * @param page int
+     * @param pageSize int
+     * @return Query
+     */
+    public static Query conversationsOfUser(String ownerId, int page, int pageSize) {
+        Query query = new Query();
+        query.addCriteria(Criteria.where("ownerId").is(ownerId));
+        query.with(Sort.by("lastTimestamp").descending());
+        query.with(PageRequest.of(page, pageSize));
+        return query;
+    }
+
+    /**
+     * Запрос сводки переписки владельца ownerId с пользователем peerId
+     * @param ownerId String
+     * @param peerId String
+     * @return Query
+     */
+    public static Query conversationById(String ownerId, String peerId) {
+        Query query = new Query();
+        query.addCriteria(Criteria.where("id").is(Conversation.idOf(ownerId, peerId)));
+        return query;
+    }
+
+    /**
+     * Обновление сводки переписки владельца ownerId сообщением chatItem одним конвейером. Последнее сообщение
+     * заменяется, только если chatItem не старше него: сообщения могут сохраняться не по порядку.
+     * Непрочитанное входящее сообщение увеличивает число непрочитанных, исходящее и сообщение самому себе его не меняют
+     * @param ownerId String
+     * @param chatItem ChatItem
+     * @return AggregationUpdate
+     */
+    public static AggregationUpdate conversationUpdate(String ownerId, ChatItem chatItem) {
+        boolean incoming = ownerId.equals(chatItem.getUserId());
+        boolean unread = incoming && !ownerId.equals(chatItem.getFromUserId()) && !chatItem.isRead();
+        Document isLatest = new Document("$gte", List.of(literal(chatItem.getTimestamp()),
+                new Document("$ifNull", List.of("$lastTimestamp", new Date(0)))));
+
+        return AggregationUpdate.from(List.of(stage("$set", new Document("ownerId", literal(ownerId))
+                .append("peerId", literal(incoming ? chatItem.getFromUserId() : chatItem.getUserId()))
+                .append("lastFromUserId", new Document("$cond", List.of(isLatest, literal(chatItem.getFromUserId()), "$lastFromUserId")))
+                .append("lastMessage", new Document("$cond", List.of(isLatest, literal(chatItem.getMessage()), "$lastMessage")))
+                .append("lastTimestamp", new Document("$cond", List.of(isLatest, literal(chatItem.getTimestamp()), "$lastTimestamp")))
+                .append("unreadCount", new Document("$add", List.of(new Document("$ifNull", List.of("$unreadCount", 0L)), unread ? 1L : 0L))))));
+    }
+
+    /**
+     * Сборка сводок переписки из всех сообщений чата. Каждое сообщение раскладывается на сводки отправителя
+     * и получателя, сводки пары берут последнее сообщение и сумму непрочитанных входящих (сообщения самому себе
+     * не считаются непрочитанными). Результат дописывается в коллекцию conversations без замены уже существующих сводок
+     * @return Aggregation
+     */
+    public static Aggregation conversationSummaries() {
+        List<AggregationOperation> operations = new ArrayList<>();
+        operations.add(Aggregation.sort(Sort.by("timestamp").descending()));
+        operations.add(stage("$project", new Document("timestamp", 1).append("message", 1).append("fromUserId", 1)
+                .append("sides", List.of(
+                        new Document("ownerId", "$userId").append("peerId", "$fromUserId")
+                                .append("unread", new Document("$cond", List.of(new Document("$or", List.of("$isRead", new Document("$eq", List.of("$userId", "$fromUserId")))), 0, 1))),
+                        new Document("ownerId", "$fromUserId").append("peerId", "$userId").append("unread", 0)))));
+        operations.add(stage("$unwind", "$sides"));
+        operations.add(stage("$group", new Document("_id", new Document("ownerId", "$sides.ownerId").append("peerId", "$sides.peerId"))
+                .append("lastFromUserId", new Document("$first", "$fromUserId"))
+                .append("lastMessage", new Document("$first", "$message"))
+                .append("lastTimestamp", new Document("$first", "$timestamp"))
+                .append("unreadCount", new Document("$sum", "$sides.unread"))));
+        operations.add(stage("$project", new Document("_id", new Document("$concat", List.of("$_id.ownerId", Conversation.ID_SEPARATOR, "$_id.peerId")))
+                .append("ownerId", "$_id.ownerId").append("peerId", "$_id.peerId")
+                .append("lastFromUserId", 1).append("lastMessage", 1).append("lastTimestamp", 1).append("unreadCount", 1)));
+        operations.add(Aggregation.merge().intoCollection(CommonConstants.CONVERSATION_COLLECTION)
+                .whenDocumentsMatch(MergeOperation.WhenDocumentsMatch.keepExistingDocument())
+                .whenDocumentsDontMatch(MergeOperation.WhenDocumentsDontMatch.insertNewDocument())
+                .build());
+        return Aggregation.newAggregation(operations).withOptions(Aggregation.newAggregationOptions().allowDiskUse(true).build());
+    }
+
+    /**
+     * Запрос непрочитанных сообщений из списка messageIds
+     * @param messageIds List<String>
+     * @return Query
+     */
+    public static Query unreadMessagesByIds(List<String> messageIds) {
+        Query query = new Query();
+        query.addCriteria(Criteria.where("id").in(messageIds).and("isRead").is(false));
+        return query;
+    }
+
+    /**
+     * Запрос непрочитанных сообщений пользователю userId от fromUserId, отправленных не позже upTo.
+     * Читается по индексу userId_fromUserId_timestamp
+     * @param userId String
+     * @param fromUserId String
+     * @param upTo Date
+     * @return Query
+     */
+    public static Query unreadMessagesUpTo(String userId, String fromUserId, Date upTo) {
+        Query query = new Query();
+        query.addCriteria(Criteria.where("userId").is(userId).and("fromUserId").is(fromUserId)
+                .and("timestamp").lte(upTo).and("isRead").is(false));
+        return query;
+    }
+
+    /**
+     * Обновление "сообщение прочитано"
+     * @return Update
+     */
+    public static Update markRead() {
+        return new Update().set("isRead", true);
+    }
+
+    /**
+     * Непрочитанные сообщения из списка messageIds по переписке: документы вида {_id: {userId, fromUserId}, ids}
+     * @param messageIds List<String>
+     * @return TypedAggregation<ChatItem>
+     */
+    public static TypedAggregation<ChatItem> unreadByConversation(List<String> messageIds) {
+        return Aggregation.newAggregation(ChatItem.class,
+                Aggregation.match(Criteria.where("id").in(messageIds).and("isRead").is(false)),
+                Aggregation.group("userId", "fromUserId").push("id").as("ids"));
+    }
+
+    /**
+     * Уменьшение числа непрочитанных в сводке переписки на count, но не ниже нуля: одни и те же сообщения
+     * могут одновременно отмечаться прочитанными разными запросами
+     * @param count long
+     * @return AggregationUpdate
+     */
+    public static AggregationUpdate unreadDecrement(long count) {
+        return AggregationUpdate.from(List.of(stage("$set", new Document("unreadCount",
+                new Document("$max", List.of(0L, new Document("$add", List.of("$unreadCount", -count))))))));
+    }
+
+    /**
+     * Стадия конвейера агрегации, заданная документом без преобразования имен полей
+     * @param operator String
+     * @param value Object
+     * @return AggregationOperation
+     */
+    private static AggregationOperation stage(String operator, Object value) {
+        return context -> new Document(operator, value);
+    }
+
+    /**
+     * Значение в выражении конвейера без разбора: строка, начинающаяся с $, иначе читалась бы как путь к полю
+     * @param value Object
+     * @return Document
+     */
+    private static Document literal(Object value) {
+        return new Document("$literal", value);
+    }
+
+    /**
+     * Страница переписки двух пользователей в обоих направлениях одним запросом. Сообщения отбираются
+     * от новых к старым по (timestamp, _id) после позиции cursor или с пропуском skip, а выдаются
+     * от старых к новым. Каждая ветвь $or читается по индексу userId_fromUserId_timestamp
+     * @param userId1 String
+     * @param userId2 String
+     * @param cursor ChatCursor позиция самого старого сообщения предыдущей страницы или null
+     * @param skip long
+     * @param size int
+     * @return TypedAggregation<ChatItem>
+     */
+    public static TypedAggregation<ChatItem> conversationPage(String userId1, String userId2, ChatCursor cursor, long skip, int size) {
+        List<Criteria> criteria = new ArrayList<>();
+        criteria.add(new Criteria().orOperator(
+                Criteria.where("userId").is(userId1).and("fromUserId").is(userId2),
+                Criteria.where("userId").is(userId2).and("fromUserId").is(userId1)));
+        criteria.add(Criteria.where("message").ne(""));
+        if (cursor != null) {
+            criteria.add(before(cursor));
+        }
+
+        List<AggregationOperation> operations = new ArrayList<>();
+        operations.add(Aggregation.match(new Criteria().andOperator(criteria.toArray(new Criteria[0]))));
+        //В типизированной агрегации поле _id задается именем свойства id
+        operations.add(Aggregation.sort(Sort.by(Sort.Order.desc("timestamp"), Sort.Order.desc("id"))));
+        if (skip > 0) {
+            operations.add(Aggregation.skip(skip));
+        }
+        operations.add(Aggregation.limit(size));
+        operations.add(Aggregation.sort(Sort.by(Sort.Order.asc("timestamp"), Sort.Order.asc("id"))));
+        return Aggregation.newAggregation(ChatItem.class, operations);
+    }
+
+    /**
+     * Условие "сообщение старше позиции cursor" в порядке (timestamp, _id)
+     * @param cursor ChatCursor
+     * @return Criteria
+     */
+    private static Criteria before(ChatCursor cursor) {
+        //Код сообщения хранится как ObjectId, а сравнение $lt строки с ObjectId в Mongo всегда ложно
+        Object id = ObjectId.isValid(cursor.getId()) ? new ObjectId(cursor.getId()) : cursor.getId();
+        return new Criteria().orOperator(
+                Criteria.where("timestamp").lt(cursor.getTimestamp()),
+                Criteria.where("timestamp").is(cursor.getTimestamp()).and("_id").lt(id));
+    }
+
+    /**
+     * Запрос профиля, миниатюры которого нет среди изображений imgUrls
+     * @param userId String
+     * @param imgUrls List<ImageRef>
+     * @return Query
+     */
+    public static Query staleThumb(String userId, List<ImageRef> imgUrls) {
+        Query query = profileById(userId);
+        query.addCriteria(Criteria.where("thumbUrl.alt").nin(imgUrls.stream().map(ImageRef::getAlt).collect(Collectors.toList())).ne(""));
+        return query;
+    }
+}
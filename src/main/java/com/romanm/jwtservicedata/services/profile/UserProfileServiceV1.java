@@ -1,6 +1,7 @@
 package com.romanm.jwtservicedata.services.profile;
 
-import com.romanm.jwtservicedata.models.ChatItem;
+import com.romanm.jwtservicedata.components.tracing.Tracing;
+import com.romanm.jwtservicedata.models.Conversation;
 import com.romanm.jwtservicedata.models.UserProfile;
 import com.romanm.jwtservicedata.models.Visitor;
 import com.romanm.jwtservicedata.models.requests.SearchBody;
@@ -26,16 +27,20 @@ public class UserProfileServiceV1 implements UserProfileService {
 
     private final UserProfileRepository userProfileRepository;
     private final MongoOperations mongoOperations;
+    private final Tracing tracing;
 
     /**
      * @param userProfileRepository UserProfileRepository
      * @param mongoOperations MongoOperations
+     * @param tracing Tracing
      */
     @Autowired
     public UserProfileServiceV1(UserProfileRepository userProfileRepository,
-                                MongoOperations mongoOperations) {
+                                MongoOperations mongoOperations,
+                                Tracing tracing) {
         this.userProfileRepository = userProfileRepository;
         this.mongoOperations = mongoOperations;
+        this.tracing = tracing;
     }
 
 
@@ -50,9 +55,9 @@ public class UserProfileServiceV1 implements UserProfileService {
             return Mono.just(new ResponseUserProfile());
         }
         //Получить данные профиля текущего пользователя
-        Mono<UserProfile> userProfile = this.userProfileRepository.findUserProfileById(userId);
-        Mono<List<UserProfile>> lastVisitors = this.findVisitorsIfProfile(userId, 10, 0);
-        Mono<List<UserProfile>> lastChats = this.findChatUserProfilesByPage(userId, 10, 0);
+        Mono<UserProfile> userProfile = this.tracing.trace("getUserProfile.profile", this.userProfileRepository.findUserProfileById(userId));
+        Mono<List<UserProfile>> lastVisitors = this.tracing.trace("getUserProfile.lastVisitors", this.findVisitorsIfProfile(userId, 10, 0));
+        Mono<List<UserProfile>> lastChats = this.tracing.trace("getUserProfile.lastChats", this.findChatUserProfilesByPage(userId, 10, 0));
 
         return Mono.from(Flux.zip(lastVisitors, lastChats, userProfile.map(ResponseUserProfile::new)).map((data) -> {
             ResponseUserProfile responseUserProfile = data.getT3();
@@ -135,7 +140,7 @@ public class UserProfileServiceV1 implements UserProfileService {
     }
 
     /**
-     * Найти рофили пользователей по переписке для данного пользователя
+     * Найти рофили пользователей по переписке для данного пользователя, от последних чатов к старым
      * @param userId String
      * @param pageSize int
      * @param page int
@@ -144,10 +149,10 @@ public class UserProfileServiceV1 implements UserProfileService {
     @Override
     public Mono<List<UserProfile>> findChatUserProfilesByPage(String userId, int pageSize, int page) {
         return this.mongoOperations
-                .findDistinctProfileIdOfChats(userId, page, pageSize)
+                .findConversations(userId, page, pageSize)
                 .collectList()
                 .flatMap(s -> {
-                    List<String> userIds = s.stream().map(ChatItem::getUserId).collect(Collectors.toList());
+                    List<String> userIds = s.stream().map(Conversation::getPeerId).collect(Collectors.toList());
                     return this.userProfileRepository
                             .findUserProfilesByIdIn(userIds)
                             .sort(Comparator.comparing(v->userIds.indexOf(v.getId())))
@@ -0,0 +1,59 @@
+package com.romanm.jwtservicedata.components.auth;
+
+import com.romanm.jwtservicedata.components.confs.AuthConfig;
+import com.romanm.jwtservicedata.models.auth.AuthUser;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AuthUserCacheTest {
+
+    private AuthUserCache createCache(int size, long ttlMs) {
+        AuthConfig authConfig = new AuthConfig();
+        authConfig.setUserCacheSize(size);
+        authConfig.setUserCacheTtlMs(ttlMs);
+        return new AuthUserCache(authConfig);
+    }
+
+    @Test
+    public void getAndInvalidateTest() {
+        AuthUserCache authUserCache = this.createCache(100, 60000);
+        AuthUser authUser = new AuthUser("user", "password", null, false);
+
+        Assert.assertNull(authUserCache.get("user"));
+        authUserCache.put("user", authUser, authUserCache.getGeneration());
+        Assert.assertSame(authUser, authUserCache.get("user"));
+
+        authUserCache.invalidate("user");
+        Assert.assertNull(authUserCache.get("user"));
+
+        authUserCache.put("user", authUser, authUserCache.getGeneration());
+        authUserCache.invalidateAll();
+        Assert.assertNull(authUserCache.get("user"));
+        Assert.assertEquals(1, authUserCache.getHits());
+        Assert.assertEquals(3, authUserCache.getMisses());
+    }
+
+    @Test
+    public void staleLoadTest() {
+        AuthUserCache authUserCache = this.createCache(100, 60000);
+
+        //Пользователь изменился, пока читался из Redis - прочитанные данные в кеш не попадают
+        long generation = authUserCache.getGeneration();
+        authUserCache.invalidate("user");
+        authUserCache.put("user", new AuthUser("user", "password", null, false), generation);
+        Assert.assertNull(authUserCache.get("user"));
+    }
+
+    @Test
+    public void expireAndEvictTest() throws InterruptedException {
+        AuthUserCache authUserCache = this.createCache(2, 200);
+        authUserCache.put("user1", new AuthUser("user1", "password", null, false), authUserCache.getGeneration());
+        authUserCache.put("user2", new AuthUser("user2", "password", null, false), authUserCache.getGeneration());
+        authUserCache.put("user3", new AuthUser("user3", "password", null, false), authUserCache.getGeneration());
+        Assert.assertEquals(2, authUserCache.getSize());
+        Assert.assertNull(authUserCache.get("user1"));
+
+        Thread.sleep(300);
+        Assert.assertNull(authUserCache.get("user3"));
+    }
+}
@@ -23,5 +23,17 @@ public class OpenUrlCheckerTest {
 
         Assert.assertTrue(urlTestTrue);
         Assert.assertFalse(urlTestFalse);
+
+        Assert.assertTrue(openUrlChecker.check(Api.API_PREFIX+Api.API_USER_RESOURCE_THUMBS));
+        Assert.assertTrue(openUrlChecker.check(Api.MAIN_ICON+".ico"));
+        //Маршрут открыт только по шаблону, а не по вхождению подстроки
+        Assert.assertFalse(openUrlChecker.check(Api.API_PREFIX+Api.API_USER_IMAGES+Api.API_USER_IMAGE));
+        Assert.assertFalse(openUrlChecker.check(Api.API_PREFIX+Api.API_USER_IMAGE+"s"));
+        Assert.assertFalse(openUrlChecker.check(""));
+
+        Assert.assertTrue(openUrlChecker.check(Api.ACTUATOR_HEALTH));
+        //Метрики отдаются только с токеном
+        Assert.assertFalse(openUrlChecker.check(Api.ACTUATOR_PROMETHEUS));
+        Assert.assertFalse(openUrlChecker.check("/actuator/env"));
     }
 }
\ No newline at end of file
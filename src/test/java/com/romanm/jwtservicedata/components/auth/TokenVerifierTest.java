@@ -0,0 +1,93 @@
+package com.romanm.jwtservicedata.components.auth;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.exceptions.TokenExpiredException;
+import com.romanm.jwtservicedata.components.confs.AuthConfig;
+import com.romanm.jwtservicedata.constants.MessageConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Date;
+
+@Slf4j
+public class TokenVerifierTest {
+
+    private TokenVerifier createVerifier(int size) {
+        AuthConfig authConfig = new AuthConfig();
+        authConfig.setTokenCacheSize(size);
+        authConfig.setTokenCacheTtlMs(60000);
+        return new TokenVerifier(authConfig);
+    }
+
+    private String createToken(String userName, long expiresAt, String secret) {
+        return JWT.create()
+                .withSubject(userName)
+                .withExpiresAt(new Date(expiresAt))
+                .sign(Algorithm.HMAC512(secret.getBytes()));
+    }
+
+    private boolean isRejected(TokenVerifier tokenVerifier, String token, Class<? extends JWTVerificationException> exceptionClass) {
+        try {
+            tokenVerifier.verify(token);
+            return false;
+        } catch (JWTVerificationException e) {
+            log.info(MessageConstants.prefixMsg(e.getMessage()));
+            return exceptionClass.isInstance(e);
+        }
+    }
+
+    @Test
+    public void verifyCachedTest() {
+        TokenVerifier tokenVerifier = this.createVerifier(100);
+        String token = this.createToken("user", System.currentTimeMillis()+60000, MessageConstants.SECRET);
+
+        Assert.assertEquals("user", tokenVerifier.verify(token));
+        Assert.assertEquals("user", tokenVerifier.verify(token));
+        log.info(MessageConstants.prefixMsg("Hits: "+tokenVerifier.getHits()+", misses: "+tokenVerifier.getMisses()));
+        Assert.assertEquals(1, tokenVerifier.getHits());
+        Assert.assertEquals(1, tokenVerifier.getMisses());
+    }
+
+    @Test
+    public void verifyInvalidTest() {
+        TokenVerifier tokenVerifier = this.createVerifier(100);
+        String token = this.createToken("user", System.currentTimeMillis()+60000, "Wrong_Secret");
+
+        Assert.assertTrue(this.isRejected(tokenVerifier, token, JWTVerificationException.class));
+        Assert.assertTrue(this.isRejected(tokenVerifier, token, JWTVerificationException.class));
+        Assert.assertEquals(0, tokenVerifier.getSize());
+    }
+
+    @Test
+    public void verifyExpiredTest() throws InterruptedException {
+        TokenVerifier tokenVerifier = this.createVerifier(100);
+        String token = this.createToken("user", System.currentTimeMillis()+1000, MessageConstants.SECRET);
+        Assert.assertEquals("user", tokenVerifier.verify(token));
+        Assert.assertEquals("user", tokenVerifier.verify(token));
+        Assert.assertEquals(1, tokenVerifier.getHits());
+
+        //Токен из кеша не выдается после истечения срока его действия (срок хранится с точностью до секунды)
+        Thread.sleep(2500);
+        Assert.assertTrue(this.isRejected(tokenVerifier, token, TokenExpiredException.class));
+    }
+
+    @Test
+    public void cacheSizeTest() {
+        TokenVerifier tokenVerifier = this.createVerifier(2);
+        long expiresAt = System.currentTimeMillis()+60000;
+        String token1 = this.createToken("user1", expiresAt, MessageConstants.SECRET);
+
+        tokenVerifier.verify(token1);
+        tokenVerifier.verify(this.createToken("user2", expiresAt, MessageConstants.SECRET));
+        tokenVerifier.verify(this.createToken("user3", expiresAt, MessageConstants.SECRET));
+        Assert.assertEquals(2, tokenVerifier.getSize());
+
+        //Первый токен вытеснен и проверяется заново
+        tokenVerifier.verify(token1);
+        Assert.assertEquals(0, tokenVerifier.getHits());
+        Assert.assertEquals(4, tokenVerifier.getMisses());
+    }
+}
@@ -0,0 +1,92 @@
+package com.romanm.jwtservicedata.components.chat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.romanm.jwtservicedata.components.confs.ChatConfig;
+import com.romanm.jwtservicedata.models.ChatItem;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Date;
+
+public class ChatMessageBrokerTest {
+    private static final String CHANNEL = "chat:messages";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ReactiveStringRedisTemplate redisTemplate = Mockito.mock(ReactiveStringRedisTemplate.class);
+
+    private ChatMessageBroker createBroker(int bufferSize) {
+        ChatConfig chatConfig = new ChatConfig();
+        chatConfig.setPushBufferSize(bufferSize);
+        chatConfig.setPushChannel(CHANNEL);
+        Mockito.when(this.redisTemplate.convertAndSend(Mockito.eq(CHANNEL), Mockito.anyString())).thenReturn(Mono.just(1L));
+        return new ChatMessageBroker(this.redisTemplate, null, this.objectMapper, chatConfig);
+    }
+
+    private ChatItem chatItem(String id, String userId, String fromUserId) {
+        ChatItem chatItem = new ChatItem(userId, fromUserId, "message "+id, new Date());
+        chatItem.setId(id);
+        return chatItem;
+    }
+
+    @Test
+    public void publishToRecipientTest() {
+        ChatMessageBroker broker = this.createBroker(16);
+
+        //Сообщение доставляется только подключенному получателю, канал удаляется после отключения
+        StepVerifier.create(broker.messagesOf("300"))
+                .then(() -> {
+                    Assert.assertEquals(1, broker.getConnectedUsers());
+                    broker.publish(this.chatItem("a1", "400", "200")).block();
+                    broker.publish(this.chatItem("a2", "300", "200")).block();
+                })
+                .expectNextMatches(chatItem -> chatItem.getId().equals("a2"))
+                .thenCancel()
+                .verify();
+        Assert.assertEquals(0, broker.getConnectedUsers());
+        Mockito.verify(this.redisTemplate, Mockito.times(2)).convertAndSend(Mockito.eq(CHANNEL), Mockito.anyString());
+    }
+
+    @Test
+    public void dropOldestTest() {
+        ChatMessageBroker broker = this.createBroker(2);
+
+        //Клиент не запрашивает сообщения: в очереди остаются два последних
+        StepVerifier.create(broker.messagesOf("300"), 0)
+                .then(() -> {
+                    for (int i = 1; i <= 5; i++) {
+                        broker.publish(this.chatItem("a"+i, "300", "200")).block();
+                    }
+                })
+                .thenRequest(2)
+                .expectNextMatches(chatItem -> chatItem.getId().equals("a4"))
+                .expectNextMatches(chatItem -> chatItem.getId().equals("a5"))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    public void remoteMessageTest() throws Exception {
+        ChatMessageBroker broker = this.createBroker(16);
+        ChatMessageBroker remoteBroker = this.createBroker(16);
+
+        ArgumentCaptor<String> envelope = ArgumentCaptor.forClass(String.class);
+        remoteBroker.publish(this.chatItem("a1", "300", "200")).block();
+        Mockito.verify(this.redisTemplate).convertAndSend(Mockito.eq(CHANNEL), envelope.capture());
+
+        //Сообщение другого узла доставляется, собственное - нет, оно уже доставлено при публикации
+        StepVerifier.create(broker.messagesOf("300"))
+                .then(() -> {
+                    remoteBroker.onMessage(envelope.getValue());
+                    broker.onMessage("not json");
+                    broker.onMessage(envelope.getValue());
+                })
+                .expectNextMatches(chatItem -> chatItem.getId().equals("a1") && chatItem.getMessage().equals("message a1"))
+                .thenCancel()
+                .verify();
+    }
+}
@@ -0,0 +1,80 @@
+package com.romanm.jwtservicedata.components.confs;
+
+import com.romanm.jwtservicedata.constants.MessageConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+@Slf4j
+public class FileConfigTest {
+    private FileConfig fileConfig;
+
+    @Before
+    public void initConfig() {
+        this.fileConfig = new FileConfig();
+        this.fileConfig.setUploadsDir("uploads_test");
+        this.fileConfig.setVariantWidths(List.of(64, 160, 280, 720));
+        this.fileConfig.setVariantDir("variants");
+    }
+
+    @Test
+    public void resolveUserFileTest() {
+        Path path = this.fileConfig.resolveUserFile("200", "file1.png");
+        log.info(MessageConstants.prefixMsg("Resolved path: "+path));
+        Assert.assertEquals(Paths.get("uploads_test", "200", "file1.png"), path);
+
+        //Выход за пределы каталога пользователя запрещен
+        Assert.assertNull(this.fileConfig.resolveUserFile("200", "../201/file1.png"));
+        Assert.assertNull(this.fileConfig.resolveUserFile("200", "thumb/thumb_280x280.jpg"));
+        Assert.assertNull(this.fileConfig.resolveUserFile("..", "file1.png"));
+        Assert.assertNull(this.fileConfig.resolveUserFile("200", ".."));
+
+        //Пустые параметры
+        Assert.assertNull(this.fileConfig.resolveUserFile("", "file1.png"));
+        Assert.assertNull(this.fileConfig.resolveUserFile("200", ""));
+        Assert.assertNull(this.fileConfig.resolveUserFile(null, null));
+
+        //Имя файла проверяется без обращения к диску
+        Assert.assertEquals("file1.png", this.fileConfig.getUserFileName("200", "./file1.png"));
+        Assert.assertNull(this.fileConfig.getUserFileName("200", "../201/file1.png"));
+        Assert.assertNull(this.fileConfig.getUserFileName("200/..", "file1.png"));
+    }
+
+    @Test
+    public void getVariantWidthTest() {
+        Assert.assertEquals(Integer.valueOf(64), this.fileConfig.getVariantWidth(1));
+        Assert.assertEquals(Integer.valueOf(160), this.fileConfig.getVariantWidth(100));
+        Assert.assertEquals(Integer.valueOf(280), this.fileConfig.getVariantWidth(280));
+
+        //Без размера или для размера больше всех копий отдается исходный файл
+        Assert.assertNull(this.fileConfig.getVariantWidth(0));
+        Assert.assertNull(this.fileConfig.getVariantWidth(1000));
+
+        Assert.assertEquals(Paths.get("uploads_test", "200", "variants", "160", "file1.png"), this.fileConfig.getUserVariantFile("200", "file1.png", 160));
+    }
+
+    @Test
+    public void shardedUserDirTest() {
+        this.fileConfig.setShardLevels(2);
+        this.fileConfig.setLegacyDirsMigrated(true);
+
+        Path userDir = this.fileConfig.getUserDir("200");
+        log.info(MessageConstants.prefixMsg("Sharded user dir: "+userDir));
+        Assert.assertEquals(4, userDir.getNameCount());
+        Assert.assertEquals(Paths.get("uploads_test"), userDir.getParent().getParent().getParent());
+        Assert.assertEquals("200", userDir.getFileName().toString());
+        //Раскладка постоянна для пользователя
+        Assert.assertEquals(userDir, this.fileConfig.getUserDir("200"));
+        Assert.assertEquals(Paths.get("uploads_test", "200"), this.fileConfig.getLegacyUserDir("200"));
+
+        Assert.assertEquals(userDir.resolve("file1.png"), this.fileConfig.resolveUserFile("200", "file1.png"));
+        Assert.assertNull(this.fileConfig.resolveUserFile("..", "file1.png"));
+        Assert.assertNull(this.fileConfig.resolveUserFile("200/..", "file1.png"));
+        Assert.assertNull(this.fileConfig.resolveUserFile("200", "../file1.png"));
+    }
+}
@@ -0,0 +1,125 @@
+package com.romanm.jwtservicedata.components.files;
+
+import com.romanm.jwtservicedata.components.confs.FileConfig;
+import com.romanm.jwtservicedata.constants.MessageConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Properties;
+
+@Slf4j
+public class BlobStoreTest {
+    private static final String HASH = "a1b2c3d4e5f60718293a4b5c6d7e8f90a1b2c3d4e5f60718293a4b5c6d7e8f90";
+
+    private Path rootDir;
+    private FileConfig fileConfig;
+    private BlobStore blobStore;
+
+    @Before
+    public void initStore() throws IOException {
+        this.rootDir = Files.createTempDirectory("blobs");
+
+        this.fileConfig = new FileConfig();
+        this.fileConfig.setUploadsDir(this.rootDir.resolve("uploads").toString());
+        this.fileConfig.setStorageType(BlobStore.STORAGE_TYPE_BLOB);
+        this.fileConfig.setBlobDir(this.rootDir.resolve("blobs").toString());
+        this.fileConfig.setBlobGcGraceMs(60000);
+        this.blobStore = new BlobStore(this.fileConfig);
+
+        Files.createDirectories(this.fileConfig.getUserDir("200"));
+        Files.createDirectories(this.fileConfig.getUserDir("201"));
+    }
+
+    @After
+    public void clean() throws IOException {
+        FileSystemUtils.deleteRecursively(this.rootDir);
+    }
+
+    /**
+     * Сохранить содержимое в каталог пользователя через хранилище
+     * @param userId String
+     * @param fileName String
+     * @param content byte[]
+     * @return Path
+     */
+    private Path store(String userId, String fileName, byte[] content) throws IOException {
+        Path file = this.fileConfig.getUserDir(userId).resolve(fileName);
+        Path uploadFile = file.resolveSibling("."+fileName+".upload");
+        Files.write(uploadFile, content);
+        this.blobStore.store(uploadFile, HASH, userId, file);
+        Assert.assertFalse(Files.exists(uploadFile));
+        return file;
+    }
+
+    private Properties readManifest(String userId) throws IOException {
+        Properties manifest = new Properties();
+        try (InputStream in = Files.newInputStream(this.fileConfig.getUserDir(userId).resolve(BlobStore.MANIFEST_FILE))) {
+            manifest.load(in);
+        }
+        return manifest;
+    }
+
+    @Test
+    public void storeDeduplicatedTest() throws IOException {
+        byte[] content = new byte[] {1, 2, 3};
+        Path file1 = this.store("200", "file1.png", content);
+        Path file2 = this.store("201", "file2.png", content);
+
+        //Содержимое хранится один раз, файлы пользователей ссылаются на него
+        Path blob = this.blobStore.getBlobFile(HASH);
+        log.info(MessageConstants.prefixMsg("Blob file: "+blob));
+        Assert.assertTrue(Files.isRegularFile(blob));
+        Assert.assertArrayEquals(content, Files.readAllBytes(file1));
+        Assert.assertArrayEquals(content, Files.readAllBytes(file2));
+        Assert.assertEquals(HASH, this.readManifest("200").getProperty("file1.png"));
+        Assert.assertEquals(HASH, this.readManifest("201").getProperty("file2.png"));
+        try (java.util.stream.Stream<Path> blobs = Files.walk(this.rootDir.resolve("blobs"))) {
+            Assert.assertEquals(1, blobs.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    public void collectGarbageTest() throws IOException {
+        byte[] content = new byte[] {1, 2, 3};
+        this.store("200", "file1.png", content);
+        this.store("201", "file2.png", content);
+
+        //Пока на содержимое ссылается хотя бы один манифест, оно не удаляется
+        this.blobStore.unreference("200", "file1.png");
+        Assert.assertEquals(0, this.blobStore.collectGarbage());
+        Assert.assertTrue(Files.exists(this.blobStore.getBlobFile(HASH)));
+
+        //Недавно сохраненное содержимое не удаляется до истечения files.blob-gc-grace-ms
+        this.blobStore.unreference("201", "file2.png");
+        Assert.assertEquals(0, this.blobStore.collectGarbage());
+
+        Files.setLastModifiedTime(this.blobStore.getBlobFile(HASH), FileTime.fromMillis(System.currentTimeMillis()-120000));
+        Assert.assertEquals(1, this.blobStore.collectGarbage());
+        Assert.assertFalse(Files.exists(this.blobStore.getBlobFile(HASH)));
+
+        //Файл пользователя не зависит от удаления содержимого из хранилища
+        Assert.assertArrayEquals(content, Files.readAllBytes(this.fileConfig.getUserDir("201").resolve("file2.png")));
+    }
+
+    @Test
+    public void collectGarbageShardedTest() throws IOException {
+        this.fileConfig.setShardLevels(2);
+        //Каталог плоской раскладки не меняет глубину поиска манифестов в шардированных каталогах
+        Files.createDirectories(this.rootDir.resolve("uploads").resolve("0"));
+        Files.createDirectories(this.fileConfig.getShardedUserDir("202"));
+        this.store("202", "file1.png", new byte[] {1, 2, 3});
+
+        Files.setLastModifiedTime(this.blobStore.getBlobFile(HASH), FileTime.fromMillis(System.currentTimeMillis()-120000));
+        Assert.assertEquals(0, this.blobStore.collectGarbage());
+        Assert.assertTrue(Files.exists(this.blobStore.getBlobFile(HASH)));
+    }
+}
@@ -0,0 +1,45 @@
+package com.romanm.jwtservicedata.components.files;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@Slf4j
+public class ImageSignatureHandlerTest {
+    private final ImageSignatureHandler imageSignatureHandler = new ImageSignatureHandler();
+
+    /**
+     * Прочитать начало тестового файла
+     * @param resource String
+     * @return byte[]
+     */
+    private byte[] readHeader(String resource) throws IOException {
+        try (InputStream inputStream = new ClassPathResource(resource).getInputStream()) {
+            return inputStream.readNBytes(ImageSignatureHandler.SIGNATURE_LENGTH);
+        }
+    }
+
+    @Test
+    public void isSignatureValidTest() throws IOException {
+        byte[] png = this.readHeader("test1/file1.png");
+        byte[] jpg = this.readHeader("test1/file2.jpg");
+        byte[] pdf = this.readHeader("test1/file3.pdf");
+
+        Assert.assertTrue(this.imageSignatureHandler.isSignatureValid("file1.png", png, png.length));
+        Assert.assertTrue(this.imageSignatureHandler.isSignatureValid("file2.jpg", jpg, jpg.length));
+        Assert.assertTrue(this.imageSignatureHandler.isSignatureValid("file2.jpeg", jpg, jpg.length));
+        Assert.assertTrue(this.imageSignatureHandler.isSignatureValid("file.gif", "GIF89a..".getBytes(), 8));
+
+        //Содержимое не соответствует расширению
+        Assert.assertFalse(this.imageSignatureHandler.isSignatureValid("file2.png", jpg, jpg.length));
+        Assert.assertFalse(this.imageSignatureHandler.isSignatureValid("file3.jpg", pdf, pdf.length));
+        //Файл короче сигнатуры
+        Assert.assertFalse(this.imageSignatureHandler.isSignatureValid("file1.png", png, 4));
+        Assert.assertFalse(this.imageSignatureHandler.isSignatureValid("file1.bmp", png, png.length));
+        Assert.assertFalse(this.imageSignatureHandler.isSignatureValid("file1", png, png.length));
+    }
+}
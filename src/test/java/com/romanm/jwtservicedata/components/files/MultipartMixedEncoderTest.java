@@ -0,0 +1,68 @@
+package com.romanm.jwtservicedata.components.files;
+
+import com.romanm.jwtservicedata.constants.MessageConstants;
+import com.romanm.jwtservicedata.models.files.CachedResource;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.multipart.DefaultPartHttpMessageReader;
+import org.springframework.http.codec.multipart.Part;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+@Slf4j
+public class MultipartMixedEncoderTest {
+    private final MultipartMixedEncoder multipartMixedEncoder = new MultipartMixedEncoder();
+
+    private HttpEntity<Resource> part(String userId, String content) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.IMAGE_JPEG);
+        headers.setContentDisposition(ContentDisposition.inline().name(userId).build());
+        return new HttpEntity<>(new CachedResource(content.getBytes(StandardCharsets.UTF_8), 0, userId), headers);
+    }
+
+    @Test
+    public void encodeReadableTest() {
+        String boundary = this.multipartMixedEncoder.generateBoundary();
+        Flux<DataBuffer> body = this.multipartMixedEncoder.encode(Flux.just(this.part("200", "thumb200"), this.part("201", "thumb201")),
+                boundary, DefaultDataBufferFactory.sharedInstance);
+
+        //Ответ разбирается стандартным чтением multipart
+        MockServerHttpRequest request = MockServerHttpRequest.post("/")
+                .contentType(this.multipartMixedEncoder.getMediaType(boundary))
+                .body(body);
+        List<Part> parts = new DefaultPartHttpMessageReader()
+                .read(ResolvableType.forClass(Part.class), request, Collections.emptyMap())
+                .collectList()
+                .block();
+
+        Assert.assertNotNull(parts);
+        Assert.assertEquals(2, parts.size());
+        Assert.assertEquals("200", parts.get(0).name());
+        Assert.assertEquals(MediaType.IMAGE_JPEG, parts.get(1).headers().getContentType());
+        String content = DataBufferUtils.join(parts.get(1).content()).map(buffer -> buffer.toString(StandardCharsets.UTF_8)).block();
+        log.info(MessageConstants.prefixMsg("Part content: "+content));
+        Assert.assertEquals("thumb201", content);
+    }
+
+    @Test
+    public void encodeEmptyTest() {
+        String body = DataBufferUtils.join(this.multipartMixedEncoder.encode(Flux.empty(), "b", DefaultDataBufferFactory.sharedInstance))
+                .map(buffer -> buffer.toString(StandardCharsets.UTF_8))
+                .block();
+        Assert.assertEquals("--b--\r\n", body);
+    }
+}
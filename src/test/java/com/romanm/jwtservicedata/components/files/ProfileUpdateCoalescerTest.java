@@ -0,0 +1,68 @@
+package com.romanm.jwtservicedata.components.files;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+@Slf4j
+public class ProfileUpdateCoalescerTest {
+    private final List<String> updates = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void requestsCoalescedTest() {
+        ProfileUpdateCoalescer coalescer = new ProfileUpdateCoalescer(Duration.ofMillis(100), (userId, thumbFileName) -> {
+            this.updates.add(userId+":"+thumbFileName);
+            return Mono.empty();
+        });
+
+        //Запросы одного пользователя за время задержки выполняются одним обновлением с последней миниатюрой
+        Mono<Void> first = coalescer.submit("200", null);
+        Mono<Void> second = coalescer.submit("200", "file1.png");
+        Mono<Void> third = coalescer.submit("200", null);
+        Mono<Void> other = coalescer.submit("201", null);
+
+        StepVerifier.create(Mono.when(first, second, third, other)).verifyComplete();
+        Assert.assertEquals(2, this.updates.size());
+        Assert.assertTrue(this.updates.contains("200:file1.png"));
+        Assert.assertTrue(this.updates.contains("201:null"));
+    }
+
+    @Test
+    public void updatesSerializedTest() {
+        Sinks.Empty<Void> firstUpdate = Sinks.empty();
+        ProfileUpdateCoalescer coalescer = new ProfileUpdateCoalescer(Duration.ofMillis(10), (userId, thumbFileName) -> {
+            this.updates.add(String.valueOf(thumbFileName));
+            return "file1.png".equals(thumbFileName) ? firstUpdate.asMono() : Mono.empty();
+        });
+
+        Mono<Void> first = coalescer.submit("200", "file1.png").cache();
+        first.subscribe();
+        Mono<Void> second = coalescer.submit("200", null);
+        StepVerifier.create(Mono.delay(Duration.ofMillis(100))).expectNextCount(1).verifyComplete();
+
+        //Запрос во время выполнения обновления попадает в следующее обновление, которое ждет завершения текущего
+        Mono<Void> third = coalescer.submit("200", "file2.png");
+        StepVerifier.create(Mono.delay(Duration.ofMillis(100))).expectNextCount(1).verifyComplete();
+        Assert.assertEquals(List.of("file1.png"), this.updates);
+
+        firstUpdate.tryEmitEmpty();
+        StepVerifier.create(Mono.when(first, second, third)).verifyComplete();
+        Assert.assertEquals(List.of("file1.png", "file2.png"), this.updates);
+    }
+
+    @Test
+    public void updateErrorReportedTest() {
+        ProfileUpdateCoalescer coalescer = new ProfileUpdateCoalescer(Duration.ofMillis(10), (userId, thumbFileName) -> Mono.error(new IllegalStateException("Mongo is unavailable")));
+
+        StepVerifier.create(coalescer.submit("200", null)).expectError(IllegalStateException.class).verify();
+        //После ошибки следующий запрос выполняется новым обновлением
+        StepVerifier.create(coalescer.submit("200", null)).expectError(IllegalStateException.class).verify();
+    }
+}
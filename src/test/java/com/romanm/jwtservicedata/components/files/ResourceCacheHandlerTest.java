@@ -0,0 +1,87 @@
+package com.romanm.jwtservicedata.components.files;
+
+import com.romanm.jwtservicedata.components.confs.FileConfig;
+import com.romanm.jwtservicedata.constants.MessageConstants;
+import com.romanm.jwtservicedata.models.files.VariantResource;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.file.Paths;
+
+@Slf4j
+public class ResourceCacheHandlerTest {
+    private ResourceCacheHandler resourceCacheHandler;
+
+    @Before
+    public void initConfig() {
+        FileConfig fileConfig = new FileConfig();
+        fileConfig.setCacheMaxAge(3600);
+        this.resourceCacheHandler = new ResourceCacheHandler(fileConfig);
+    }
+
+    @Test
+    public void getVersionTest() {
+        String version = ResourceCacheHandler.getVersion(1000, 1634000000000L);
+        log.info(MessageConstants.prefixMsg("Version: "+version));
+        Assert.assertEquals("3e8-17c71fd5400", version);
+        Assert.assertNotEquals(version, ResourceCacheHandler.getVersion(1000, 1634000000001L));
+        Assert.assertNotEquals(version, ResourceCacheHandler.getVersion(1001, 1634000000000L));
+    }
+
+    @Test
+    public void getCacheControlTest() {
+        String version = ResourceCacheHandler.getVersion(1000, 1634000000000L);
+
+        String immutable = this.resourceCacheHandler.getCacheControl(version, version);
+        log.info(MessageConstants.prefixMsg("Cache-Control: "+immutable));
+        Assert.assertEquals("max-age=3600, public, immutable", immutable);
+
+        Assert.assertEquals("no-cache, public", this.resourceCacheHandler.getCacheControl(version, ""));
+        Assert.assertEquals("no-cache, public", this.resourceCacheHandler.getCacheControl(version, "1-1"));
+        Assert.assertEquals("no-cache, public", this.resourceCacheHandler.getCacheControl(null, ""));
+    }
+
+    @Test
+    public void toResponseWithoutVersionTest() {
+        //Ресурс без даты изменения отдается без валидаторов
+        Resource resource = new ByteArrayResource(new byte[] {1, 2, 3});
+        ResponseEntity<Resource> response = this.resourceCacheHandler.toResponse(resource, MediaType.IMAGE_PNG_VALUE, "");
+
+        Assert.assertNull(response.getHeaders().getETag());
+        Assert.assertEquals(MediaType.IMAGE_PNG, response.getHeaders().getContentType());
+        Assert.assertEquals("no-cache, public", response.getHeaders().getFirst(HttpHeaders.CACHE_CONTROL));
+    }
+
+    @Test
+    public void variantVersionTest() {
+        //Ссылка на копию содержит версию исходного файла, а ETag различается для копий разной ширины
+        String sourceVersion = ResourceCacheHandler.getVersion(1000, 1634000000000L);
+        VariantResource variant = new VariantResource(Paths.get("uploads_test", "200", "variants", "160", "file1.png"), sourceVersion, 160);
+
+        Assert.assertEquals("3e8-17c71fd5400-a0", this.resourceCacheHandler.getVersion(variant));
+
+        ResponseEntity<Resource> response = this.resourceCacheHandler.toResponse(variant, MediaType.IMAGE_PNG_VALUE, sourceVersion);
+        Assert.assertEquals("\"3e8-17c71fd5400-a0\"", response.getHeaders().getETag());
+        Assert.assertEquals("max-age=3600, public, immutable", response.getHeaders().getFirst(HttpHeaders.CACHE_CONTROL));
+    }
+
+    @Test
+    public void variantFallbackTest() {
+        //Пока копии нет, исходный файл по ссылке с размером не кешируется как неизменяемый
+        String sourceVersion = ResourceCacheHandler.getVersion(1000, 1634000000000L);
+        Resource original = new ByteArrayResource(new byte[] {1, 2, 3});
+        ResponseEntity<Resource> response = this.resourceCacheHandler.toResponse(original, MediaType.IMAGE_PNG_VALUE, sourceVersion, 160);
+        Assert.assertEquals("no-cache, public", response.getHeaders().getFirst(HttpHeaders.CACHE_CONTROL));
+
+        VariantResource variant = new VariantResource(Paths.get("uploads_test", "200", "variants", "160", "file1.png"), sourceVersion, 160);
+        response = this.resourceCacheHandler.toResponse(variant, MediaType.IMAGE_PNG_VALUE, sourceVersion, 160);
+        Assert.assertEquals("max-age=3600, public, immutable", response.getHeaders().getFirst(HttpHeaders.CACHE_CONTROL));
+    }
+}
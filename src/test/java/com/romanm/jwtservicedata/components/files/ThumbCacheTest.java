@@ -0,0 +1,109 @@
+package com.romanm.jwtservicedata.components.files;
+
+import com.romanm.jwtservicedata.components.confs.FileConfig;
+import com.romanm.jwtservicedata.constants.MessageConstants;
+import com.romanm.jwtservicedata.models.files.CachedResource;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+@Slf4j
+public class ThumbCacheTest {
+    private Path thumbsDir;
+    private ThumbCache thumbCache;
+
+    @Before
+    public void initCache() throws IOException {
+        this.thumbsDir = Files.createTempDirectory("thumbs");
+
+        FileConfig fileConfig = new FileConfig();
+        fileConfig.setThumbCacheSize(250);
+        this.thumbCache = new ThumbCache(fileConfig);
+    }
+
+    @After
+    public void clean() throws IOException {
+        FileSystemUtils.deleteRecursively(this.thumbsDir);
+    }
+
+    /**
+     * Создать файл миниатюры заданного размера
+     * @param userId String
+     * @param size int
+     * @return Path
+     */
+    private Path createThumb(String userId, int size) throws IOException {
+        return Files.write(this.thumbsDir.resolve(userId+".jpg"), new byte[size]);
+    }
+
+    @Test
+    public void loadAndHitTest() throws IOException {
+        Path thumb = this.createThumb("200", 100);
+
+        CachedResource first = this.thumbCache.load("200", thumb);
+        CachedResource second = this.thumbCache.load("200", thumb);
+        log.info(MessageConstants.prefixMsg(String.format("hits: %d, misses: %d", this.thumbCache.getHits(), this.thumbCache.getMisses())));
+
+        Assert.assertNotNull(first);
+        Assert.assertSame(first, second);
+        Assert.assertEquals(100, first.contentLength());
+        Assert.assertEquals(Files.getLastModifiedTime(thumb).toMillis(), first.lastModified());
+        Assert.assertEquals(1, this.thumbCache.getHits());
+        Assert.assertEquals(1, this.thumbCache.getMisses());
+
+        //Нет файла - нет миниатюры
+        Assert.assertNull(this.thumbCache.load("201", this.thumbsDir.resolve("201.jpg")));
+        Assert.assertEquals(1, this.thumbCache.getSize());
+    }
+
+    @Test
+    public void evictionTest() throws IOException {
+        Path thumb1 = this.createThumb("200", 100);
+        Path thumb2 = this.createThumb("201", 100);
+        Path thumb3 = this.createThumb("202", 100);
+
+        this.thumbCache.load("200", thumb1);
+        this.thumbCache.load("201", thumb2);
+        //Обращение к 200 делает самой старой миниатюру 201
+        this.thumbCache.load("200", thumb1);
+        this.thumbCache.load("202", thumb3);
+
+        Assert.assertEquals(1, this.thumbCache.getEvictions());
+        Assert.assertEquals(2, this.thumbCache.getSize());
+        Assert.assertEquals(200, this.thumbCache.getBytes());
+
+        long misses = this.thumbCache.getMisses();
+        this.thumbCache.load("200", thumb1);
+        Assert.assertEquals(misses, this.thumbCache.getMisses());
+        this.thumbCache.load("201", thumb2);
+        Assert.assertEquals(misses+1, this.thumbCache.getMisses());
+
+        //Миниатюра больше объема кеша не кешируется
+        Path big = this.createThumb("203", 300);
+        Assert.assertNotNull(this.thumbCache.load("203", big));
+        Assert.assertTrue(this.thumbCache.getBytes() <= 250);
+    }
+
+    @Test
+    public void invalidateTest() throws IOException {
+        Path thumb = this.createThumb("200", 100);
+        this.thumbCache.load("200", thumb);
+
+        this.createThumb("200", 120);
+        this.thumbCache.invalidate("200");
+        Assert.assertEquals(0, this.thumbCache.getBytes());
+
+        Assert.assertEquals(120, this.thumbCache.load("200", thumb).contentLength());
+
+        Files.delete(thumb);
+        this.thumbCache.invalidate("200");
+        Assert.assertNull(this.thumbCache.load("200", thumb));
+    }
+}
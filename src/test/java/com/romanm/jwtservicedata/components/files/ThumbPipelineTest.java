@@ -0,0 +1,142 @@
+package com.romanm.jwtservicedata.components.files;
+
+import com.romanm.jwtservicedata.components.confs.FileConfig;
+import com.romanm.jwtservicedata.models.responses.files.FileStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+@Slf4j
+public class ThumbPipelineTest {
+    private ThumbPipeline thumbPipeline;
+    private CountDownLatch release;
+    private CountDownLatch running;
+    private List<String> completed;
+
+    @Before
+    public void initPipeline() {
+        FileConfig fileConfig = new FileConfig();
+        fileConfig.setThumbWorkers(1);
+        fileConfig.setThumbQueueSize(1);
+        this.thumbPipeline = new ThumbPipeline(fileConfig);
+        this.release = new CountDownLatch(1);
+        this.running = new CountDownLatch(1);
+        this.completed = new CopyOnWriteArrayList<>();
+    }
+
+    @After
+    public void shutdown() {
+        this.release.countDown();
+        this.thumbPipeline.shutdown();
+    }
+
+    /**
+     * Задача, ожидающая разрешения на завершение
+     * @param fileName String
+     * @return Supplier<FileStatus>
+     */
+    private Supplier<FileStatus> task(String fileName) {
+        return () -> {
+            this.running.countDown();
+            try {
+                this.release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.completed.add(fileName);
+            return new FileStatus(true, fileName, "");
+        };
+    }
+
+    /**
+     * Занять единственный поток пула задачей другого пользователя
+     */
+    private void occupyWorker() throws InterruptedException {
+        this.thumbPipeline.submit("100", "file0.png", this.task("file0.png"));
+        Assert.assertTrue(this.running.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void sameFileDeduplicatedTest() throws Exception {
+        this.occupyWorker();
+        CompletableFuture<FileStatus> first = this.thumbPipeline.submit("200", "file1.png", this.task("file1.png"));
+        CompletableFuture<FileStatus> second = this.thumbPipeline.submit("200", "file1.png", this.task("file1.png"));
+        Assert.assertSame(first, second);
+
+        this.release.countDown();
+        Assert.assertTrue(first.get(5, TimeUnit.SECONDS).isSaved());
+        Assert.assertEquals(List.of("file0.png", "file1.png"), this.completed);
+    }
+
+    @Test
+    public void sameFileCallbacksJoinedTest() throws Exception {
+        this.occupyWorker();
+        List<String> callbacks = new CopyOnWriteArrayList<>();
+        CompletableFuture<FileStatus> first = this.thumbPipeline.submit("200", "file1.png", this.task("file1.png"), fileStatus -> {
+            callbacks.add("first");
+            return fileStatus;
+        });
+        CompletableFuture<FileStatus> second = this.thumbPipeline.submit("200", "file1.png", this.task("file1.png"), fileStatus -> {
+            callbacks.add("second");
+            return fileStatus;
+        });
+        Assert.assertSame(first, second);
+
+        this.release.countDown();
+        Assert.assertTrue(second.get(5, TimeUnit.SECONDS).isSaved());
+        //Присоединившийся запрос получает результат только после своего обработчика
+        Assert.assertEquals(List.of("first", "second"), callbacks);
+    }
+
+    @Test
+    public void sameFileRunningChainedTest() throws Exception {
+        CompletableFuture<FileStatus> first = this.thumbPipeline.submit("200", "file1.png", this.task("file1.png"));
+        Assert.assertTrue(this.running.await(5, TimeUnit.SECONDS));
+        //Запущенная задача могла прочитать старую версию файла, поэтому повторный запрос выполнится после нее
+        CompletableFuture<FileStatus> second = this.thumbPipeline.submit("200", "file1.png", this.task("file1.png"));
+        Assert.assertNotSame(first, second);
+
+        this.release.countDown();
+        second.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(List.of("file1.png", "file1.png"), this.completed);
+    }
+
+    @Test
+    public void sameUserSerializedTest() throws Exception {
+        CompletableFuture<FileStatus> first = this.thumbPipeline.submit("200", "file1.png", this.task("file1.png"));
+        CompletableFuture<FileStatus> second = this.thumbPipeline.submit("200", "file2.png", this.task("file2.png"));
+        Assert.assertNotSame(first, second);
+
+        this.release.countDown();
+        Assert.assertEquals("file2.png", second.get(5, TimeUnit.SECONDS).getFileName());
+        Assert.assertEquals(List.of("file1.png", "file2.png"), this.completed);
+    }
+
+    @Test
+    public void queueFullRejectedTest() throws InterruptedException {
+        this.occupyWorker();
+        this.thumbPipeline.submit("201", "file1.png", this.task("file1.png"));
+        CompletableFuture<FileStatus> rejected = this.thumbPipeline.submit("202", "file1.png", this.task("file1.png"));
+
+        try {
+            rejected.get(5, TimeUnit.SECONDS);
+            Assert.fail("Queue overflow must reject the task");
+        } catch (ExecutionException e) {
+            log.info("Rejected: "+e.getCause());
+            Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+        } catch (Exception e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+}
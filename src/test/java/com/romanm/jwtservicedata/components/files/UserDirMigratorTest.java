@@ -0,0 +1,94 @@
+package com.romanm.jwtservicedata.components.files;
+
+import com.romanm.jwtservicedata.components.confs.FileConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+@Slf4j
+public class UserDirMigratorTest {
+    private Path uploadsDir;
+    private FileConfig fileConfig;
+    private UserFileIndex userFileIndex;
+    private UserDirMigrator userDirMigrator;
+
+    @Before
+    public void initMigrator() throws IOException {
+        this.uploadsDir = Files.createTempDirectory("uploads");
+
+        this.fileConfig = new FileConfig();
+        this.fileConfig.setUploadsDir(this.uploadsDir.toString());
+        this.fileConfig.setIndexMaxUsers(10);
+        this.fileConfig.setThumbCacheSize(1024);
+        this.fileConfig.setShardLevels(2);
+        this.userFileIndex = new UserFileIndex(this.fileConfig);
+        this.userDirMigrator = new UserDirMigrator(this.fileConfig, this.userFileIndex, new ThumbCache(this.fileConfig));
+
+        for (String userId : new String[] {"200", "201", "202"}) {
+            Path userDir = Files.createDirectories(this.uploadsDir.resolve(userId).resolve("thumb"));
+            Files.write(userDir.resolveSibling("file1.png"), new byte[10]);
+        }
+    }
+
+    @After
+    public void clean() throws IOException {
+        FileSystemUtils.deleteRecursively(this.uploadsDir);
+    }
+
+    @Test
+    public void legacyFallbackTest() {
+        //До переноса каталог пользователя выдается по старому пути, новый пользователь получает новый путь
+        Assert.assertEquals(this.uploadsDir.resolve("200"), this.fileConfig.getUserDir("200"));
+        Assert.assertEquals(this.fileConfig.getShardedUserDir("300"), this.fileConfig.getUserDir("300"));
+        Assert.assertNotNull(this.fileConfig.findFile("file1.png", "200"));
+    }
+
+    @Test
+    public void migrateBatchesTest() throws IOException {
+        Assert.assertEquals(2, this.userDirMigrator.migrate(2));
+        Assert.assertFalse(this.fileConfig.isLegacyDirsMigrated());
+        Assert.assertEquals(1, this.userDirMigrator.migrate(2));
+        Assert.assertEquals(0, this.userDirMigrator.migrate(2));
+        Assert.assertTrue(this.fileConfig.isLegacyDirsMigrated());
+
+        for (String userId : new String[] {"200", "201", "202"}) {
+            Assert.assertFalse(Files.exists(this.fileConfig.getLegacyUserDir(userId)));
+            Assert.assertEquals(this.fileConfig.getShardedUserDir(userId), this.fileConfig.getUserDir(userId));
+            Assert.assertTrue(Files.isDirectory(this.fileConfig.getUserDir(userId).resolve("thumb")));
+            Assert.assertNotNull(this.fileConfig.findFile("file1.png", userId));
+        }
+        Assert.assertEquals(1, this.userFileIndex.count("200"));
+    }
+
+    @Test
+    public void busyUserSkippedTest() throws IOException {
+        //Каталог с незавершенной загрузкой не переносится, пока загрузка не завершится
+        Assert.assertTrue(this.userFileIndex.reserve("200", "file2.png", 3));
+        this.userDirMigrator.migrate(10);
+        Assert.assertTrue(Files.isDirectory(this.fileConfig.getLegacyUserDir("200")));
+        Assert.assertFalse(this.fileConfig.isLegacyDirsMigrated());
+
+        this.userFileIndex.cancel("200", "file2.png");
+        Assert.assertEquals(1, this.userDirMigrator.migrate(10));
+        Assert.assertFalse(Files.exists(this.fileConfig.getLegacyUserDir("200")));
+    }
+
+    @Test
+    public void mergeExistingDirTest() throws IOException {
+        //Если каталог на новом месте уже создан, файлы старого каталога переносятся в него по одному
+        Path userDir = Files.createDirectories(this.fileConfig.getShardedUserDir("200"));
+        Files.write(userDir.resolve("file3.png"), new byte[10]);
+
+        this.userDirMigrator.migrate(10);
+        Assert.assertTrue(Files.isRegularFile(userDir.resolve("file1.png")));
+        Assert.assertTrue(Files.isRegularFile(userDir.resolve("file3.png")));
+        Assert.assertFalse(Files.exists(this.fileConfig.getLegacyUserDir("200")));
+    }
+}
@@ -0,0 +1,166 @@
+package com.romanm.jwtservicedata.components.files;
+
+import com.romanm.jwtservicedata.components.confs.FileConfig;
+import com.romanm.jwtservicedata.constants.MessageConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+@Slf4j
+public class UserFileIndexTest {
+    private Path uploadsDir;
+    private UserFileIndex userFileIndex;
+
+    @Before
+    public void initIndex() throws IOException {
+        this.uploadsDir = Files.createTempDirectory("uploads");
+
+        FileConfig fileConfig = new FileConfig();
+        fileConfig.setUploadsDir(this.uploadsDir.toString());
+        fileConfig.setIndexMaxUsers(2);
+        this.userFileIndex = new UserFileIndex(fileConfig);
+
+        Path userDir = Files.createDirectories(this.uploadsDir.resolve("200"));
+        Files.createDirectories(userDir.resolve("thumb"));
+        Files.write(userDir.resolve("file1.png"), new byte[10]);
+        Files.write(userDir.resolve("file2.png"), new byte[10]);
+    }
+
+    @After
+    public void clean() throws IOException {
+        FileSystemUtils.deleteRecursively(this.uploadsDir);
+    }
+
+    @Test
+    public void readDirOnceTest() throws IOException {
+        Assert.assertEquals(2, this.userFileIndex.count("200"));
+        Assert.assertTrue(this.userFileIndex.contains("200", "file1.png"));
+        //Каталог миниатюр не является файлом пользователя
+        Assert.assertFalse(this.userFileIndex.contains("200", "thumb"));
+
+        //Файл, записанный в обход индекса, не виден до сброса индекса
+        Files.write(this.uploadsDir.resolve("200").resolve("file3.png"), new byte[10]);
+        Assert.assertEquals(2, this.userFileIndex.count("200"));
+
+        this.userFileIndex.invalidate("200");
+        Assert.assertEquals(3, this.userFileIndex.count("200"));
+    }
+
+    @Test
+    public void commitRemoveTest() {
+        //Незарезервированная загрузка не попадает в индекс
+        this.userFileIndex.commit("200", "file3.png", 10);
+        Assert.assertEquals(2, this.userFileIndex.count("200"));
+
+        Assert.assertTrue(this.userFileIndex.reserve("200", "file3.png", 3));
+        this.userFileIndex.commit("200", "file3.png", 10);
+        this.userFileIndex.remove("200", "file1.png");
+
+        List<File> files = this.userFileIndex.listFiles("200");
+        log.info(MessageConstants.prefixMsg("Indexed files: "+files));
+        Assert.assertEquals(2, files.size());
+        Assert.assertEquals(this.uploadsDir.resolve("200").resolve("file2.png").toFile(), files.get(0));
+        Assert.assertEquals("file3.png", files.get(1).getName());
+    }
+
+    @Test
+    public void reserveSlotsTest() {
+        //В каталоге 2 файла из 3 допустимых, незавершенная загрузка занимает последнее место
+        Assert.assertTrue(this.userFileIndex.reserve("200", "file3.png", 3));
+        Assert.assertFalse(this.userFileIndex.reserve("200", "file4.png", 3));
+        //Повторная загрузка того же файла до завершения первой запрещена
+        Assert.assertFalse(this.userFileIndex.reserve("200", "file3.png", 3));
+        //Перезапись существующего файла места не занимает
+        Assert.assertTrue(this.userFileIndex.reserve("200", "file1.png", 3));
+
+        this.userFileIndex.cancel("200", "file3.png");
+        Assert.assertTrue(this.userFileIndex.reserve("200", "file4.png", 3));
+    }
+
+    @Test
+    public void reserveBytesTest() {
+        Assert.assertEquals(20, this.userFileIndex.usedBytes("200"));
+        Assert.assertTrue(this.userFileIndex.reserve("200", "file3.png", 3));
+        Assert.assertTrue(this.userFileIndex.reserveBytes("200", "file3.png", 25, 50));
+        Assert.assertFalse(this.userFileIndex.reserveBytes("200", "file3.png", 6, 50));
+        //Без резервирования места байты не учитываются
+        Assert.assertFalse(this.userFileIndex.reserveBytes("200", "file4.png", 1, 50));
+
+        //Перезаписываемый файл учитывается объемом новой версии
+        Assert.assertTrue(this.userFileIndex.reserve("200", "file1.png", 3));
+        Assert.assertTrue(this.userFileIndex.reserveBytes("200", "file1.png", 15, 50));
+        Assert.assertEquals(50, this.userFileIndex.usedBytes("200"));
+    }
+
+    @Test
+    public void missingDirTest() {
+        Assert.assertEquals(0, this.userFileIndex.count("201"));
+        Assert.assertTrue(this.userFileIndex.listFiles("201").isEmpty());
+    }
+
+    @Test
+    public void maxUsersTest() {
+        this.userFileIndex.count("200");
+        this.userFileIndex.count("201");
+        this.userFileIndex.count("202");
+        Assert.assertEquals(2, this.userFileIndex.count("200"));
+    }
+
+    @Test
+    public void evictLeastRecentlyUsedTest() throws IOException {
+        Files.createDirectories(this.uploadsDir.resolve("201"));
+        this.userFileIndex.count("200");
+        this.userFileIndex.count("201");
+        //Каталог 200 используется чаще, при чтении 202 вытесняется 201
+        this.userFileIndex.count("200");
+        this.userFileIndex.count("202");
+
+        Files.write(this.uploadsDir.resolve("200").resolve("file3.png"), new byte[10]);
+        Files.write(this.uploadsDir.resolve("201").resolve("file1.png"), new byte[10]);
+        Assert.assertEquals(2, this.userFileIndex.count("200"));
+        Assert.assertEquals(1, this.userFileIndex.count("201"));
+    }
+
+    @Test
+    public void evictBatchTest() throws IOException {
+        FileConfig fileConfig = new FileConfig();
+        fileConfig.setUploadsDir(this.uploadsDir.toString());
+        fileConfig.setIndexMaxUsers(10);
+        UserFileIndex userFileIndex = new UserFileIndex(fileConfig);
+        for (int i = 0; i < 11; i++) {
+            userFileIndex.count(String.valueOf(300+i));
+        }
+
+        //При переполнении вытесняются два самых старых каталога: превышение и десятая часть индекса
+        for (String userId : List.of("300", "301", "302")) {
+            Files.write(Files.createDirectories(this.uploadsDir.resolve(userId)).resolve("file1.png"), new byte[10]);
+        }
+        Assert.assertEquals(0, userFileIndex.count("302"));
+        Assert.assertEquals(1, userFileIndex.count("300"));
+        Assert.assertEquals(1, userFileIndex.count("301"));
+    }
+
+    @Test(timeout = 5000)
+    public void reserveWithSingleUserIndexTest() throws IOException {
+        FileConfig fileConfig = new FileConfig();
+        fileConfig.setUploadsDir(this.uploadsDir.toString());
+        fileConfig.setIndexMaxUsers(1);
+        UserFileIndex userFileIndex = new UserFileIndex(fileConfig);
+
+        //Только что прочитанный каталог не вытесняется, даже если в индексе нет места для другого
+        userFileIndex.count("201");
+        Assert.assertTrue(userFileIndex.reserve("200", "file3.png", 3));
+        Assert.assertTrue(userFileIndex.runIfIdle("201", () -> true));
+        //Каталог с незавершенной загрузкой тоже остается в индексе
+        Assert.assertTrue(userFileIndex.reserveBytes("200", "file3.png", 10, 100));
+    }
+}
@@ -0,0 +1,62 @@
+package com.romanm.jwtservicedata.components.logs;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.romanm.jwtservicedata.components.confs.LogConfig;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+
+public class AccessLoggerTest {
+    private final Logger accessLog = (Logger) LoggerFactory.getLogger("access");
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+
+    @Before
+    public void attachAppender() {
+        this.appender.start();
+        this.accessLog.addAppender(this.appender);
+    }
+
+    @After
+    public void detachAppender() {
+        this.accessLog.detachAppender(this.appender);
+    }
+
+    private AccessLogger createLogger(double sampleRate) {
+        LogConfig logConfig = new LogConfig();
+        logConfig.setAccessSampleRate(sampleRate);
+        return new AccessLogger(logConfig);
+    }
+
+    @Test
+    public void logRequestTest() {
+        MockServerHttpRequest request = MockServerHttpRequest.get("/api/uploads?user_id=100").build();
+        this.createLogger(1).logRequest("user", request);
+        this.createLogger(1).logRequest(null, request);
+
+        Assert.assertEquals(2, this.appender.list.size());
+        Assert.assertEquals(">> User 'user' requested data: GET /api/uploads?user_id=100", this.appender.list.get(0).getFormattedMessage());
+        Assert.assertTrue(this.appender.list.get(1).getFormattedMessage().contains("'Unknown'"));
+    }
+
+    @Test
+    public void sampleRequestTest() {
+        MockServerHttpRequest request = MockServerHttpRequest.get("/api/uploads").build();
+        AccessLogger disabled = this.createLogger(0);
+        AccessLogger sampled = this.createLogger(0.5);
+        for (int i = 0; i < 1000; i++) {
+            disabled.logAnonymousRequest(request);
+        }
+        Assert.assertEquals(0, this.appender.list.size());
+
+        for (int i = 0; i < 1000; i++) {
+            sampled.logAnonymousRequest(request);
+        }
+        Assert.assertTrue(this.appender.list.size() > 300);
+        Assert.assertTrue(this.appender.list.size() < 700);
+    }
+}
@@ -0,0 +1,43 @@
+package com.romanm.jwtservicedata.components.metrics;
+
+import com.romanm.jwtservicedata.components.confs.FileConfig;
+import com.romanm.jwtservicedata.components.files.ThumbCache;
+import com.romanm.jwtservicedata.components.files.ThumbPipeline;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class StorageMetricsTest {
+
+    @Test
+    public void bindTest() throws IOException {
+        FileConfig fileConfig = new FileConfig();
+        fileConfig.setThumbCacheSize(1000);
+        fileConfig.setThumbWorkers(1);
+        fileConfig.setThumbQueueSize(1);
+        ThumbCache thumbCache = new ThumbCache(fileConfig);
+        ThumbPipeline thumbPipeline = new ThumbPipeline(fileConfig);
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        new StorageMetrics(thumbCache, thumbPipeline).bindTo(registry);
+
+        Path thumbFile = Files.createTempFile("thumb", ".jpg");
+        try {
+            Files.write(thumbFile, new byte[100]);
+            thumbCache.load("100", thumbFile);
+            thumbCache.load("100", thumbFile);
+        } finally {
+            Files.delete(thumbFile);
+            thumbPipeline.shutdown();
+        }
+
+        Assert.assertEquals(1, registry.get("thumb.cache.hits").functionCounter().count(), 0);
+        Assert.assertEquals(1, registry.get("thumb.cache.misses").functionCounter().count(), 0);
+        Assert.assertEquals(100, registry.get("thumb.cache.bytes").gauge().value(), 0);
+        Assert.assertEquals(0, registry.get("thumb.pipeline.queued").gauge().value(), 0);
+    }
+}
@@ -0,0 +1,103 @@
+package com.romanm.jwtservicedata.components.tracing;
+
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class TracingTest {
+    private final List<SpanData> spans = new CopyOnWriteArrayList<>();
+    private SdkTracerProvider tracerProvider;
+    private Tracing tracing;
+
+    /**
+     * Экспорт завершенных интервалов в список
+     */
+    private class CollectingExporter implements SpanExporter {
+        @Override
+        public CompletableResultCode export(Collection<SpanData> exported) {
+            spans.addAll(exported);
+            return CompletableResultCode.ofSuccess();
+        }
+
+        @Override
+        public CompletableResultCode flush() {
+            return CompletableResultCode.ofSuccess();
+        }
+
+        @Override
+        public CompletableResultCode shutdown() {
+            return CompletableResultCode.ofSuccess();
+        }
+    }
+
+    @Before
+    public void initTracing() {
+        this.tracerProvider = SdkTracerProvider.builder()
+                .addSpanProcessor(SimpleSpanProcessor.create(new CollectingExporter()))
+                .build();
+        this.tracing = new Tracing(OpenTelemetrySdk.builder().setTracerProvider(this.tracerProvider).build());
+    }
+
+    @After
+    public void shutdown() {
+        this.tracerProvider.shutdown();
+    }
+
+    /**
+     * Дождаться завершения интервалов: интервал заканчивается в doFinally, уже после сигнала подписчику
+     * @param count int
+     */
+    private void awaitSpans(int count) throws InterruptedException {
+        for (int i = 0; (i < 100) && (this.spans.size() < count); i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    private SpanData findSpan(String name) {
+        return this.spans.stream().filter(span -> span.getName().equals(name)).findFirst().orElseThrow(AssertionError::new);
+    }
+
+    @Test
+    public void nestedSpanTest() throws InterruptedException {
+        //Вложенная операция в другом потоке становится дочерним интервалом той же трассы
+        Mono<String> inner = this.tracing.trace("inner", Mono.fromCallable(() -> "value").subscribeOn(Schedulers.boundedElastic()));
+        Flux<String> outer = this.tracing.trace("outer", inner.flux());
+
+        StepVerifier.create(outer).expectNext("value").verifyComplete();
+        this.awaitSpans(2);
+
+        Assert.assertEquals(2, this.spans.size());
+        SpanData outerSpan = this.findSpan("outer");
+        SpanData innerSpan = this.findSpan("inner");
+        Assert.assertEquals(outerSpan.getTraceId(), innerSpan.getTraceId());
+        Assert.assertEquals(outerSpan.getSpanId(), innerSpan.getParentSpanId());
+        Assert.assertFalse(outerSpan.getParentSpanContext().isValid());
+    }
+
+    @Test
+    public void errorSpanTest() throws InterruptedException {
+        StepVerifier.create(this.tracing.trace("failed", Mono.error(new IllegalStateException("failed"))))
+                .verifyError(IllegalStateException.class);
+        this.awaitSpans(1);
+
+        SpanData span = this.findSpan("failed");
+        Assert.assertEquals(StatusCode.ERROR, span.getStatus().getStatusCode());
+        Assert.assertEquals(1, span.getEvents().size());
+    }
+}
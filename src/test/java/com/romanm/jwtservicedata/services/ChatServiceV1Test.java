@@ -0,0 +1,109 @@
+package com.romanm.jwtservicedata.services;
+
+import com.romanm.jwtservicedata.components.chat.ChatMessageBroker;
+import com.romanm.jwtservicedata.models.ChatItem;
+import com.romanm.jwtservicedata.models.requests.ChatCursor;
+import com.romanm.jwtservicedata.models.requests.ConversationRead;
+import com.romanm.jwtservicedata.models.requests.MessageApplier;
+import com.romanm.jwtservicedata.models.responses.ConversationReadResponse;
+import com.romanm.jwtservicedata.models.responses.MessageApplierResponse;
+import com.romanm.jwtservicedata.repositories.ChatMessageRepository;
+import com.romanm.jwtservicedata.services.mongodb.MongoOperations;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.springframework.data.domain.Sort;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class ChatServiceV1Test {
+
+    private ChatItem chatItem(String id, String userId, String fromUserId, long timestamp) {
+        ChatItem chatItem = new ChatItem(userId, fromUserId, "message "+id, new Date(timestamp));
+        chatItem.setId(id);
+        return chatItem;
+    }
+
+    @Test
+    public void findUsersMessagesTest() {
+        ChatCursor cursor = new ChatCursor(new Date(1000), "a0");
+        MongoOperations mongoOperations = Mockito.mock(MongoOperations.class);
+        //Оба направления переписки приходят одним запросом, уже упорядоченные от старых к новым
+        Mockito.when(mongoOperations.getConversation("200", "300", cursor, 0, 3)).thenReturn(Flux.just(
+                this.chatItem("a3", "200", "300", 700),
+                this.chatItem("a4", "300", "200", 800),
+                this.chatItem("a5", "200", "300", 900)));
+        Mockito.when(mongoOperations.getConversation("200", "300", null, 6, 3)).thenReturn(Flux.empty());
+        ChatServiceV1 chatService = new ChatServiceV1(null, null, mongoOperations, null);
+
+        List<ChatItem> page = chatService.findUsersMessages("200", "300", cursor, 3).collectList().block();
+        Assert.assertEquals(List.of("a3", "a4", "a5"), page.stream().map(ChatItem::getId).collect(Collectors.toList()));
+
+        //Следующая страница начинается после самого старого сообщения
+        ChatCursor nextCursor = ChatCursor.decode(ChatCursor.of(page.get(0)).encode());
+        Assert.assertEquals(new Date(700), nextCursor.getTimestamp());
+        Assert.assertEquals("a3", nextCursor.getId());
+
+        //Страница по номеру пропускает page*size сообщений в базе
+        Assert.assertEquals(List.of(), chatService.findUsersMessages("200", "300", 2, 3, Sort.Direction.DESC).collectList().block());
+        Mockito.verify(mongoOperations).getConversation("200", "300", null, 6, 3);
+    }
+
+    @Test
+    public void saveMessagesUpdatesConversationsTest() {
+        ChatMessageRepository chatMessageRepository = Mockito.mock(ChatMessageRepository.class);
+        MongoOperations mongoOperations = Mockito.mock(MongoOperations.class);
+        Mockito.when(chatMessageRepository.save(Mockito.any(ChatItem.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        Mockito.when(chatMessageRepository.saveAll(Mockito.anyIterable())).thenAnswer(invocation -> Flux.fromIterable(invocation.getArgument(0)));
+        ChatMessageBroker chatMessageBroker = Mockito.mock(ChatMessageBroker.class);
+        Mockito.when(mongoOperations.updateConversations(Mockito.any(ChatItem.class))).thenReturn(Mono.empty());
+        Mockito.when(chatMessageBroker.publish(Mockito.any(ChatItem.class))).thenReturn(Mono.empty());
+        ChatServiceV1 chatService = new ChatServiceV1(chatMessageRepository, null, mongoOperations, chatMessageBroker);
+
+        ChatItem added = chatService.addMessage("300", "200", "Привет").block();
+        Assert.assertEquals("Привет", added.getMessage());
+        Mockito.verify(mongoOperations).updateConversations(added);
+        Mockito.verify(chatMessageBroker).publish(added);
+
+        List<ChatItem> chatItems = List.of(this.chatItem("a1", "300", "200", 100), this.chatItem("a2", "200", "300", 200));
+        Assert.assertEquals(chatItems, chatService.saveMessages(chatItems).collectList().block());
+        //Сводки обновляются в порядке сообщений, последнее сообщение пары остается последним
+        InOrder inOrder = Mockito.inOrder(mongoOperations);
+        inOrder.verify(mongoOperations).updateConversations(chatItems.get(0));
+        inOrder.verify(mongoOperations).updateConversations(chatItems.get(1));
+        Mockito.verify(chatMessageBroker).publish(chatItems.get(1));
+    }
+
+    @Test
+    public void appliedMessagesTest() {
+        ChatMessageRepository chatMessageRepository = Mockito.mock(ChatMessageRepository.class);
+        MongoOperations mongoOperations = Mockito.mock(MongoOperations.class);
+        Mockito.when(chatMessageRepository.findChatItemsByIdIn(List.of("a1"))).thenReturn(Flux.just(this.chatItem("a1", "300", "200", 100)));
+        Mockito.when(mongoOperations.markMessagesRead(List.of("a2", "a3"))).thenReturn(Mono.just(1L));
+        ChatServiceV1 chatService = new ChatServiceV1(chatMessageRepository, null, mongoOperations, null);
+
+        //Отмечаемые сообщения не читаются, в ответе только их коды и кол-во отмеченных
+        MessageApplierResponse response = chatService.appliedMessages(new MessageApplier(List.of("a1"), List.of("a2", "a3"))).block();
+        Assert.assertEquals(List.of("a1"), response.getReadMessages().stream().map(ChatItem::getId).collect(Collectors.toList()));
+        Assert.assertEquals(List.of("a2", "a3"), response.getWriteMessagesIds());
+        Assert.assertEquals(1, response.getWriteModifiedCount());
+        Mockito.verify(chatMessageRepository, Mockito.never()).saveAll(Mockito.anyIterable());
+    }
+
+    @Test
+    public void readConversationTest() {
+        MongoOperations mongoOperations = Mockito.mock(MongoOperations.class);
+        Mockito.when(mongoOperations.markConversationRead(Mockito.eq("300"), Mockito.eq("200"), Mockito.any(Date.class))).thenReturn(Mono.just(4L));
+        ChatServiceV1 chatService = new ChatServiceV1(null, null, mongoOperations, null);
+
+        ConversationReadResponse response = chatService.readConversation(new ConversationRead("300", "200", new Date(5000))).block();
+        Assert.assertEquals(4, response.getModifiedCount());
+        //Время передается с точностью до секунды: отмечаются сообщения до конца этой секунды
+        Mockito.verify(mongoOperations).markConversationRead("300", "200", new Date(5999));
+    }
+}
@@ -0,0 +1,50 @@
+package com.romanm.jwtservicedata.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.romanm.jwtservicedata.components.auth.AuthUserCache;
+import com.romanm.jwtservicedata.components.confs.AuthConfig;
+import com.romanm.jwtservicedata.constants.MessageConstants;
+import com.romanm.jwtservicedata.models.auth.AuthUser;
+import com.romanm.jwtservicedata.repositories.ReactiveRedisRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@Slf4j
+public class UserServiceV1Test {
+
+    @Test
+    public void readUserByUsernameTest() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        AuthUser authUser = new AuthUser("user@mail.ru", "password", null, false);
+        authUser.setId("100");
+
+        ReactiveRedisRepository redisRepository = Mockito.mock(ReactiveRedisRepository.class);
+        Mockito.when(redisRepository.find("user@mail.ru")).thenReturn(Mono.just(objectMapper.writeValueAsString(authUser)));
+        Mockito.when(redisRepository.find("broken@mail.ru")).thenReturn(Mono.just("{broken"));
+        Mockito.when(redisRepository.find("unknown@mail.ru")).thenReturn(Mono.empty());
+        AuthConfig authConfig = new AuthConfig();
+        authConfig.setUserCacheSize(100);
+        authConfig.setUserCacheTtlMs(60000);
+        UserServiceV1 userService = new UserServiceV1(redisRepository, null, objectMapper, new AuthUserCache(authConfig));
+
+        StepVerifier.create(userService.readUserByUsername("user@mail.ru"))
+                .assertNext(user -> {
+                    log.info(MessageConstants.prefixMsg("User: "+user.getUsername()));
+                    Assert.assertEquals("100", user.getId());
+                    Assert.assertEquals("user@mail.ru", user.getUsername());
+                })
+                .verifyComplete();
+        //Повторное чтение идет из локального кеша
+        StepVerifier.create(userService.readUserByUsername("user@mail.ru"))
+                .assertNext(user -> Assert.assertEquals("100", user.getId()))
+                .verifyComplete();
+        Mockito.verify(redisRepository, Mockito.times(1)).find("user@mail.ru");
+
+        StepVerifier.create(userService.readUserByUsername("broken@mail.ru")).verifyComplete();
+        StepVerifier.create(userService.readUserByUsername("unknown@mail.ru")).verifyComplete();
+    }
+}
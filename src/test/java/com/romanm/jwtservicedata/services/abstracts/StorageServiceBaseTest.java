@@ -1,14 +1,286 @@
 package com.romanm.jwtservicedata.services.abstracts;
 
+import com.romanm.jwtservicedata.components.confs.FileConfig;
+import com.romanm.jwtservicedata.components.files.BlobStore;
+import com.romanm.jwtservicedata.components.files.ImageSignatureHandler;
+import com.romanm.jwtservicedata.components.files.ThumbCache;
+import com.romanm.jwtservicedata.components.files.ThumbPipeline;
+import com.romanm.jwtservicedata.components.files.UserFileIndex;
+import com.romanm.jwtservicedata.components.tracing.Tracing;
+import com.romanm.jwtservicedata.models.responses.files.FileStatus;
+import io.opentelemetry.api.OpenTelemetry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
 import org.junit.Test;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.util.FileSystemUtils;
 import org.springframework.util.MultiValueMap;
+import reactor.blockhound.BlockHound;
+import reactor.blockhound.BlockingOperationError;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+@Slf4j
 public class StorageServiceBaseTest  {
     //private StorageServiceBase storageServiceBase = new StorageServiceBase("uploads_test");
+    private Path uploadsDir;
+    private FileConfig fileConfig;
+    private Scheduler storageScheduler;
+    private ThumbPipeline thumbPipeline;
+    private StorageServiceBase storageServiceBase;
+
+    @BeforeClass
+    public static void installBlockHound() {
+        //Блокирующий вызов в неблокирующем потоке (parallel, event loop) завершится ошибкой BlockingOperationError.
+        //Помимо java.io, блокирующими считаются чтение и запись файлов через NIO каналы
+        BlockHound.install(builder -> builder
+                .markAsBlocking("sun.nio.ch.FileChannelImpl", "read", "(Ljava/nio/ByteBuffer;)I")
+                .markAsBlocking("sun.nio.ch.FileChannelImpl", "write", "(Ljava/nio/ByteBuffer;)I"));
+    }
+
+    @Before
+    public void initStorage() throws IOException {
+        this.uploadsDir = Files.createTempDirectory("uploads");
+
+        FileConfig fileConfig = new FileConfig();
+        fileConfig.setUploadsDir(this.uploadsDir.toString());
+        fileConfig.setPermittedFormats(List.of("jpg", "jpeg", "png", "gif"));
+        fileConfig.setThumbDir("thumb");
+        fileConfig.setThumbWidth(280);
+        fileConfig.setThumbExt("jpg");
+        fileConfig.setThumbCacheSize(1024*1024);
+        fileConfig.setIndexMaxUsers(10);
+        fileConfig.setThumbWorkers(1);
+        fileConfig.setThumbQueueSize(10);
+        fileConfig.setVariantWidths(List.of(64, 160, 100000));
+        fileConfig.setVariantDir("variants");
+        fileConfig.setMaxCount(3);
+        fileConfig.setMaxFileSize(1024*1024);
+        fileConfig.setMaxUserBytes(2*1024*1024);
+        this.fileConfig = fileConfig;
+
+        this.storageScheduler = Schedulers.newBoundedElastic(2, 100, "storage-io-test");
+        this.thumbPipeline = new ThumbPipeline(fileConfig);
+        this.storageServiceBase = new StorageServiceBase(fileConfig, new ThumbCache(fileConfig), new UserFileIndex(fileConfig), this.storageScheduler, this.thumbPipeline, new ImageSignatureHandler(), new BlobStore(fileConfig), new Tracing(OpenTelemetry.noop()));
+
+        Path userDir = Files.createDirectories(this.uploadsDir.resolve("200"));
+        try (InputStream image = new ClassPathResource("test1/file2.jpg").getInputStream()) {
+            Files.copy(image, userDir.resolve("file2.jpg"));
+        }
+    }
+
+    @After
+    public void clean() throws IOException, InterruptedException {
+        //Миниатюры создаются в фоне после ответа на загрузку, каталог удаляется после их завершения
+        for (int i = 0; (i < 500) && ((this.thumbPipeline.getQueued() > 0) || (this.thumbPipeline.getActive() > 0)); i++) {
+            Thread.sleep(10);
+        }
+        this.thumbPipeline.shutdown();
+        this.storageScheduler.dispose();
+        FileSystemUtils.deleteRecursively(this.uploadsDir);
+    }
+
+    /**
+     * Выполнить операцию хранилища из неблокирующего потока, как из обработчика запроса
+     * @param operation Mono<T>
+     * @return Mono<T>
+     */
+    private <T> Mono<T> fromNonBlocking(Mono<T> operation) {
+        return Mono.defer(() -> operation).subscribeOn(Schedulers.parallel());
+    }
+
+    @Test
+    public void blockHoundInstalledTest() {
+        StepVerifier.create(this.fromNonBlocking(Mono.fromCallable(() -> Files.readAllBytes(this.uploadsDir.resolve("200/file2.jpg")))))
+                .expectError(BlockingOperationError.class)
+                .verify();
+    }
+
+    @Test
+    public void saveAndDeleteThumbNonBlockingTest() {
+        StepVerifier.create(this.fromNonBlocking(this.storageServiceBase.saveFileThumb("200", "file2.jpg", fileStatus -> fileStatus)))
+                .expectNextMatches(fileStatus -> fileStatus.isSaved() && !fileStatus.getUrl().isEmpty())
+                .verifyComplete();
+
+        StepVerifier.create(this.fromNonBlocking(this.storageServiceBase.deleteThumb("200")))
+                .expectNext(true)
+                .verifyComplete();
+    }
+
+    @Test
+    public void deleteFileOutsideUserDirTest() throws IOException {
+        //Имя с выходом за пределы каталога пользователя не удаляет чужой файл
+        Files.createDirectories(this.uploadsDir.resolve("201"));
+        StepVerifier.create(this.storageServiceBase.deleteUserFile("../200/file2.jpg", "201"))
+                .expectNext(false)
+                .verifyComplete();
+        Assert.assertTrue(Files.isRegularFile(this.fileConfig.getUserDir("200").resolve("file2.jpg")));
+    }
+
+    @Test
+    public void deleteFilesNonBlockingTest() {
+        StepVerifier.create(this.fromNonBlocking(this.storageServiceBase.deleteUserFile("file2.jpg", "200")))
+                .expectNext(true)
+                .verifyComplete();
+
+        StepVerifier.create(this.fromNonBlocking(this.storageServiceBase.deleteAll("200")))
+                .expectNext(true)
+                .verifyComplete();
+    }
+
+    @Test
+    public void saveFileVariantsTest() throws IOException {
+        StepVerifier.create(this.fromNonBlocking(this.storageServiceBase.saveFileVariants("200", "file2.jpg")))
+                .expectNextMatches(FileStatus::isSaved)
+                .verifyComplete();
+
+        BufferedImage variant = ImageIO.read(this.fileConfig.getUserVariantFile("200", "file2.jpg", 160).toFile());
+        Assert.assertEquals(160, variant.getWidth());
+        Assert.assertTrue(Files.isRegularFile(this.fileConfig.getUserVariantFile("200", "file2.jpg", 64)));
+        //Копия шире исходного изображения не создается
+        Assert.assertFalse(Files.exists(this.fileConfig.getUserVariantFile("200", "file2.jpg", 100000)));
+
+        StepVerifier.create(this.storageServiceBase.deleteUserFile("file2.jpg", "200"))
+                .expectNext(true)
+                .verifyComplete();
+        Assert.assertFalse(Files.exists(this.fileConfig.getUserVariantFile("200", "file2.jpg", 160)));
+    }
+
+    /**
+     * Загружаемый файл, отдающий содержимое частями
+     */
+    private static class TestFilePart implements FilePart {
+        private final String fileName;
+        private final byte[] content;
+
+        private TestFilePart(String fileName, byte[] content) {
+            this.fileName = fileName;
+            this.content = content;
+        }
+
+        @Override
+        public String filename() {
+            return this.fileName;
+        }
+
+        @Override
+        public Mono<Void> transferTo(Path dest) {
+            return DataBufferUtils.write(this.content(), dest);
+        }
+
+        @Override
+        public String name() {
+            return "file";
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return new HttpHeaders();
+        }
+
+        @Override
+        public Flux<DataBuffer> content() {
+            return DataBufferUtils.readInputStream(() -> new java.io.ByteArrayInputStream(this.content), new DefaultDataBufferFactory(), 4096);
+        }
+    }
+
+    /**
+     * Содержимое тестового изображения
+     * @return byte[]
+     */
+    private byte[] readImage() throws IOException {
+        return Files.readAllBytes(this.uploadsDir.resolve("200/file2.jpg"));
+    }
+
+    @Test
+    public void saveValidFileTest() throws IOException {
+        byte[] image = this.readImage();
+        StepVerifier.create(this.storageServiceBase.save(Mono.just(new TestFilePart("file3.jpg", image)), "200"))
+                .expectNextMatches(fileStatus -> fileStatus.isSaved() && fileStatus.getUrl().contains("file3.jpg"))
+                .verifyComplete();
+
+        Assert.assertArrayEquals(image, Files.readAllBytes(this.uploadsDir.resolve("200/file3.jpg")));
+        Assert.assertFalse(Files.exists(this.uploadsDir.resolve("200/.file3.jpg.upload")));
+    }
+
+    @Test
+    public void saveInvalidContentTest() throws IOException {
+        //Изображение jpg под расширением png отклоняется по первым байтам
+        StepVerifier.create(this.storageServiceBase.save(Mono.just(new TestFilePart("file3.png", this.readImage())), "200"))
+                .expectNextMatches(fileStatus -> !fileStatus.isSaved() && fileStatus.getError().contains("doesn't match"))
+                .verifyComplete();
+
+        Assert.assertFalse(Files.exists(this.uploadsDir.resolve("200/file3.png")));
+        Assert.assertFalse(Files.exists(this.uploadsDir.resolve("200/.file3.png.upload")));
+    }
+
+    @Test
+    public void saveTooLargeFileTest() throws IOException {
+        byte[] image = this.readImage();
+        byte[] large = java.util.Arrays.copyOf(image, 1024*1024+1);
+        StepVerifier.create(this.storageServiceBase.save(Mono.just(new TestFilePart("file3.jpg", large)), "200"))
+                .expectNextMatches(fileStatus -> !fileStatus.isSaved() && fileStatus.getError().contains("too large"))
+                .verifyComplete();
+
+        Assert.assertFalse(Files.exists(this.uploadsDir.resolve("200/file3.jpg")));
+
+        //Место освобождено, следующая загрузка проходит
+        StepVerifier.create(this.storageServiceBase.save(Mono.just(new TestFilePart("file3.jpg", image)), "200"))
+                .expectNextMatches(FileStatus::isSaved)
+                .verifyComplete();
+    }
+
+    @Test
+    public void saveBlobDeduplicatedTest() throws IOException {
+        this.fileConfig.setStorageType(BlobStore.STORAGE_TYPE_BLOB);
+        this.fileConfig.setBlobDir(this.uploadsDir.resolve("blobs").toString());
+        byte[] image = this.readImage();
+        Files.createDirectories(this.uploadsDir.resolve("201"));
+
+        StepVerifier.create(this.storageServiceBase.save(Mono.just(new TestFilePart("file3.jpg", image)), "200"))
+                .expectNextMatches(FileStatus::isSaved)
+                .verifyComplete();
+        StepVerifier.create(this.storageServiceBase.save(Mono.just(new TestFilePart("file4.jpg", image)), "201"))
+                .expectNextMatches(FileStatus::isSaved)
+                .verifyComplete();
+
+        //Одинаковое содержимое двух пользователей хранится одним файлом
+        Assert.assertTrue(Files.isSameFile(this.uploadsDir.resolve("200/file3.jpg"), this.uploadsDir.resolve("201/file4.jpg")));
+        Assert.assertArrayEquals(image, Files.readAllBytes(this.uploadsDir.resolve("201/file4.jpg")));
+    }
+
+    @Test
+    public void saveAllConcurrentLimitTest() throws IOException {
+        byte[] image = this.readImage();
+        //В каталоге уже есть 1 файл из 3, из 5 параллельных загрузок сохранятся только 2
+        Flux<FilePart> files = Flux.range(3, 5).map(i -> new TestFilePart("file"+i+".jpg", image));
+
+        List<FileStatus> statuses = this.storageServiceBase.saveAllFlux(files, "200").collectList().block();
+        Assert.assertNotNull(statuses);
+        Assert.assertEquals(2, statuses.stream().filter(FileStatus::isSaved).count());
+        Assert.assertEquals(3, this.fileConfig.listFiles("200").size());
+    }
 
     @Test
     public void saveFileTest() {
@@ -21,4 +293,4 @@ public class StorageServiceBaseTest  {
 
         this.storageServiceBase.save(Mono.empty(), "200", 3);*/
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,207 @@
+package com.romanm.jwtservicedata.services.mongodb;
+
+import com.romanm.jwtservicedata.constants.CommonConstants;
+import com.romanm.jwtservicedata.constants.MessageConstants;
+import com.romanm.jwtservicedata.models.ChatItem;
+import com.romanm.jwtservicedata.models.images.ImageRef;
+import com.romanm.jwtservicedata.models.requests.ChatCursor;
+import com.romanm.jwtservicedata.models.requests.SearchBody;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperationContext;
+import org.springframework.data.mongodb.core.aggregation.TypeBasedAggregationOperationContext;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Date;
+import java.util.List;
+
+@Slf4j
+public class MongoQueriesTest {
+
+    @Test
+    public void profilesSearchPageTest() {
+        SearchBody searchBody = new SearchBody();
+        searchBody.setRegion(null);
+        searchBody.setLocality(null);
+        Query query = MongoQueries.profilesSearchPage(2, 10, "200", searchBody);
+
+        Document queryObject = query.getQueryObject();
+        Assert.assertEquals(new Document("$ne", "200"), queryObject.get("id"));
+        Assert.assertEquals(new Document("$gte", 18).append("$lte", 50), queryObject.get("age"));
+        Assert.assertEquals("Россия", queryObject.get("country"));
+        //Незаданные параметры поиска в запрос не попадают
+        Assert.assertFalse(queryObject.containsKey("region"));
+        Assert.assertFalse(queryObject.containsKey("locality"));
+        Assert.assertEquals(20, query.getSkip());
+        Assert.assertEquals(10, query.getLimit());
+    }
+
+    @Test
+    public void staleThumbTest() {
+        Query query = MongoQueries.staleThumb("200", List.of(new ImageRef("/1.png", "1.png")));
+
+        Document queryObject = query.getQueryObject();
+        Assert.assertEquals("200", queryObject.get("id"));
+        Assert.assertEquals(new Document("$nin", List.of("1.png")).append("$ne", ""), queryObject.get("thumbUrl.alt"));
+    }
+
+    /**
+     * Контекст агрегации по ChatItem, в котором ReactiveMongoTemplate преобразует конвейер перед отправкой
+     * @return AggregationOperationContext
+     */
+    private AggregationOperationContext chatItemContext() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.afterPropertiesSet();
+        return new TypeBasedAggregationOperationContext(ChatItem.class, mappingContext, new QueryMapper(converter));
+    }
+
+    @Test
+    public void conversationPageTest() {
+        String id = new ObjectId().toHexString();
+        Date timestamp = new Date();
+        List<Document> pipeline = MongoQueries.conversationPage("200", "300", new ChatCursor(timestamp, id), 0, 10)
+                .toPipeline(this.chatItemContext());
+        log.info(MessageConstants.prefixMsg("Pipeline: "+pipeline));
+
+        //Оба направления и позиция отбираются одним $match, затем страница сортируется, ограничивается и разворачивается
+        Assert.assertEquals(4, pipeline.size());
+        List<?> match = (List<?>) ((Document) pipeline.get(0).get("$match")).get("$and");
+        Assert.assertEquals(List.of(
+                new Document("userId", "200").append("fromUserId", "300"),
+                new Document("userId", "300").append("fromUserId", "200")), ((Document) match.get(0)).get("$or"));
+        Assert.assertEquals(List.of(
+                new Document("timestamp", new Document("$lt", timestamp)),
+                new Document("timestamp", timestamp).append("_id", new Document("$lt", new ObjectId(id)))), ((Document) match.get(2)).get("$or"));
+        Assert.assertEquals(new Document("$sort", new Document("timestamp", -1).append("_id", -1)), pipeline.get(1));
+        Assert.assertEquals(new Document("$limit", 10L), pipeline.get(2));
+        Assert.assertEquals(new Document("$sort", new Document("timestamp", 1).append("_id", 1)), pipeline.get(3));
+
+        //Страница по номеру пропускает более новые сообщения в базе, без условия на позицию
+        List<Document> pagePipeline = MongoQueries.conversationPage("200", "300", null, 20, 10).toPipeline(this.chatItemContext());
+        Assert.assertEquals(2, ((List<?>) ((Document) pagePipeline.get(0).get("$match")).get("$and")).size());
+        Assert.assertEquals(new Document("$skip", 20L), pagePipeline.get(2));
+    }
+
+    @Test
+    public void conversationsOfUserTest() {
+        Query query = MongoQueries.conversationsOfUser("200", 1, 10);
+
+        //Список чатов - один диапазон индекса ownerId_lastTimestamp
+        Assert.assertEquals(new Document("ownerId", "200"), query.getQueryObject());
+        Assert.assertEquals(new Document("lastTimestamp", -1), query.getSortObject());
+        Assert.assertEquals(10, query.getSkip());
+        Assert.assertEquals(10, query.getLimit());
+        Assert.assertEquals(new Document("id", "200:300"), MongoQueries.conversationById("200", "300").getQueryObject());
+    }
+
+    @Test
+    public void conversationUpdateTest() {
+        ChatItem chatItem = new ChatItem("300", "200", "$Привет", new Date());
+
+        //У отправителя число непрочитанных не меняется
+        Document outgoing = this.conversationSet("200", chatItem);
+        Assert.assertEquals(new Document("$literal", "300"), outgoing.get("peerId"));
+        Assert.assertEquals(List.of(new Document("$ifNull", List.of("$unreadCount", 0L)), 0L), ((Document) outgoing.get("unreadCount")).get("$add"));
+        //Сообщение заменяет последнее, только если оно не старше него, а текст не читается как путь к полю
+        List<?> lastMessage = (List<?>) ((Document) outgoing.get("lastMessage")).get("$cond");
+        Assert.assertEquals(new Document("$gte", List.of(new Document("$literal", chatItem.getTimestamp()),
+                new Document("$ifNull", List.of("$lastTimestamp", new Date(0))))), lastMessage.get(0));
+        Assert.assertEquals(new Document("$literal", "$Привет"), lastMessage.get(1));
+        Assert.assertEquals("$lastMessage", lastMessage.get(2));
+
+        //У получателя непрочитанное сообщение увеличивает число непрочитанных
+        Document incoming = this.conversationSet("300", chatItem);
+        Assert.assertEquals(new Document("$literal", "200"), incoming.get("peerId"));
+        Assert.assertEquals(1L, ((List<?>) ((Document) incoming.get("unreadCount")).get("$add")).get(1));
+
+        //Сообщение самому себе не становится непрочитанным
+        ChatItem selfItem = new ChatItem("300", "300", "Заметка", new Date());
+        Assert.assertEquals(0L, ((List<?>) ((Document) this.conversationSet("300", selfItem).get("unreadCount")).get("$add")).get(1));
+
+        chatItem.setRead(true);
+        Assert.assertEquals(0L, ((List<?>) ((Document) this.conversationSet("300", chatItem).get("unreadCount")).get("$add")).get(1));
+    }
+
+    /**
+     * Поля стадии $set конвейера обновления сводки
+     * @param ownerId String
+     * @param chatItem ChatItem
+     * @return Document
+     */
+    private Document conversationSet(String ownerId, ChatItem chatItem) {
+        List<Document> pipeline = MongoQueries.conversationUpdate(ownerId, chatItem).toPipeline(Aggregation.DEFAULT_CONTEXT);
+        Assert.assertEquals(1, pipeline.size());
+        return (Document) pipeline.get(0).get("$set");
+    }
+
+    @Test
+    public void conversationSummariesTest() {
+        List<Document> pipeline = MongoQueries.conversationSummaries().toPipeline(Aggregation.DEFAULT_CONTEXT);
+        log.info(MessageConstants.prefixMsg("Pipeline: "+pipeline));
+
+        Assert.assertEquals(6, pipeline.size());
+        Assert.assertEquals(new Document("$sort", new Document("timestamp", -1)), pipeline.get(0));
+        Assert.assertEquals(new Document("$unwind", "$sides"), pipeline.get(2));
+        //Сводки, обновленные после запуска сборки, не заменяются
+        Document merge = (Document) pipeline.get(5).get("$merge");
+        Assert.assertEquals(CommonConstants.CONVERSATION_COLLECTION, merge.get("into"));
+        Assert.assertEquals("keepExisting", merge.get("whenMatched"));
+        Assert.assertEquals("insert", merge.get("whenNotMatched"));
+    }
+
+    @Test
+    public void markReadTest() {
+        String id = new ObjectId().toHexString();
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.afterPropertiesSet();
+
+        //Коды сообщений передаются в базу как ObjectId, уже прочитанные сообщения не обновляются
+        Document query = new QueryMapper(converter).getMappedObject(MongoQueries.unreadMessagesByIds(List.of(id)).getQueryObject(),
+                mappingContext.getRequiredPersistentEntity(ChatItem.class));
+        Assert.assertEquals(new Document("_id", new Document("$in", List.of(new ObjectId(id)))).append("isRead", false), query);
+        Assert.assertEquals(new Document("$set", new Document("isRead", true)), MongoQueries.markRead().getUpdateObject());
+
+        List<Document> pipeline = MongoQueries.unreadByConversation(List.of(id)).toPipeline(this.chatItemContext());
+        Assert.assertEquals(new Document("_id", new Document("$in", List.of(new ObjectId(id)))).append("isRead", false), pipeline.get(0).get("$match"));
+        Assert.assertEquals(new Document("_id", new Document("userId", "$userId").append("fromUserId", "$fromUserId"))
+                .append("ids", new Document("$push", "$_id")), pipeline.get(1).get("$group"));
+
+        //Переписка отмечается по времени, без списка сообщений
+        Date upTo = new Date();
+        Assert.assertEquals(new Document("userId", "300").append("fromUserId", "200")
+                        .append("timestamp", new Document("$lte", upTo)).append("isRead", false),
+                MongoQueries.unreadMessagesUpTo("300", "200", upTo).getQueryObject());
+    }
+
+    @Test
+    public void unreadDecrementTest() {
+        List<Document> pipeline = MongoQueries.unreadDecrement(3).toPipeline(Aggregation.DEFAULT_CONTEXT);
+
+        //Число непрочитанных не становится отрицательным
+        Assert.assertEquals(List.of(new Document("$set", new Document("unreadCount",
+                new Document("$max", List.of(0L, new Document("$add", List.of("$unreadCount", -3L))))))), pipeline);
+    }
+
+    @Test
+    public void invalidCursorTest() {
+        for (String cursor : List.of("not base64!", "bm9zZXBhcmF0b3I", "YWJjOmlk")) {
+            try {
+                ChatCursor.decode(cursor);
+                Assert.fail(cursor);
+            } catch (IllegalArgumentException e) {
+                //Ожидаемая ошибка разбора
+            }
+        }
+        Assert.assertNull(ChatCursor.decode(""));
+    }
+}